@@ -5,6 +5,10 @@ import io.limb.seabreakr.spi.ContextFactory;
 import io.limb.seabreakr.spi.EventListener;
 import io.limb.seabreakr.spi.EventPublisher;
 
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
 public abstract class AbstractCircuitBreaker<T>
         implements CircuitBreaker {
 
@@ -14,10 +18,36 @@ public abstract class AbstractCircuitBreaker<T>
     protected final T backend;
     protected final T failover;
 
+    private final ScheduledExecutorService transitionScheduler;
+    private final long waitDurationInOpenState;
+    private final int permittedCallsInHalfOpenState;
+
+    private volatile ScheduledFuture<?> halfOpenTransition;
+
+    // Wall clock time in milliseconds of the last transition to Open, comparable across restarts
+    private volatile long openedAt;
+
     protected AbstractCircuitBreaker(Class<T> type, T backend, T failover, EventListener listener,
-                                     int numOfBufferedEvents, ContextFactory contextFactory) {
+                                     SlidingWindow slidingWindow, ContextFactory contextFactory) {
 
-        this.context = contextFactory.newContext(numOfBufferedEvents, eventPublisher);
+        this(type, backend, failover, listener, slidingWindow, contextFactory, null, 0, 0);
+    }
+
+    /**
+     * If a {@code transitionScheduler} is given, every transition to Open schedules the transition to
+     * HalfOpen after {@code waitDurationInOpenState} nanoseconds, which then permits
+     * {@code permittedCallsInHalfOpenState} trial calls. Without a scheduler the breaker stays open until
+     * it is closed explicitly.
+     */
+    protected AbstractCircuitBreaker(Class<T> type, T backend, T failover, EventListener listener,
+                                     SlidingWindow slidingWindow, ContextFactory contextFactory,
+                                     ScheduledExecutorService transitionScheduler, long waitDurationInOpenState,
+                                     int permittedCallsInHalfOpenState) {
+
+        this.context = contextFactory.newContext(slidingWindow, eventPublisher);
+        this.transitionScheduler = transitionScheduler;
+        this.waitDurationInOpenState = waitDurationInOpenState;
+        this.permittedCallsInHalfOpenState = permittedCallsInHalfOpenState;
         this.listener = listener;
         this.failover = failover;
         this.backend = backend;
@@ -26,12 +56,16 @@ public abstract class AbstractCircuitBreaker<T>
 
     @Override
     public void close() {
-        context.close();
+        if (context.close()) {
+            eventPublisher.fireClosedState();
+        }
     }
 
     @Override
     public void open() {
-        context.open();
+        if (context.open()) {
+            eventPublisher.fireOpenState();
+        }
     }
 
     @Override
@@ -54,14 +88,65 @@ public abstract class AbstractCircuitBreaker<T>
         return context.getMetrics();
     }
 
-    private final EventPublisher eventPublisher = new EventPublisher() {
+    long getOpenedAt() {
+        return openedAt;
+    }
+
+    /**
+     * Opens the breaker as it was opened at {@code openedAt} by a previous process, the transition to
+     * HalfOpen happens once the rest of the wait duration passed.
+     */
+    void restoreOpen(long openedAt) {
+        if (!context.open()) {
+            return;
+        }
+        long elapsed = TimeUnit.MILLISECONDS.toNanos(Math.max(0, System.currentTimeMillis() - openedAt));
+        eventPublisher.fireOpenState(openedAt, Math.max(0, waitDurationInOpenState - elapsed));
+    }
+
+    void cancelHalfOpen() {
+        ScheduledFuture<?> transition = halfOpenTransition;
+        if (transition != null) {
+            transition.cancel(false);
+        }
+    }
+
+    private void scheduleHalfOpen(long delay) {
+        if (transitionScheduler == null) {
+            return;
+        }
+        ScheduledFuture<?> previous = halfOpenTransition;
+        if (previous != null) {
+            previous.cancel(false);
+        }
+        halfOpenTransition = transitionScheduler.schedule(this::halfOpen, delay, TimeUnit.NANOSECONDS);
+    }
+
+    private void halfOpen() {
+        if (context.halfOpen(permittedCallsInHalfOpenState)) {
+            eventPublisher.fireHalfOpenState();
+        }
+    }
+
+    private final Publisher eventPublisher = new Publisher();
+
+    private final class Publisher
+            implements EventPublisher {
+
         private final Event OPEN_STATE = new Event(State.Open, AbstractCircuitBreaker.this);
         private final Event HALF_OPEN_STATE = new Event(State.HalfOpen, AbstractCircuitBreaker.this);
         private final Event CLOSED_STATE = new Event(State.Closed, AbstractCircuitBreaker.this);
 
         @Override
         public void fireOpenState() {
+            fireOpenState(System.currentTimeMillis(), waitDurationInOpenState);
+        }
+
+        void fireOpenState(long openedAt, long halfOpenDelay) {
+            // Listeners see Open before a short remaining wait can move the breaker on to HalfOpen
+            AbstractCircuitBreaker.this.openedAt = openedAt;
             fireEvent(OPEN_STATE);
+            scheduleHalfOpen(halfOpenDelay);
         }
 
         @Override
@@ -79,5 +164,5 @@ public abstract class AbstractCircuitBreaker<T>
                 listener.onEvent(event);
             }
         }
-    };
+    }
 }
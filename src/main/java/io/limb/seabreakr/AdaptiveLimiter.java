@@ -0,0 +1,245 @@
+package io.limb.seabreakr;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * Concurrency limit which is adjusted from the round-trip latency of every finished call. The algorithms
+ * compute the limit they would move to after a full window of {@code limit} calls, every sample then moves
+ * the limit by {@code 1 / limit} of that distance, like TCP spreads its window updates over a round trip.
+ * This keeps bursts of samples carrying the same latency from compounding into large swings.
+ * <p>
+ * Vegas and Gradient compare against the lowest latency, taken as the latency of the unloaded backend. Every
+ * {@value #PROBE_INTERVAL} round trips the limit is halved for two round trips to drain the queue in front
+ * of the backend, and the lowest latency measured meanwhile replaces the old one. This way the limit
+ * follows a backend whose unloaded latency grew, e.g. after a failover to a remote replica, instead of
+ * taking the slower backend for a queue.
+ * <p>
+ * All state is updated by CAS, the limit itself is kept as the raw bits of a double so that it can move by
+ * fractions of a call.
+ */
+final class AdaptiveLimiter {
+
+    private static final AtomicLongFieldUpdater<AdaptiveLimiter> LIMIT_UPDATER = //
+            AtomicLongFieldUpdater.newUpdater(AdaptiveLimiter.class, "limit");
+
+    private static final AtomicIntegerFieldUpdater<AdaptiveLimiter> IN_FLIGHT_UPDATER = //
+            AtomicIntegerFieldUpdater.newUpdater(AdaptiveLimiter.class, "inFlight");
+
+    private static final AtomicLongFieldUpdater<AdaptiveLimiter> MIN_RTT_UPDATER = //
+            AtomicLongFieldUpdater.newUpdater(AdaptiveLimiter.class, "minRtt");
+
+    private static final AtomicLongFieldUpdater<AdaptiveLimiter> PROBE_MIN_RTT_UPDATER = //
+            AtomicLongFieldUpdater.newUpdater(AdaptiveLimiter.class, "probeMinRtt");
+
+    private static final AtomicLongFieldUpdater<AdaptiveLimiter> SAMPLES_UPDATER = //
+            AtomicLongFieldUpdater.newUpdater(AdaptiveLimiter.class, "samples");
+
+    private static final AtomicLongFieldUpdater<AdaptiveLimiter> NEXT_PROBE_UPDATER = //
+            AtomicLongFieldUpdater.newUpdater(AdaptiveLimiter.class, "nextProbe");
+
+    private static final AtomicLongFieldUpdater<AdaptiveLimiter> PROBE_END_UPDATER = //
+            AtomicLongFieldUpdater.newUpdater(AdaptiveLimiter.class, "probeEnd");
+
+    private static final AtomicLongFieldUpdater<AdaptiveLimiter> SMOOTHED_RTT_UPDATER = //
+            AtomicLongFieldUpdater.newUpdater(AdaptiveLimiter.class, "smoothedRtt");
+
+    private static final double AIMD_BACKOFF_RATIO = 0.9;
+    private static final double GRADIENT_TOLERANCE = 1.5;
+    private static final double RTT_SMOOTHING = 0.01;
+    private static final int PROBE_INTERVAL = 50;
+
+    private final LimitAlgorithm algorithm;
+    private final int minLimit;
+    private final int maxLimit;
+
+    // Only updated through Atomic Updater, raw bits of a double
+    private volatile long limit;
+
+    // Only updated through Atomic Updater
+    private volatile int inFlight = 0;
+
+    // Only updated through Atomic Updater
+    private volatile long minRtt = Long.MAX_VALUE;
+
+    // Only updated through Atomic Updater, lowest latency measured by the running probe
+    private volatile long probeMinRtt = Long.MAX_VALUE;
+
+    // Only updated through Atomic Updater, number of latency samples
+    private volatile long samples = 0;
+
+    // Only updated through Atomic Updater, sample which starts the next probe
+    private volatile long nextProbe;
+
+    // Only updated through Atomic Updater, sample which ends the running probe, 0 if there is none
+    private volatile long probeEnd = 0;
+
+    // Only updated through Atomic Updater, raw bits of a double, 0 until the first sample
+    private volatile long smoothedRtt = 0;
+
+    AdaptiveLimiter(LimitAlgorithm algorithm, int initialLimit, int minLimit, int maxLimit) {
+        this.algorithm = algorithm;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = Double.doubleToRawLongBits(initialLimit);
+        this.nextProbe = (long) PROBE_INTERVAL * initialLimit;
+    }
+
+    boolean tryAcquire() {
+        while (true) {
+            int inFlight = this.inFlight;
+            int limit = probeEnd == 0 ? getLimit() : Math.max(minLimit, getLimit() / 2);
+            if (inFlight >= limit) {
+                return false;
+            }
+            if (IN_FLIGHT_UPDATER.compareAndSet(this, inFlight, inFlight + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Ends a call which was admitted by {@link #tryAcquire()} and took {@code rtt} nanoseconds. Failed calls
+     * which did not time out are ended by {@link #ignore()} instead.
+     */
+    void release(long rtt, boolean dropped) {
+        int inFlight = IN_FLIGHT_UPDATER.getAndDecrement(this);
+        updateSmoothedRtt(rtt);
+        if (!dropped && updateMinRtt(rtt)) {
+            // The probe holds back calls on purpose, the limit must not follow the lower usage
+            return;
+        }
+
+        while (true) {
+            long bits = this.limit;
+            double limit = Double.longBitsToDouble(bits);
+            double target = targetLimit(limit, inFlight, rtt, dropped);
+            double newLimit = Math.max(minLimit, Math.min(maxLimit, limit + (target - limit) / Math.max(1, limit)));
+            if (newLimit == limit || LIMIT_UPDATER.compareAndSet(this, bits, Double.doubleToRawLongBits(newLimit))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Ends a call which was admitted by {@link #tryAcquire()} and failed before its deadline. A fast failure
+     * says nothing about the load of the backend, so it neither lowers the minimum latency nor moves the limit.
+     */
+    void ignore() {
+        IN_FLIGHT_UPDATER.decrementAndGet(this);
+    }
+
+    int getLimit() {
+        return (int) Double.longBitsToDouble(limit);
+    }
+
+    int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * Smoothed round-trip latency in nanoseconds, 0 before the first call finished.
+     */
+    long getLatencyEstimate() {
+        return (long) Double.longBitsToDouble(smoothedRtt);
+    }
+
+    private double targetLimit(double limit, int inFlight, long rtt, boolean dropped) {
+        switch (algorithm) {
+            case Aimd:
+                return aimd(limit, inFlight, dropped);
+            case Vegas:
+                return vegas(limit, inFlight, rtt, dropped);
+            default:
+                return gradient(limit, inFlight, rtt);
+        }
+    }
+
+    private double aimd(double limit, int inFlight, boolean dropped) {
+        if (dropped) {
+            return limit * AIMD_BACKOFF_RATIO;
+        }
+        // Only grow while the limit is actually used, idle periods must not inflate it
+        if (inFlight * 2 >= limit) {
+            return limit + 1;
+        }
+        return limit;
+    }
+
+    private double vegas(double limit, int inFlight, long rtt, boolean dropped) {
+        double log = Math.max(1, Math.log10(limit));
+        if (dropped) {
+            return limit - log;
+        }
+        if (inFlight * 2 < limit) {
+            return limit;
+        }
+
+        double queueSize = Math.ceil(inFlight * (1 - (double) minRtt / rtt));
+        if (queueSize <= log) {
+            return limit + 6 * log;
+        } else if (queueSize < 3 * log) {
+            return limit + log;
+        } else if (queueSize > 6 * log) {
+            return limit - log;
+        }
+        return limit;
+    }
+
+    private double gradient(double limit, int inFlight, long rtt) {
+        if (inFlight * 2 < limit) {
+            return limit;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, GRADIENT_TOLERANCE * minRtt / rtt));
+        return limit * gradient + Math.sqrt(limit);
+    }
+
+    /**
+     * Records a latency sample, starting or ending a probe when it is due. Returns {@code true} while a probe
+     * runs.
+     */
+    private boolean updateMinRtt(long rtt) {
+        updateMin(MIN_RTT_UPDATER, rtt);
+        if (algorithm == LimitAlgorithm.Aimd) {
+            return false;
+        }
+
+        long sample = SAMPLES_UPDATER.incrementAndGet(this);
+        long probeEnd = this.probeEnd;
+        if (probeEnd == 0) {
+            long nextProbe = this.nextProbe;
+            if (sample < nextProbe || !NEXT_PROBE_UPDATER.compareAndSet(this, nextProbe, Long.MAX_VALUE)) {
+                return false;
+            }
+            PROBE_END_UPDATER.set(this, sample + 2L * getLimit());
+            return true;
+        }
+
+        updateMin(PROBE_MIN_RTT_UPDATER, rtt);
+        if (sample >= probeEnd && PROBE_END_UPDATER.compareAndSet(this, probeEnd, 0)) {
+            MIN_RTT_UPDATER.set(this, PROBE_MIN_RTT_UPDATER.getAndSet(this, Long.MAX_VALUE));
+            NEXT_PROBE_UPDATER.set(this, sample + (long) PROBE_INTERVAL * getLimit());
+        }
+        return true;
+    }
+
+    private void updateMin(AtomicLongFieldUpdater<AdaptiveLimiter> updater, long rtt) {
+        while (true) {
+            long min = updater.get(this);
+            if (rtt >= min || updater.compareAndSet(this, min, rtt)) {
+                return;
+            }
+        }
+    }
+
+    private void updateSmoothedRtt(long rtt) {
+        while (true) {
+            long bits = this.smoothedRtt;
+            double smoothed = Double.longBitsToDouble(bits);
+            double newSmoothed = smoothed == 0 ? rtt : smoothed + (rtt - smoothed) * RTT_SMOOTHING;
+            if (SMOOTHED_RTT_UPDATER.compareAndSet(this, bits, Double.doubleToRawLongBits(newSmoothed))) {
+                return;
+            }
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package io.limb.seabreakr;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.function.LongBinaryOperator;
 
@@ -11,9 +14,9 @@ final class BitRing {
     private final int bits;
 
     BitRing(int bits) {
-        Preconditions.requireNonNegativeInt(bits, "bits must not be negative");
+        Preconditions.requireGreaterEquals(bits, 1, "bits must be greater or equal to 1");
         this.words = words(bits);
-        this.bits = this.words.length() * NUM_BITS_PER_WORD;
+        this.bits = bits;
     }
 
     boolean get(long bit) {
@@ -21,12 +24,20 @@ final class BitRing {
         return (word & mask(bit)) != 0;
     }
 
-    void set(long bit) {
-        set(bit, (w, m) -> w | m);
+    /**
+     * Sets the bit at the given ring position and returns its previous value. Positions wrap
+     * around the ring size.
+     */
+    boolean set(long bit) {
+        return set(bit, (w, m) -> w | m);
     }
 
-    void clear(long bit) {
-        set(bit, (w, m) -> w & ~m);
+    /**
+     * Clears the bit at the given ring position and returns its previous value. Positions wrap
+     * around the ring size.
+     */
+    boolean clear(long bit) {
+        return set(bit, (w, m) -> w & ~m);
     }
 
     void reset() {
@@ -35,6 +46,38 @@ final class BitRing {
         }
     }
 
+    void writeTo(DataOutput out)
+            throws IOException {
+
+        out.writeInt(bits);
+        for (int i = 0; i < words.length(); i++) {
+            out.writeLong(words.get(i));
+        }
+    }
+
+    /**
+     * Reads the words written by {@link #writeTo(DataOutput)}, {@code null} if they belong to a ring of a
+     * different size.
+     */
+    long[] readWords(DataInput in)
+            throws IOException {
+
+        if (in.readInt() != bits) {
+            return null;
+        }
+        long[] words = new long[this.words.length()];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = in.readLong();
+        }
+        return words;
+    }
+
+    void setWords(long[] words) {
+        for (int i = 0; i < words.length; i++) {
+            this.words.set(i, words[i]);
+        }
+    }
+
     int cardinality() {
         int cardinality = 0;
         for (int i = 0; i < words.length(); i++) {
@@ -56,31 +99,31 @@ final class BitRing {
         return sb.toString();
     }
 
-    private void set(long bit, LongBinaryOperator calculator) {
+    private boolean set(long bit, LongBinaryOperator calculator) {
         int index = index(bit);
         long mask = mask(bit);
         while (true) {
             long oldWord = words.get(index);
             long newWord = calculator.applyAsLong(oldWord, mask);
-            if (words.compareAndSet(index, oldWord, newWord)) {
-                return;
+            if (oldWord == newWord || words.compareAndSet(index, oldWord, newWord)) {
+                return (oldWord & mask) != 0;
             }
         }
     }
 
     private int index(long bit) {
-        return (int) (bit / NUM_BITS_PER_WORD);
+        return slot(bit) / NUM_BITS_PER_WORD;
     }
 
-    private int offset(long bit) {
-        return (int) (bit % NUM_BITS_PER_WORD);
+    private long mask(long bit) {
+        return 1L << (slot(bit) % NUM_BITS_PER_WORD);
     }
 
-    private long mask(long bit) {
-        return 1L << offset(bit);
+    private int slot(long bit) {
+        return (int) Long.remainderUnsigned(bit, bits);
     }
 
-    private AtomicLongArray words(int bits) {
-        return new AtomicLongArray(new long[index(bits - 1) + 1]);
+    private static AtomicLongArray words(int bits) {
+        return new AtomicLongArray((bits - 1) / NUM_BITS_PER_WORD + 1);
     }
 }
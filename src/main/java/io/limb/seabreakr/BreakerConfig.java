@@ -0,0 +1,182 @@
+package io.limb.seabreakr;
+
+import io.limb.seabreakr.spi.ContextFactory;
+import io.limb.seabreakr.spi.Strategy;
+import reactor.core.scheduler.Scheduler;
+
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Immutable settings of a circuit breaker, resolved once by the builder and shared by both proxy engines.
+ * Timeout and wait duration are in nanoseconds.
+ */
+final class BreakerConfig<T> {
+
+    private final Class<T> type;
+    private final String name;
+    private final Strategy strategy;
+    private final T backend;
+    private final T failover;
+    private final long timeout;
+    private final EventDispatcher events;
+    private final boolean callThrough;
+    private final boolean methodLatencies;
+    private final Scheduler scheduler;
+    private final ExecutionMode executionMode;
+    private final SlidingWindow slidingWindow;
+    private final ContextFactory contextFactory;
+    private final ScheduledExecutorService transitionScheduler;
+    private final long waitDurationInOpenState;
+    private final int permittedCallsInHalfOpenState;
+    private final Bulkhead bulkhead;
+    private final Retry retry;
+    private final RateLimit rateLimit;
+    private final Hedge hedge;
+    private final Set<String> hedgedMethods;
+    private final Set<String> coalescedMethods;
+    private final ResponseCache cache;
+    private final Streaming streaming;
+    private final FlightRecorder flightRecorder;
+
+    BreakerConfig(Class<T> type, String name, Strategy strategy, T backend, T failover, long timeout,
+                  EventDispatcher events, boolean callThrough, boolean methodLatencies, Scheduler scheduler,
+                  ExecutionMode executionMode, SlidingWindow slidingWindow, ContextFactory contextFactory,
+                  ScheduledExecutorService transitionScheduler, long waitDurationInOpenState,
+                  int permittedCallsInHalfOpenState, Bulkhead bulkhead, Retry retry, RateLimit rateLimit, Hedge hedge,
+                  Set<String> hedgedMethods, Set<String> coalescedMethods, ResponseCache cache, Streaming streaming,
+                  FlightRecorder flightRecorder) {
+
+        this.type = type;
+        this.name = name;
+        this.strategy = strategy;
+        this.backend = backend;
+        this.failover = failover;
+        this.timeout = timeout;
+        this.events = events;
+        this.callThrough = callThrough;
+        this.methodLatencies = methodLatencies;
+        this.scheduler = scheduler;
+        this.executionMode = executionMode;
+        this.slidingWindow = slidingWindow;
+        this.contextFactory = contextFactory;
+        this.transitionScheduler = transitionScheduler;
+        this.waitDurationInOpenState = waitDurationInOpenState;
+        this.permittedCallsInHalfOpenState = permittedCallsInHalfOpenState;
+        this.bulkhead = bulkhead;
+        this.retry = retry;
+        this.rateLimit = rateLimit;
+        this.hedge = hedge;
+        this.hedgedMethods = hedgedMethods;
+        this.coalescedMethods = coalescedMethods;
+        this.cache = cache;
+        this.streaming = streaming;
+        this.flightRecorder = flightRecorder;
+    }
+
+    Class<T> getType() {
+        return type;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    Strategy getStrategy() {
+        return strategy;
+    }
+
+    T getBackend() {
+        return backend;
+    }
+
+    T getFailover() {
+        return failover;
+    }
+
+    long getTimeout() {
+        return timeout;
+    }
+
+    EventDispatcher getEvents() {
+        return events;
+    }
+
+    boolean isCallThrough() {
+        return callThrough;
+    }
+
+    boolean isMethodLatencies() {
+        return methodLatencies;
+    }
+
+    Scheduler getScheduler() {
+        return scheduler;
+    }
+
+    ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
+    SlidingWindow getSlidingWindow() {
+        return slidingWindow;
+    }
+
+    ContextFactory getContextFactory() {
+        return contextFactory;
+    }
+
+    ScheduledExecutorService getTransitionScheduler() {
+        return transitionScheduler;
+    }
+
+    long getWaitDurationInOpenState() {
+        return waitDurationInOpenState;
+    }
+
+    int getPermittedCallsInHalfOpenState() {
+        return permittedCallsInHalfOpenState;
+    }
+
+    Bulkhead getBulkhead() {
+        return bulkhead;
+    }
+
+    Retry getRetry() {
+        return retry;
+    }
+
+    RateLimit getRateLimit() {
+        return rateLimit;
+    }
+
+    Hedge getHedge() {
+        return hedge;
+    }
+
+    /**
+     * Names of the methods which are hedged, only used if the hedge is enabled.
+     */
+    Set<String> getHedgedMethods() {
+        return hedgedMethods;
+    }
+
+    Set<String> getCoalescedMethods() {
+        return coalescedMethods;
+    }
+
+    ResponseCache getCache() {
+        return cache;
+    }
+
+    Streaming getStreaming() {
+        return streaming;
+    }
+
+    /**
+     * Recorder the breaker registers with, {@code null} if flight recording is disabled.
+     */
+    FlightRecorder getFlightRecorder() {
+        return flightRecorder;
+    }
+}
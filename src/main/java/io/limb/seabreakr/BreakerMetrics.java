@@ -0,0 +1,159 @@
+package io.limb.seabreakr;
+
+/**
+ * Metrics of a circuit breaker, combining the sliding window of the context with the latencies and
+ * state of the stages the breaker runs calls through.
+ */
+final class BreakerMetrics
+        implements Metrics {
+
+    private final Metrics windowMetrics;
+    private final LatencyHistogram latencies;
+    private final BulkheadStage bulkhead;
+    private final RetryStage retry;
+    private final RateLimiter rateLimiter;
+    private final HedgeStage hedge;
+    private final CoalescingStage coalescing;
+    private final ResponseCacheStage cache;
+    private final EventDispatcher events;
+
+    BreakerMetrics(Metrics windowMetrics, LatencyHistogram latencies, BulkheadStage bulkhead, RetryStage retry,
+                   RateLimiter rateLimiter, HedgeStage hedge, CoalescingStage coalescing, ResponseCacheStage cache,
+                   EventDispatcher events) {
+
+        this.windowMetrics = windowMetrics;
+        this.latencies = latencies;
+        this.bulkhead = bulkhead;
+        this.retry = retry;
+        this.rateLimiter = rateLimiter;
+        this.hedge = hedge;
+        this.coalescing = coalescing;
+        this.cache = cache;
+        this.events = events;
+    }
+
+    @Override
+    public float getFailureRate() {
+        return windowMetrics.getFailureRate();
+    }
+
+    @Override
+    public long getNumberOfFailedEvents() {
+        return windowMetrics.getNumberOfFailedEvents();
+    }
+
+    @Override
+    public long getNumberOfBufferedEvents() {
+        return windowMetrics.getNumberOfBufferedEvents();
+    }
+
+    @Override
+    public float getSlowCallRate() {
+        return windowMetrics.getSlowCallRate();
+    }
+
+    @Override
+    public long getNumberOfSlowEvents() {
+        return windowMetrics.getNumberOfSlowEvents();
+    }
+
+    @Override
+    public long getNumberOfRejectedCalls() {
+        return bulkhead.getNumberOfRejectedCalls();
+    }
+
+    @Override
+    public int getConcurrencyLimit() {
+        return bulkhead.getConcurrencyLimit();
+    }
+
+    @Override
+    public int getNumberOfInFlightCalls() {
+        return bulkhead.getNumberOfInFlightCalls();
+    }
+
+    @Override
+    public long getLatencyEstimate() {
+        return bulkhead.getLatencyEstimate();
+    }
+
+    @Override
+    public long getNumberOfRetries() {
+        return retry.getNumberOfRetries();
+    }
+
+    @Override
+    public long getNumberOfSuppressedRetries() {
+        return retry.getNumberOfSuppressedRetries();
+    }
+
+    @Override
+    public long getNumberOfRateLimitedCalls() {
+        return rateLimiter.getNumberOfRateLimitedCalls();
+    }
+
+    @Override
+    public long getNumberOfHedges() {
+        return hedge.getNumberOfHedges();
+    }
+
+    @Override
+    public long getNumberOfHedgeWins() {
+        return hedge.getNumberOfHedgeWins();
+    }
+
+    @Override
+    public float getHedgeRate() {
+        return hedge.getHedgeRate();
+    }
+
+    @Override
+    public long getNumberOfCoalescedCalls() {
+        return coalescing.getNumberOfCoalescedCalls();
+    }
+
+    @Override
+    public float getCoalescingRate() {
+        return coalescing.getCoalescingRate();
+    }
+
+    @Override
+    public float getCacheHitRate() {
+        return cache.getHitRate();
+    }
+
+    @Override
+    public long getNumberOfCacheEvictions() {
+        return cache.getNumberOfEvictions();
+    }
+
+    @Override
+    public long getNumberOfStaleServes() {
+        return cache.getNumberOfStaleServes();
+    }
+
+    @Override
+    public long getNumberOfDroppedEvents() {
+        return events.getNumberOfDroppedEvents();
+    }
+
+    @Override
+    public LatencySnapshot getLatencySnapshot() {
+        return latencies.snapshot();
+    }
+
+    @Override
+    public LatencySnapshot getIntervalLatencySnapshot() {
+        return latencies.intervalSnapshot();
+    }
+
+    @Override
+    public long getLatencyPercentile(double percentile) {
+        return latencies.getPercentile(percentile);
+    }
+
+    @Override
+    public long getMaxLatency() {
+        return latencies.getMax();
+    }
+}
@@ -0,0 +1,193 @@
+package io.limb.seabreakr;
+
+/**
+ * Metrics of a single breaker copied by {@link CircuitBreakerRegistry#snapshot()}. Every value is read
+ * without locking, so values of one snapshot may stem from slightly different moments. Taking a snapshot
+ * never starts a new latency interval of the breaker, so a snapshot has no interval latencies.
+ */
+public final class BreakerSnapshot
+        implements Metrics {
+
+    private final String name;
+    private final State state;
+    private final float failureRate;
+    private final long numberOfFailedEvents;
+    private final long numberOfBufferedEvents;
+    private final float slowCallRate;
+    private final long numberOfSlowEvents;
+    private final long numberOfRejectedCalls;
+    private final int concurrencyLimit;
+    private final int numberOfInFlightCalls;
+    private final long latencyEstimate;
+    private final long numberOfRetries;
+    private final long numberOfSuppressedRetries;
+    private final long numberOfRateLimitedCalls;
+    private final long numberOfHedges;
+    private final long numberOfHedgeWins;
+    private final float hedgeRate;
+    private final long numberOfCoalescedCalls;
+    private final float coalescingRate;
+    private final float cacheHitRate;
+    private final long numberOfCacheEvictions;
+    private final long numberOfStaleServes;
+    private final long numberOfDroppedEvents;
+    private final LatencySnapshot latencySnapshot;
+
+    BreakerSnapshot(String name, State state, Metrics metrics) {
+        this.name = name;
+        this.state = state;
+        this.failureRate = metrics.getFailureRate();
+        this.numberOfFailedEvents = metrics.getNumberOfFailedEvents();
+        this.numberOfBufferedEvents = metrics.getNumberOfBufferedEvents();
+        this.slowCallRate = metrics.getSlowCallRate();
+        this.numberOfSlowEvents = metrics.getNumberOfSlowEvents();
+        this.numberOfRejectedCalls = metrics.getNumberOfRejectedCalls();
+        this.concurrencyLimit = metrics.getConcurrencyLimit();
+        this.numberOfInFlightCalls = metrics.getNumberOfInFlightCalls();
+        this.latencyEstimate = metrics.getLatencyEstimate();
+        this.numberOfRetries = metrics.getNumberOfRetries();
+        this.numberOfSuppressedRetries = metrics.getNumberOfSuppressedRetries();
+        this.numberOfRateLimitedCalls = metrics.getNumberOfRateLimitedCalls();
+        this.numberOfHedges = metrics.getNumberOfHedges();
+        this.numberOfHedgeWins = metrics.getNumberOfHedgeWins();
+        this.hedgeRate = metrics.getHedgeRate();
+        this.numberOfCoalescedCalls = metrics.getNumberOfCoalescedCalls();
+        this.coalescingRate = metrics.getCoalescingRate();
+        this.cacheHitRate = metrics.getCacheHitRate();
+        this.numberOfCacheEvictions = metrics.getNumberOfCacheEvictions();
+        this.numberOfStaleServes = metrics.getNumberOfStaleServes();
+        this.numberOfDroppedEvents = metrics.getNumberOfDroppedEvents();
+        this.latencySnapshot = metrics.getLatencySnapshot();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    @Override
+    public float getFailureRate() {
+        return failureRate;
+    }
+
+    @Override
+    public long getNumberOfFailedEvents() {
+        return numberOfFailedEvents;
+    }
+
+    @Override
+    public long getNumberOfBufferedEvents() {
+        return numberOfBufferedEvents;
+    }
+
+    @Override
+    public float getSlowCallRate() {
+        return slowCallRate;
+    }
+
+    @Override
+    public long getNumberOfSlowEvents() {
+        return numberOfSlowEvents;
+    }
+
+    @Override
+    public long getNumberOfRejectedCalls() {
+        return numberOfRejectedCalls;
+    }
+
+    @Override
+    public int getConcurrencyLimit() {
+        return concurrencyLimit;
+    }
+
+    @Override
+    public int getNumberOfInFlightCalls() {
+        return numberOfInFlightCalls;
+    }
+
+    @Override
+    public long getLatencyEstimate() {
+        return latencyEstimate;
+    }
+
+    @Override
+    public long getNumberOfRetries() {
+        return numberOfRetries;
+    }
+
+    @Override
+    public long getNumberOfSuppressedRetries() {
+        return numberOfSuppressedRetries;
+    }
+
+    @Override
+    public long getNumberOfRateLimitedCalls() {
+        return numberOfRateLimitedCalls;
+    }
+
+    @Override
+    public long getNumberOfHedges() {
+        return numberOfHedges;
+    }
+
+    @Override
+    public long getNumberOfHedgeWins() {
+        return numberOfHedgeWins;
+    }
+
+    @Override
+    public float getHedgeRate() {
+        return hedgeRate;
+    }
+
+    @Override
+    public long getNumberOfCoalescedCalls() {
+        return numberOfCoalescedCalls;
+    }
+
+    @Override
+    public float getCoalescingRate() {
+        return coalescingRate;
+    }
+
+    @Override
+    public float getCacheHitRate() {
+        return cacheHitRate;
+    }
+
+    @Override
+    public long getNumberOfCacheEvictions() {
+        return numberOfCacheEvictions;
+    }
+
+    @Override
+    public long getNumberOfStaleServes() {
+        return numberOfStaleServes;
+    }
+
+    @Override
+    public long getNumberOfDroppedEvents() {
+        return numberOfDroppedEvents;
+    }
+
+    @Override
+    public LatencySnapshot getLatencySnapshot() {
+        return latencySnapshot;
+    }
+
+    @Override
+    public LatencySnapshot getIntervalLatencySnapshot() {
+        return LatencySnapshot.EMPTY;
+    }
+
+    @Override
+    public String toString() {
+        return "BreakerSnapshot{" + "name=" + name + ", state=" + state + ", failureRate=" + failureRate
+                + ", numberOfBufferedEvents=" + numberOfBufferedEvents + ", slowCallRate=" + slowCallRate
+                + ", numberOfRejectedCalls=" + numberOfRejectedCalls + ", numberOfInFlightCalls="
+                + numberOfInFlightCalls + '}';
+    }
+}
@@ -0,0 +1,177 @@
+package io.limb.seabreakr;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Configuration of the bulkhead which limits the number of concurrent calls a breaker sends to its
+ * backend. Calls rejected by the bulkhead are sent to the failover, or fail with a
+ * {@link BulkheadFullException} if there is none. Rejections are counted in
+ * {@link Metrics#getNumberOfRejectedCalls()} and are not reported to the strategy as failures.
+ */
+public final class Bulkhead {
+
+    public static final int DEFAULT_INITIAL_LIMIT = 20;
+
+    public static final int DEFAULT_MIN_LIMIT = 1;
+
+    public static final int DEFAULT_MAX_LIMIT = 1000;
+
+    private static final Bulkhead NONE = new Bulkhead(Type.None, 0, 0, 0, null, 0, 0);
+
+    public enum Type {
+        /**
+         * Calls are not limited.
+         */
+        None,
+
+        /**
+         * At most {@code maxConcurrentCalls} calls are in flight, further synchronous calls wait up to
+         * {@code maxWaitDuration} for a permit. Reactive calls never wait, their permit is returned when
+         * the backend publisher terminates or is cancelled at the deadline.
+         */
+        Semaphore,
+
+        /**
+         * Calls run on a dedicated pool of {@code maxConcurrentCalls} threads with a queue of
+         * {@code queueCapacity} calls, reactive calls are subscribed on the pool and hold their thread until
+         * the backend publisher terminates. Cannot be combined with {@link ExecutionMode#Direct} or
+         * {@link ExecutionMode#Virtual}.
+         */
+        ThreadPool,
+
+        /**
+         * At most {@code limit} calls are in flight, where the limit is adjusted between {@code minLimit}
+         * and {@code maxLimit} by the {@link LimitAlgorithm} from the latency of the successful calls. Calls
+         * beyond the deadline count as drops, other failed calls are ignored. Calls never wait for a permit.
+         */
+        Adaptive
+    }
+
+    private final Type type;
+    private final int maxConcurrentCalls;
+    private final long maxWaitDuration;
+    private final int queueCapacity;
+    private final LimitAlgorithm limitAlgorithm;
+    private final int minLimit;
+    private final int maxLimit;
+
+    private Bulkhead(Type type, int maxConcurrentCalls, long maxWaitDuration, int queueCapacity,
+                     LimitAlgorithm limitAlgorithm, int minLimit, int maxLimit) {
+
+        this.type = type;
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        this.maxWaitDuration = maxWaitDuration;
+        this.queueCapacity = queueCapacity;
+        this.limitAlgorithm = limitAlgorithm;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+    }
+
+    public static Bulkhead none() {
+        return NONE;
+    }
+
+    public static Bulkhead semaphore(int maxConcurrentCalls) {
+        return semaphore(maxConcurrentCalls, 0, TimeUnit.NANOSECONDS);
+    }
+
+    public static Bulkhead semaphore(int maxConcurrentCalls, long maxWaitDuration, TimeUnit timeUnit) {
+        Objects.requireNonNull(timeUnit, "timeUnit cannot be null");
+        Preconditions.requireGreaterEquals(maxConcurrentCalls, 1, "maxConcurrentCalls must be greater or equal to 1");
+        Preconditions.requireGreaterEquals(maxWaitDuration, 0, "maxWaitDuration must be greater or equal to 0");
+        return new Bulkhead(Type.Semaphore, maxConcurrentCalls, timeUnit.toNanos(maxWaitDuration), 0, null, 0, 0);
+    }
+
+    public static Bulkhead threadPool(int maxThreads, int queueCapacity) {
+        Preconditions.requireGreaterEquals(maxThreads, 1, "maxThreads must be greater or equal to 1");
+        Preconditions.requireGreaterEquals(queueCapacity, 0, "queueCapacity must be greater or equal to 0");
+        return new Bulkhead(Type.ThreadPool, maxThreads, 0, queueCapacity, null, 0, 0);
+    }
+
+    public static Bulkhead adaptive(LimitAlgorithm limitAlgorithm) {
+        return adaptive(limitAlgorithm, DEFAULT_INITIAL_LIMIT, DEFAULT_MIN_LIMIT, DEFAULT_MAX_LIMIT);
+    }
+
+    public static Bulkhead adaptive(LimitAlgorithm limitAlgorithm, int initialLimit, int minLimit, int maxLimit) {
+        Objects.requireNonNull(limitAlgorithm, "limitAlgorithm cannot be null");
+        Preconditions.requireGreaterEquals(minLimit, 1, "minLimit must be greater or equal to 1");
+        Preconditions.requireGreaterEquals(maxLimit, minLimit, "maxLimit must be greater or equal to minLimit");
+        Preconditions.requireGreaterEquals(initialLimit, minLimit, "initialLimit must be greater or equal to minLimit");
+        Preconditions.requireGreaterEquals(maxLimit, initialLimit, "initialLimit must be less or equal to maxLimit");
+        return new Bulkhead(Type.Adaptive, initialLimit, 0, 0, limitAlgorithm, minLimit, maxLimit);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Number of permits for semaphore bulkheads, number of threads for thread pool bulkheads, initial limit
+     * for adaptive bulkheads.
+     */
+    public int getMaxConcurrentCalls() {
+        return maxConcurrentCalls;
+    }
+
+    /**
+     * Time in nanoseconds a synchronous call waits for a permit of a semaphore bulkhead.
+     */
+    public long getMaxWaitDuration() {
+        return maxWaitDuration;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * Algorithm of an adaptive bulkhead, {@code null} for other types.
+     */
+    public LimitAlgorithm getLimitAlgorithm() {
+        return limitAlgorithm;
+    }
+
+    public int getMinLimit() {
+        return minLimit;
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        Bulkhead that = (Bulkhead) o;
+
+        if (maxConcurrentCalls != that.maxConcurrentCalls) return false;
+        if (maxWaitDuration != that.maxWaitDuration) return false;
+        if (queueCapacity != that.queueCapacity) return false;
+        if (minLimit != that.minLimit) return false;
+        if (maxLimit != that.maxLimit) return false;
+        if (limitAlgorithm != that.limitAlgorithm) return false;
+        return type == that.type;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = type.hashCode();
+        result = 31 * result + maxConcurrentCalls;
+        result = 31 * result + (int) (maxWaitDuration ^ (maxWaitDuration >>> 32));
+        result = 31 * result + queueCapacity;
+        result = 31 * result + (limitAlgorithm != null ? limitAlgorithm.hashCode() : 0);
+        result = 31 * result + minLimit;
+        result = 31 * result + maxLimit;
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "Bulkhead{" + "type=" + type + ", maxConcurrentCalls=" + maxConcurrentCalls + ", maxWaitDuration="
+                + maxWaitDuration + ", queueCapacity=" + queueCapacity + ", limitAlgorithm=" + limitAlgorithm
+                + ", minLimit=" + minLimit + ", maxLimit=" + maxLimit + '}';
+    }
+}
@@ -0,0 +1,181 @@
+package io.limb.seabreakr;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runtime part of a {@link Bulkhead}, one instance per breaker. Semaphore bulkheads hand out permits
+ * which synchronous calls return once the backend call finished, not once the caller stopped waiting for
+ * it, so calls which outlived their deadline still count against the limit. Reactive calls return their
+ * permit when the backend publisher terminates or is cancelled, which happens at the latest at the
+ * deadline. Adaptive bulkheads do the same with a limit which follows the round-trip latency of the
+ * released calls. Thread pool bulkheads execute the backend calls on their own bounded executor, reactive
+ * calls hold a pool thread until the backend publisher terminated.
+ */
+final class BulkheadStage {
+
+    private static final AtomicInteger POOL_COUNTER = new AtomicInteger();
+
+    private final LongAdder rejections = new LongAdder();
+
+    private final Bulkhead bulkhead;
+    private final Semaphore semaphore;
+    private final AdaptiveLimiter limiter;
+    private final ThreadPoolExecutor executor;
+    private final long timeout;
+
+    BulkheadStage(Bulkhead bulkhead, String name, long timeout) {
+        this.bulkhead = bulkhead;
+        this.timeout = timeout;
+        this.semaphore = bulkhead.getType() == Bulkhead.Type.Semaphore //
+                ? new Semaphore(bulkhead.getMaxConcurrentCalls()) : null;
+
+        this.limiter = bulkhead.getType() == Bulkhead.Type.Adaptive //
+                ? new AdaptiveLimiter(bulkhead.getLimitAlgorithm(), bulkhead.getMaxConcurrentCalls(),
+                bulkhead.getMinLimit(), bulkhead.getMaxLimit()) : null;
+
+        this.executor = bulkhead.getType() == Bulkhead.Type.ThreadPool ? newExecutor(bulkhead, name) : null;
+    }
+
+    /**
+     * Lets the threads of a thread pool bulkhead finish their calls and terminate.
+     */
+    void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    boolean isThreadPool() {
+        return executor != null;
+    }
+
+    /**
+     * Takes a permit of a semaphore or adaptive bulkhead, synchronous callers may wait up to the configured
+     * duration for a semaphore permit. Always succeeds for other bulkhead types.
+     */
+    boolean tryAcquire(boolean mayWait) {
+        if (limiter != null) {
+            return limiter.tryAcquire();
+        }
+        if (semaphore == null) {
+            return true;
+        }
+        long maxWaitDuration = bulkhead.getMaxWaitDuration();
+        if (!mayWait || maxWaitDuration == 0) {
+            return semaphore.tryAcquire();
+        }
+        try {
+            return semaphore.tryAcquire(maxWaitDuration, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Returns the permit of a call which started at {@code start}, a call which took longer than the
+     * deadline counts as a drop for the adaptive limit. Only the latencies of successful calls are samples
+     * of the adaptive limit, other failed calls are ignored.
+     */
+    void release(long start, boolean failed) {
+        if (semaphore != null) {
+            semaphore.release();
+        } else if (limiter != null) {
+            long rtt = System.nanoTime() - start;
+            if (rtt >= timeout) {
+                limiter.release(rtt, true);
+            } else if (failed) {
+                limiter.ignore();
+            } else {
+                limiter.release(rtt, false);
+            }
+        }
+    }
+
+    /**
+     * Returns a permit which learns the outcome of a reactive call before it is released.
+     */
+    Permit newPermit(long start) {
+        return new Permit(this, start);
+    }
+
+    Executor getExecutor() {
+        return executor;
+    }
+
+    void recordRejection() {
+        rejections.increment();
+    }
+
+    long getNumberOfRejectedCalls() {
+        return rejections.sum();
+    }
+
+    int getConcurrencyLimit() {
+        if (limiter != null) {
+            return limiter.getLimit();
+        }
+        return bulkhead.getMaxConcurrentCalls();
+    }
+
+    int getNumberOfInFlightCalls() {
+        if (limiter != null) {
+            return limiter.getInFlight();
+        }
+        if (semaphore != null) {
+            return bulkhead.getMaxConcurrentCalls() - semaphore.availablePermits();
+        }
+        return executor != null ? executor.getActiveCount() : 0;
+    }
+
+    long getLatencyEstimate() {
+        return limiter != null ? limiter.getLatencyEstimate() : 0;
+    }
+
+    static final class Permit {
+
+        private final BulkheadStage bulkhead;
+        private final long start;
+
+        private volatile boolean failed;
+
+        private Permit(BulkheadStage bulkhead, long start) {
+            this.bulkhead = bulkhead;
+            this.start = start;
+        }
+
+        void onError(Throwable error) {
+            failed = true;
+        }
+
+        void release() {
+            bulkhead.release(start, failed);
+        }
+    }
+
+    private static ThreadPoolExecutor newExecutor(Bulkhead bulkhead, String name) {
+        String prefix = "SeaBreakr-Bulkhead-" + name + "-" + POOL_COUNTER.incrementAndGet() + "-";
+        AtomicInteger threadCounter = new AtomicInteger();
+
+        int queueCapacity = bulkhead.getQueueCapacity();
+        BlockingQueue<Runnable> queue = queueCapacity == 0 //
+                ? new SynchronousQueue<>() : new ArrayBlockingQueue<>(queueCapacity);
+
+        int maxThreads = bulkhead.getMaxConcurrentCalls();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(maxThreads, maxThreads, 60, TimeUnit.SECONDS, queue, (r) -> {
+            Thread thread = new Thread(r, prefix + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
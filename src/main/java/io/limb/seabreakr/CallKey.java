@@ -0,0 +1,39 @@
+package io.limb.seabreakr;
+
+import java.util.Arrays;
+
+/**
+ * Method and arguments of a call, arguments are compared deeply so that array arguments with equal
+ * content are equal calls. Keys which outlive the call, e.g. in a map, must be created by
+ * {@link #copyOf(MethodPlan, Object[])}, since callers may reuse the arguments array.
+ */
+final class CallKey {
+
+    private final MethodPlan plan;
+    private final Object[] args;
+    private final int hashCode;
+
+    CallKey(MethodPlan plan, Object[] args) {
+        this.plan = plan;
+        this.args = args;
+        this.hashCode = 31 * plan.hashCode() + Arrays.deepHashCode(args);
+    }
+
+    static CallKey copyOf(MethodPlan plan, Object[] args) {
+        return new CallKey(plan, args != null ? args.clone() : null);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        CallKey that = (CallKey) o;
+        return plan == that.plan && Arrays.deepEquals(args, that.args);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+}
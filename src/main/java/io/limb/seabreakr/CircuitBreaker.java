@@ -2,6 +2,7 @@ package io.limb.seabreakr;
 
 import io.limb.seabreakr.spi.Strategy;
 
+import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 
 public interface CircuitBreaker {
@@ -16,8 +17,24 @@ public interface CircuitBreaker {
 
     Class<?> getType();
 
+    /**
+     * Name of the breaker in thread names, flight records, gossip and snapshots, defaults to the simple
+     * name of the service interface.
+     */
+    default String getName() {
+        return getType().getSimpleName();
+    }
+
     Metrics getMetrics();
 
+    /**
+     * Returns the metrics of the given service method. Latencies are tracked per method if method latencies
+     * are enabled on the builder, the sliding window is always shared by all methods of the breaker.
+     */
+    default Metrics getMetrics(Method method) {
+        return getMetrics();
+    }
+
     static <T> CircuitBreakerBuilder<T> newBuilder(ServiceType<T> serviceType) {
         return new CircuitBreakerBuilderImpl<>(serviceType);
     }
@@ -38,6 +55,8 @@ public interface CircuitBreaker {
         Object handler = object;
         if (Proxy.isProxyClass(handler.getClass())) {
             handler = Proxy.getInvocationHandler(handler);
+        } else if (handler instanceof GeneratedProxy) {
+            handler = ((GeneratedProxy) handler).getMethodDispatcher();
         }
         if (handler instanceof CircuitBreaker) {
             return (CircuitBreaker) handler;
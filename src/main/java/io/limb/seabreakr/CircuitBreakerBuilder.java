@@ -1,5 +1,6 @@
 package io.limb.seabreakr;
 
+import io.limb.seabreakr.spi.ContextFactory;
 import io.limb.seabreakr.spi.EventListener;
 import reactor.core.scheduler.Scheduler;
 
@@ -18,7 +19,99 @@ public interface CircuitBreakerBuilder<T> {
 
     CircuitBreakerBuilder<T> disableCallThrough();
 
+    CircuitBreakerBuilder<T> enableMethodLatencies();
+
+    CircuitBreakerBuilder<T> disableMethodLatencies();
+
     CircuitBreakerBuilder<T> scheduler(Scheduler scheduler);
 
+    CircuitBreakerBuilder<T> proxyEngine(ProxyEngine proxyEngine);
+
+    CircuitBreakerBuilder<T> executionMode(ExecutionMode executionMode);
+
+    CircuitBreakerBuilder<T> contextFactory(ContextFactory contextFactory);
+
+    CircuitBreakerBuilder<T> slidingWindow(SlidingWindow slidingWindow);
+
+    CircuitBreakerBuilder<T> bulkhead(Bulkhead bulkhead);
+
+    /**
+     * Retries of failed backend calls, defaults to {@link Retry#none()}. Retries run within the timeout
+     * of the call and every retry takes a permit of the bulkhead.
+     */
+    CircuitBreakerBuilder<T> retry(Retry retry);
+
+    /**
+     * Caps the calls sent to the backend, defaults to {@link RateLimit#none()}. The rate limit is checked
+     * before the breaker state, a call over the limit never takes a trial permit.
+     */
+    CircuitBreakerBuilder<T> rateLimit(RateLimit rateLimit);
+
+    /**
+     * Hedges calls of the given methods, defaults to {@link Hedge#none()}. Only idempotent methods may be
+     * hedged, since the backend can see a call twice.
+     */
+    CircuitBreakerBuilder<T> hedge(Hedge hedge, String... idempotentMethods);
+
+    /**
+     * Concurrent calls of the given methods with equal arguments share a single backend call and its result,
+     * methods may also be marked with {@link Coalesced}. Arguments must not be modified while calls are in
+     * flight.
+     */
+    CircuitBreakerBuilder<T> coalesce(String... methods);
+
+    /**
+     * Response cache in front of the backend, defaults to {@link ResponseCache#none()}. Only methods without
+     * side effects should be cached.
+     */
+    CircuitBreakerBuilder<T> cache(ResponseCache cache);
+
+    /**
+     * Deadlines and failover of methods returning a {@code Flux}, defaults to {@link Streaming#defaults()}.
+     */
+    CircuitBreakerBuilder<T> streaming(Streaming streaming);
+
+    /**
+     * Delivery of events to the listeners, defaults to {@link EventDispatch#synchronous()}.
+     */
+    CircuitBreakerBuilder<T> eventDispatch(EventDispatch eventDispatch);
+
+    /**
+     * Records the outcome of every call into the given recorder, which may be shared by up to 63 breakers,
+     * building a further breaker on it fails. Disabled by default.
+     */
+    CircuitBreakerBuilder<T> flightRecorder(FlightRecorder flightRecorder);
+
+    /**
+     * Gossips the state of the breaker to the peers of the given node and lets the policy open it early
+     * based on the state of the peers. Breakers are matched across nodes by their {@link #name(String) name}.
+     * Disabled by default.
+     */
+    CircuitBreakerBuilder<T> gossip(GossipNode node, GossipPolicy policy);
+
+    /**
+     * Restores the breaker from the snapshot the previous process wrote into the store and keeps its
+     * snapshot up to date. Breakers are matched by their {@link #name(String) name}. Disabled by default.
+     */
+    CircuitBreakerBuilder<T> snapshotStore(SnapshotStore snapshotStore);
+
+    /**
+     * Name of the breaker in thread names, flight records, gossip and snapshots, defaults to the simple name
+     * of the service interface. Breakers of the same interface need distinct names to share a gossip node
+     * or snapshot store.
+     */
+    CircuitBreakerBuilder<T> name(String name);
+
+    /**
+     * Time the breaker stays Open before it moves to HalfOpen, defaults to 60 seconds.
+     */
+    CircuitBreakerBuilder<T> waitDurationInOpenState(long waitDuration, TimeUnit timeUnit);
+
+    /**
+     * Number of trial calls permitted while HalfOpen, defaults to 10. Once all of them finished, the breaker
+     * closes if they stayed below the strategy's thresholds and opens again otherwise.
+     */
+    CircuitBreakerBuilder<T> permittedCallsInHalfOpenState(int permittedCalls);
+
     T build();
 }
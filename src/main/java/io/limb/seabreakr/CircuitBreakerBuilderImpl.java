@@ -1,16 +1,20 @@
 package io.limb.seabreakr;
 
+import io.limb.seabreakr.spi.ContextFactory;
 import io.limb.seabreakr.spi.EventListener;
 import io.limb.seabreakr.spi.Strategy;
 import reactor.core.scheduler.Scheduler;
 import reactor.core.scheduler.Schedulers;
 
-import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -19,7 +23,11 @@ class CircuitBreakerBuilderImpl<T>
         implements CircuitBreakerBuilder<T> {
 
     private static final ScheduledExecutorService SCHEDULER = //
-            Executors.newSingleThreadScheduledExecutor((r) -> new Thread(r, "SeaBreakr-Opener"));
+            Executors.newSingleThreadScheduledExecutor((r) -> {
+                Thread thread = new Thread(r, "SeaBreakr-Opener");
+                thread.setDaemon(true);
+                return thread;
+            });
 
     static {
         registerShutdownHook();
@@ -35,7 +43,28 @@ class CircuitBreakerBuilderImpl<T>
     private long timeout = 30;
     private Scheduler scheduler;
     private boolean callThrough = false;
+    private boolean methodLatencies = false;
+    private ProxyEngine proxyEngine = ProxyEngine.JavaProxy;
+    private ExecutionMode executionMode = ExecutionMode.Async;
+    private ContextFactory contextFactory = ContextFactories.defaultFactory();
+    private SlidingWindow slidingWindow = SlidingWindow.defaultWindow();
+    private Bulkhead bulkhead = Bulkhead.none();
+    private Retry retry = Retry.none();
+    private RateLimit rateLimit = RateLimit.none();
+    private Hedge hedge = Hedge.none();
+    private Set<String> hedgedMethods = Collections.emptySet();
+    private Set<String> coalescedMethods = Collections.emptySet();
+    private ResponseCache cache = ResponseCache.none();
+    private Streaming streaming = Streaming.defaults();
+    private EventDispatch eventDispatch = EventDispatch.synchronous();
+    private FlightRecorder flightRecorder;
+    private GossipNode gossipNode;
+    private GossipPolicy gossipPolicy;
+    private SnapshotStore snapshotStore;
+    private String name;
     private TimeUnit timeUnit = TimeUnit.SECONDS;
+    private long waitDurationInOpenState = TimeUnit.SECONDS.toNanos(60);
+    private int permittedCallsInHalfOpenState = 10;
 
     CircuitBreakerBuilderImpl(ServiceType<T> type) {
         this(type, DefaultBreakerStrategy.INSTANCE);
@@ -88,34 +117,245 @@ class CircuitBreakerBuilderImpl<T>
         return this;
     }
 
+    @Override
+    public CircuitBreakerBuilder<T> enableMethodLatencies() {
+        methodLatencies = true;
+        return this;
+    }
+
+    @Override
+    public CircuitBreakerBuilder<T> disableMethodLatencies() {
+        methodLatencies = false;
+        return this;
+    }
+
     @Override
     public CircuitBreakerBuilder<T> scheduler(Scheduler scheduler) {
         this.scheduler = scheduler;
         return this;
     }
 
+    @Override
+    public CircuitBreakerBuilder<T> proxyEngine(ProxyEngine proxyEngine) {
+        Objects.requireNonNull(proxyEngine, "proxyEngine cannot be null");
+        this.proxyEngine = proxyEngine;
+        return this;
+    }
+
+    @Override
+    public CircuitBreakerBuilder<T> executionMode(ExecutionMode executionMode) {
+        Objects.requireNonNull(executionMode, "executionMode cannot be null");
+        this.executionMode = executionMode;
+        return this;
+    }
+
+    @Override
+    public CircuitBreakerBuilder<T> contextFactory(ContextFactory contextFactory) {
+        Objects.requireNonNull(contextFactory, "contextFactory cannot be null");
+        this.contextFactory = contextFactory;
+        return this;
+    }
+
+    @Override
+    public CircuitBreakerBuilder<T> slidingWindow(SlidingWindow slidingWindow) {
+        Objects.requireNonNull(slidingWindow, "slidingWindow cannot be null");
+        this.slidingWindow = slidingWindow;
+        return this;
+    }
+
+    @Override
+    public CircuitBreakerBuilder<T> bulkhead(Bulkhead bulkhead) {
+        Objects.requireNonNull(bulkhead, "bulkhead cannot be null");
+        this.bulkhead = bulkhead;
+        return this;
+    }
+
+    @Override
+    public CircuitBreakerBuilder<T> retry(Retry retry) {
+        Objects.requireNonNull(retry, "retry cannot be null");
+        this.retry = retry;
+        return this;
+    }
+
+    @Override
+    public CircuitBreakerBuilder<T> rateLimit(RateLimit rateLimit) {
+        Objects.requireNonNull(rateLimit, "rateLimit cannot be null");
+        this.rateLimit = rateLimit;
+        return this;
+    }
+
+    @Override
+    public CircuitBreakerBuilder<T> hedge(Hedge hedge, String... idempotentMethods) {
+        Objects.requireNonNull(hedge, "hedge cannot be null");
+        Objects.requireNonNull(idempotentMethods, "idempotentMethods cannot be null");
+        if (hedge.isEnabled() && idempotentMethods.length == 0) {
+            throw new IllegalArgumentException("idempotentMethods cannot be empty");
+        }
+        this.hedge = hedge;
+        this.hedgedMethods = new HashSet<>(Arrays.asList(idempotentMethods));
+        return this;
+    }
+
+    @Override
+    public CircuitBreakerBuilder<T> coalesce(String... methods) {
+        Objects.requireNonNull(methods, "methods cannot be null");
+        this.coalescedMethods = new HashSet<>(Arrays.asList(methods));
+        return this;
+    }
+
+    @Override
+    public CircuitBreakerBuilder<T> cache(ResponseCache cache) {
+        Objects.requireNonNull(cache, "cache cannot be null");
+        this.cache = cache;
+        return this;
+    }
+
+    @Override
+    public CircuitBreakerBuilder<T> streaming(Streaming streaming) {
+        Objects.requireNonNull(streaming, "streaming cannot be null");
+        this.streaming = streaming;
+        return this;
+    }
+
+    @Override
+    public CircuitBreakerBuilder<T> eventDispatch(EventDispatch eventDispatch) {
+        Objects.requireNonNull(eventDispatch, "eventDispatch cannot be null");
+        this.eventDispatch = eventDispatch;
+        return this;
+    }
+
+    @Override
+    public CircuitBreakerBuilder<T> flightRecorder(FlightRecorder flightRecorder) {
+        this.flightRecorder = flightRecorder;
+        return this;
+    }
+
+    @Override
+    public CircuitBreakerBuilder<T> gossip(GossipNode node, GossipPolicy policy) {
+        Objects.requireNonNull(node, "node cannot be null");
+        Objects.requireNonNull(policy, "policy cannot be null");
+        this.gossipNode = node;
+        this.gossipPolicy = policy;
+        return this;
+    }
+
+    @Override
+    public CircuitBreakerBuilder<T> snapshotStore(SnapshotStore snapshotStore) {
+        this.snapshotStore = snapshotStore;
+        return this;
+    }
+
+    @Override
+    public CircuitBreakerBuilder<T> name(String name) {
+        Objects.requireNonNull(name, "name cannot be null");
+        this.name = name;
+        return this;
+    }
+
+    @Override
+    public CircuitBreakerBuilder<T> waitDurationInOpenState(long waitDuration, TimeUnit timeUnit) {
+        Objects.requireNonNull(timeUnit, "timeUnit cannot be null");
+        Preconditions.requireGreaterEquals(waitDuration, 1, "waitDuration must be greater or equal to 1");
+        this.waitDurationInOpenState = timeUnit.toNanos(waitDuration);
+        return this;
+    }
+
+    @Override
+    public CircuitBreakerBuilder<T> permittedCallsInHalfOpenState(int permittedCalls) {
+        Preconditions.requireGreaterEquals(permittedCalls, 1, "permittedCalls must be greater or equal to 1");
+        this.permittedCallsInHalfOpenState = permittedCalls;
+        return this;
+    }
+
     @Override
     @SuppressWarnings({"unchecked"})
     public T build() {
+        if (bulkhead.getType() == Bulkhead.Type.ThreadPool && executionMode == ExecutionMode.Direct) {
+            throw new IllegalStateException("Thread pool bulkheads cannot be combined with direct execution");
+        }
+        if (bulkhead.getType() == Bulkhead.Type.ThreadPool && executionMode == ExecutionMode.Virtual) {
+            throw new IllegalStateException("Thread pool bulkheads cannot be combined with virtual execution");
+        }
+        if (executionMode == ExecutionMode.Virtual && !VirtualThreads.isSupported()) {
+            throw new IllegalStateException("Virtual execution requires Java 21 or later");
+        }
+
+        Class<? super T> interfaceType = type.getRawType();
+        String name = this.name != null ? this.name : interfaceType.getSimpleName();
+        if (snapshotStore != null) {
+            snapshotStore.requireUnregistered(name);
+        }
+        GossipMember gossipMember = null;
+        List<EventListener> listeners = this.listeners;
+        if (gossipNode != null) {
+            gossipMember = gossipNode.newMember(name, gossipPolicy);
+            listeners = new ArrayList<>(listeners);
+            listeners.add(gossipMember);
+        }
+
         EventListener listenerAdapter = null;
         if (listeners.size() > 0) {
             EventListener[] array = listeners.toArray(new EventListener[0]);
-            listenerAdapter = e -> Arrays.stream(array).forEach(l -> l.onEvent(e));
+            listenerAdapter = array.length == 1 ? array[0] : e -> {
+                for (EventListener listener : array) {
+                    listener.onEvent(e);
+                }
+            };
         }
 
-        long timeout = timeUnit.toNanos(this.timeout);
-        Class<? super T> interfaceType = type.getRawType();
         ClassLoader classLoader = type.getRawType().getClassLoader();
         Scheduler scheduler = this.scheduler == null ? Schedulers.elastic() : this.scheduler;
+        EventDispatcher events = new EventDispatcher(listenerAdapter, eventDispatch);
+        BreakerConfig<? super T> config = new BreakerConfig<>(interfaceType, name, strategy, backend, failover,
+                timeUnit.toNanos(timeout), events, callThrough, methodLatencies, scheduler, executionMode,
+                slidingWindow, contextFactory, SCHEDULER, waitDurationInOpenState, permittedCallsInHalfOpenState,
+                bulkhead, retry, rateLimit, hedge, hedgedMethods, coalescedMethods, cache, streaming, flightRecorder);
+
+        if (proxyEngine == ProxyEngine.Generated) {
+            ProxyGenerator.GeneratedType generatedType = ProxyGenerator.generatedType(interfaceType);
+            if (generatedType != null) {
+                JavaProxyCircuitBreaker<? super T> circuitBreaker = new JavaProxyCircuitBreaker<>(config,
+                        generatedType.getMethods(), generatedType.getInvokers());
+
+                register(gossipMember, circuitBreaker);
+                return (T) generatedType.newInstance(circuitBreaker);
+            }
+        }
 
-        InvocationHandler invocationHandler = new JavaProxyCircuitBreaker<>(interfaceType, strategy, backend, failover, timeout,
-                listenerAdapter, callThrough, scheduler);
+        Method[] methods = ProxyGenerator.proxyMethods(interfaceType);
+        MethodInvoker[] invokers = new MethodInvoker[methods.length];
+        for (int i = 0; i < methods.length; i++) {
+            invokers[i] = ProxyGenerator.reflectiveInvoker(methods[i]);
+        }
+
+        JavaProxyCircuitBreaker<? super T> circuitBreaker = new JavaProxyCircuitBreaker<>(config, methods, invokers);
+
+        register(gossipMember, circuitBreaker);
+        return (T) Proxy.newProxyInstance(classLoader, new Class[]{interfaceType}, circuitBreaker);
+    }
 
-        return (T) Proxy.newProxyInstance(classLoader, new Class[]{interfaceType}, invocationHandler);
+    /**
+     * Restores the snapshot before joining the gossip, peers never see the breaker in its initial state.
+     */
+    private void register(GossipMember gossipMember, JavaProxyCircuitBreaker<?> circuitBreaker) {
+        String name = circuitBreaker.getName();
+        if (snapshotStore != null) {
+            SnapshotStore snapshotStore = this.snapshotStore;
+            snapshotStore.register(name, circuitBreaker);
+            circuitBreaker.onShutdown(() -> snapshotStore.unregister(name, circuitBreaker));
+        }
+        if (gossipMember != null) {
+            GossipNode gossipNode = this.gossipNode;
+            gossipNode.join(gossipMember, circuitBreaker);
+            circuitBreaker.onShutdown(() -> gossipNode.leave(gossipMember));
+        }
     }
 
     private static void registerShutdownHook() {
-        Runtime.getRuntime().addShutdownHook(new Thread(SCHEDULER::shutdown));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            SnapshotStore.saveOpenStores();
+            SCHEDULER.shutdown();
+        }));
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,206 @@
+package io.limb.seabreakr;
+
+import io.limb.seabreakr.spi.Strategy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+
+/**
+ * Named breakers which are created on first use and shared by every call site asking for the same name,
+ * e.g. one breaker per downstream host. Looking up an existing breaker is a single read of a concurrent
+ * map; a breaker is built at most once per name, without blocking lookups or builds of other names.
+ * <p>
+ * Shared defaults are applied to every builder before the configuration of the call site, and the registry
+ * name becomes the name of the breaker, so breakers of the same interface can share a gossip node or
+ * snapshot store. Removed breakers release their threads, leave their gossip node and keep their snapshot.
+ */
+public final class CircuitBreakerRegistry
+        implements AutoCloseable {
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final Strategy strategy;
+    private final Consumer<CircuitBreakerBuilder<?>> defaults;
+
+    private CircuitBreakerRegistry(Strategy strategy, Consumer<CircuitBreakerBuilder<?>> defaults) {
+        this.strategy = strategy;
+        this.defaults = defaults;
+    }
+
+    public static CircuitBreakerRegistry create() {
+        return create(builder -> {
+        });
+    }
+
+    /**
+     * Applies {@code defaults} to the builder of every breaker of the registry, e.g. the sliding window or
+     * the deadline. Settings which depend on the service type are left to the call sites.
+     */
+    public static CircuitBreakerRegistry create(Consumer<CircuitBreakerBuilder<?>> defaults) {
+        return create(DefaultBreakerStrategy.INSTANCE, defaults);
+    }
+
+    public static CircuitBreakerRegistry create(Strategy strategy, Consumer<CircuitBreakerBuilder<?>> defaults) {
+        Objects.requireNonNull(strategy, "strategy cannot be null");
+        Objects.requireNonNull(defaults, "defaults cannot be null");
+        return new CircuitBreakerRegistry(strategy, defaults);
+    }
+
+    public <T> T getOrCreate(String name, Class<T> type, Consumer<CircuitBreakerBuilder<T>> configuration) {
+        return getOrCreate(name, ServiceType.serviceType(type), configuration);
+    }
+
+    /**
+     * Returns the breaker of the given name, building it with the defaults and {@code configuration} if it
+     * does not exist yet. Fails with an {@link IllegalArgumentException} if the name is taken by a breaker
+     * of a different service type.
+     */
+    public <T> T getOrCreate(String name, ServiceType<T> serviceType,
+                             Consumer<CircuitBreakerBuilder<T>> configuration) {
+
+        Objects.requireNonNull(name, "name cannot be null");
+        Objects.requireNonNull(serviceType, "serviceType cannot be null");
+        Objects.requireNonNull(configuration, "configuration cannot be null");
+
+        Entry entry = entries.get(name);
+        if (entry == null) {
+            entry = entries.computeIfAbsent(name, n -> new Entry(n, serviceType));
+        }
+        T proxy = entry.get(serviceType);
+        if (proxy != null) {
+            return proxy;
+        }
+        try {
+            return entry.build(serviceType, configuration);
+        } catch (RuntimeException | Error e) {
+            // A failed build leaves the name free for the next attempt
+            entries.remove(name, entry);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the breaker of the given name, {@code null} if there is none.
+     */
+    public <T> T get(String name, Class<T> type) {
+        return get(name, ServiceType.serviceType(type));
+    }
+
+    public <T> T get(String name, ServiceType<T> serviceType) {
+        Entry entry = entries.get(name);
+        return entry != null ? entry.get(serviceType) : null;
+    }
+
+    /**
+     * Returns the breaker of the given name as {@link CircuitBreaker}, {@code null} if there is none.
+     */
+    public CircuitBreaker getCircuitBreaker(String name) {
+        Entry entry = entries.get(name);
+        return entry != null ? entry.circuitBreaker : null;
+    }
+
+    public Set<String> getNames() {
+        return Collections.unmodifiableSet(entries.keySet());
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Copies the metrics of all breakers. Reads each breaker without locking and never waits for a build,
+     * breakers which are still being built are left out.
+     */
+    public List<BreakerSnapshot> snapshot() {
+        List<BreakerSnapshot> snapshots = new ArrayList<>(entries.size());
+        for (Entry entry : entries.values()) {
+            JavaProxyCircuitBreaker<?> circuitBreaker = entry.circuitBreaker;
+            if (circuitBreaker != null) {
+                snapshots.add(new BreakerSnapshot(entry.name, circuitBreaker.getState(), circuitBreaker.getMetrics()));
+            }
+        }
+        return snapshots;
+    }
+
+    /**
+     * Removes and shuts down the breaker of the given name. Call sites still holding it must not use it
+     * anymore, the next {@link #getOrCreate} builds a new breaker.
+     */
+    public boolean remove(String name) {
+        Entry entry = entries.remove(name);
+        if (entry == null) {
+            return false;
+        }
+        entry.shutdown();
+        return true;
+    }
+
+    /**
+     * Removes and shuts down all breakers.
+     */
+    @Override
+    public void close() {
+        for (String name : entries.keySet()) {
+            remove(name);
+        }
+    }
+
+    private final class Entry {
+        private final String name;
+        private final ServiceType<?> serviceType;
+
+        // Written once under the lock of the entry
+        private volatile Object proxy;
+        private volatile JavaProxyCircuitBreaker<?> circuitBreaker;
+
+        private boolean shutdown;
+
+        private Entry(String name, ServiceType<?> serviceType) {
+            this.name = name;
+            this.serviceType = serviceType;
+        }
+
+        @SuppressWarnings("unchecked")
+        <T> T get(ServiceType<T> serviceType) {
+            if (!this.serviceType.equals(serviceType)) {
+                throw new IllegalArgumentException("Breaker " + name + " was created for " + this.serviceType);
+            }
+            return (T) proxy;
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized <T> T build(ServiceType<T> serviceType, Consumer<CircuitBreakerBuilder<T>> configuration) {
+            if (proxy != null) {
+                return (T) proxy;
+            }
+
+            CircuitBreakerBuilder<T> builder = CircuitBreaker.newBuilder(serviceType, strategy);
+            defaults.accept(builder);
+            configuration.accept(builder);
+            T proxy = builder.name(name).build();
+
+            JavaProxyCircuitBreaker<?> circuitBreaker =
+                    (JavaProxyCircuitBreaker<?>) CircuitBreaker.circuitBreaker(proxy);
+            if (shutdown) {
+                circuitBreaker.shutdown();
+                throw new IllegalStateException("Breaker " + name + " was removed while it was built");
+            }
+            this.circuitBreaker = circuitBreaker;
+            this.proxy = proxy;
+            return proxy;
+        }
+
+        synchronized void shutdown() {
+            shutdown = true;
+            if (circuitBreaker != null) {
+                circuitBreaker.shutdown();
+            }
+        }
+    }
+}
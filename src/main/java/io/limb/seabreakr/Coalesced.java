@@ -0,0 +1,17 @@
+package io.limb.seabreakr;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a method of a service interface whose concurrent calls with equal arguments share a single backend
+ * call, see {@link CircuitBreakerBuilder#coalesce(String...)}.
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Coalesced {
+}
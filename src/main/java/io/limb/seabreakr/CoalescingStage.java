@@ -0,0 +1,52 @@
+package io.limb.seabreakr;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Single-flight registry of the in-flight calls of coalesced methods, one instance per breaker. The first
+ * caller of a method with some arguments executes the call, equal calls arriving before it completed wait
+ * for its result. Entries are removed as soon as the call completed, so the registry only ever holds the
+ * calls currently in flight.
+ */
+final class CoalescingStage {
+
+    private final ConcurrentMap<CallKey, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * Registers {@code future} for the call and returns {@code null} if the caller has to execute it, or
+     * returns the future of the equal call in flight.
+     */
+    CompletableFuture<Object> join(CallKey key, CompletableFuture<Object> future) {
+        calls.increment();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            coalesced.increment();
+        }
+        return existing;
+    }
+
+    void complete(CallKey key, CompletableFuture<Object> future, Object result, Throwable error) {
+        // Removed first, a call arriving from now on must not see a result which is already stale
+        inFlight.remove(key, future);
+        if (error != null) {
+            future.completeExceptionally(error);
+        } else {
+            future.complete(result);
+        }
+    }
+
+    long getNumberOfCoalescedCalls() {
+        return coalesced.sum();
+    }
+
+    float getCoalescingRate() {
+        long calls = this.calls.sum();
+        return calls == 0 ? 0.f : coalesced.sum() * 100.f / calls;
+    }
+}
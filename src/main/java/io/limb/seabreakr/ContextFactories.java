@@ -0,0 +1,79 @@
+package io.limb.seabreakr;
+
+import io.limb.seabreakr.spi.Context;
+import io.limb.seabreakr.spi.ContextFactory;
+import io.limb.seabreakr.spi.EventPublisher;
+
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.function.BiFunction;
+
+public final class ContextFactories {
+
+    private ContextFactories() {
+    }
+
+    /**
+     * Count based windows are backed by a single ring, the default.
+     */
+    public static ContextFactory defaultFactory() {
+        return windowFactory((slidingWindow, eventPublisher) -> {
+            MetricsRecorder metricsRecorder = slidingWindow.getType() == SlidingWindow.Type.TimeBased //
+                    ? newTimeWindowMetricsRecorder(slidingWindow) //
+                    : new MetricsRecorderImpl(slidingWindow.getSize());
+
+            return new ContextImpl(slidingWindow, metricsRecorder, eventPublisher);
+        });
+    }
+
+    /**
+     * Count based windows are split into stripes which are selected per thread and merged on read, so
+     * concurrent callers do not update the same counters, at the cost of an O(stripes) read. Whether this
+     * beats the single ring depends on the host, compare both with {@code MetricsRecorderBenchmark} of the
+     * test sources. Every stripe keeps the last outcomes of the threads mapped to it and holds at least
+     * the minimum number of calls of the window, which limits the number of stripes. Time based windows are
+     * not striped.
+     */
+    public static ContextFactory striped() {
+        return windowFactory((slidingWindow, eventPublisher) -> {
+            MetricsRecorder metricsRecorder = slidingWindow.getType() == SlidingWindow.Type.TimeBased //
+                    ? newTimeWindowMetricsRecorder(slidingWindow) //
+                    : new StripedMetricsRecorder(slidingWindow);
+
+            return new ContextImpl(slidingWindow, metricsRecorder, eventPublisher);
+        });
+    }
+
+    /**
+     * State and sliding window are kept in a memory-mapped file under the given breaker name, shared by all
+     * breakers and processes of the host which use the same file and name. Every process opens its breaker
+     * once the shared state is opened, including the transition to HalfOpen after its own wait duration.
+     * All breakers sharing a name must use the same sliding window.
+     */
+    public static ContextFactory shared(Path file, String name) {
+        Objects.requireNonNull(file, "file cannot be null");
+        Objects.requireNonNull(name, "name cannot be null");
+        return windowFactory((slidingWindow, eventPublisher) -> {
+            return new SharedContext(SharedStateFile.of(file), name, slidingWindow, eventPublisher);
+        });
+    }
+
+    private static MetricsRecorder newTimeWindowMetricsRecorder(SlidingWindow slidingWindow) {
+        return new TimeWindowMetricsRecorder(slidingWindow.getSize(), slidingWindow.getBucketDuration());
+    }
+
+    private static ContextFactory windowFactory(BiFunction<SlidingWindow, EventPublisher, Context> factory) {
+        return new ContextFactory() {
+            @Override
+            @Deprecated
+            public Context newContext(int numOfBufferedEvents, EventPublisher eventPublisher) {
+                return newContext(SlidingWindow.countBased(numOfBufferedEvents), eventPublisher);
+            }
+
+            @Override
+            public Context newContext(SlidingWindow slidingWindow, EventPublisher eventPublisher) {
+                return factory.apply(slidingWindow, eventPublisher);
+            }
+        };
+    }
+}
@@ -3,38 +3,156 @@ package io.limb.seabreakr;
 import io.limb.seabreakr.spi.Context;
 import io.limb.seabreakr.spi.EventPublisher;
 
-import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 
+/**
+ * Context keeping its state in process. The state word carries the number of the HalfOpen phase next to
+ * the state code, like the one of {@link SharedContext}. A transition to HalfOpen claims the new phase with
+ * a compare-and-set first and only then resets the window and hands out the trial permits of the phase, so
+ * a concurrent transition never finds a window reset by a transition which did not happen. Permits and
+ * completed trials are tagged with their phase, calls see no permits until they were initialized.
+ */
 final class ContextImpl
         implements Context {
 
-    private static final AtomicReferenceFieldUpdater<ContextImpl, State> STATE_UPDATER = //
-            AtomicReferenceFieldUpdater.newUpdater(ContextImpl.class, State.class, "state");
+    private static final AtomicLongFieldUpdater<ContextImpl> STATUS_UPDATER = //
+            AtomicLongFieldUpdater.newUpdater(ContextImpl.class, "status");
 
+    private static final AtomicLongFieldUpdater<ContextImpl> PERMITS_UPDATER = //
+            AtomicLongFieldUpdater.newUpdater(ContextImpl.class, "permits");
+
+    private static final AtomicLongFieldUpdater<ContextImpl> TRIALS_UPDATER = //
+            AtomicLongFieldUpdater.newUpdater(ContextImpl.class, "trials");
+
+    // State codes, in the lower half of the status
+    private static final long CLOSED = 0;
+    private static final long OPEN = 1;
+    private static final long HALF_OPEN = 2;
+
+    private static final long MAX_PHASE = 0xFFFFFFFFL;
+
+    private final SlidingWindow slidingWindow;
     private final MetricsRecorder metrics;
     private final EventPublisher eventPublisher;
 
-    // Updated through field updater only
-    private volatile State state = State.Closed;
+    // Updated through field updater only, HalfOpen phase in the upper and state code in the lower half
+    private volatile long status = CLOSED;
+
+    // Written before the permits of a phase, therefore visible to everyone holding one of them
+    private volatile int permittedCalls = 0;
+
+    // Updated through field updater only, HalfOpen phase in the upper and remaining permits in the lower half
+    private volatile long permits = 0;
+
+    // Updated through field updater only, HalfOpen phase in the upper and completed trials in the lower half
+    private volatile long trials = 0;
 
-    ContextImpl(int numOfBufferedEvents, EventPublisher eventPublisher) {
+    ContextImpl(SlidingWindow slidingWindow, MetricsRecorder metrics, EventPublisher eventPublisher) {
+        this.slidingWindow = slidingWindow;
         this.eventPublisher = eventPublisher;
-        this.metrics = new MetricsRecorderImpl(numOfBufferedEvents);
+        this.metrics = metrics;
     }
 
     @Override
     public boolean close() {
-        return updateStatus(State.Open, State.Closed);
+        if (transition(OPEN, CLOSED) || transition(HALF_OPEN, CLOSED)) {
+            metrics.reset();
+            return true;
+        }
+        return false;
     }
 
     @Override
     public boolean open() {
-        return updateStatus(State.Closed, State.Open);
+        return transition(CLOSED, OPEN) || transition(HALF_OPEN, OPEN);
+    }
+
+    /**
+     * Starts a new HalfOpen phase, the permits and trials of the previous phases no longer count.
+     */
+    @Override
+    public boolean halfOpen(int permittedCalls) {
+        long status = this.status;
+        if (code(status) != OPEN) {
+            return false;
+        }
+        long phase = phase(status) % MAX_PHASE + 1;
+        if (!STATUS_UPDATER.compareAndSet(this, status, phase << 32 | HALF_OPEN)) {
+            return false;
+        }
+
+        // Permits are published last, no call takes a trial permit of the phase before
+        metrics.reset();
+        this.permittedCalls = permittedCalls;
+        TRIALS_UPDATER.set(this, phase << 32);
+        PERMITS_UPDATER.set(this, phase << 32 | permittedCalls);
+        return true;
     }
 
     @Override
     public boolean isCallAllowed() {
-        return state == State.Closed;
+        long status = this.status;
+        if (code(status) != HALF_OPEN) {
+            return code(status) == CLOSED;
+        }
+        long permits = this.permits;
+        return phase(permits) == phase(status) && count(permits) > 0;
+    }
+
+    /**
+     * Trial permits are the number of the HalfOpen phase they were taken in.
+     */
+    @Override
+    public long acquirePermit() {
+        long status = this.status;
+        if (code(status) == CLOSED) {
+            return PERMITTED;
+        }
+        if (code(status) == OPEN) {
+            return NOT_PERMITTED;
+        }
+        long phase = phase(status);
+        while (true) {
+            long permits = this.permits;
+            if (phase(permits) != phase || count(permits) <= 0) {
+                return NOT_PERMITTED;
+            }
+            if (PERMITS_UPDATER.compareAndSet(this, permits, permits - 1)) {
+                return phase;
+            }
+        }
+    }
+
+    @Override
+    public void releasePermit(long permit) {
+        while (permit > PERMITTED) {
+            long permits = this.permits;
+            if (phase(permits) != permit || PERMITS_UPDATER.compareAndSet(this, permits, permits + 1)) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public boolean isTrial(long permit) {
+        long status = this.status;
+        return permit > PERMITTED && code(status) == HALF_OPEN && phase(status) == permit;
+    }
+
+    @Override
+    public boolean completeTrial(long permit) {
+        if (!isTrial(permit)) {
+            return false;
+        }
+        while (true) {
+            long trials = this.trials;
+            if (phase(trials) != permit) {
+                return false;
+            }
+            if (TRIALS_UPDATER.compareAndSet(this, trials, trials + 1)) {
+                return count(trials) + 1 == permittedCalls;
+            }
+        }
     }
 
     @Override
@@ -47,9 +165,18 @@ final class ContextImpl
         return metrics;
     }
 
+    @Override
+    public SlidingWindow getSlidingWindow() {
+        return slidingWindow;
+    }
+
     @Override
     public State getState() {
-        return state;
+        long code = code(status);
+        if (code == OPEN) {
+            return State.Open;
+        }
+        return code == HALF_OPEN ? State.HalfOpen : State.Closed;
     }
 
     @Override
@@ -57,18 +184,30 @@ final class ContextImpl
         return eventPublisher;
     }
 
-    private boolean updateStatus(State oldStatus, State newStatus) {
+    /**
+     * Moves the state from {@code oldCode} to {@code newCode}, keeping the phase.
+     */
+    private boolean transition(long oldCode, long newCode) {
         while (true) {
-            State status = this.state;
-            if (status == newStatus) {
+            long status = this.status;
+            if (code(status) != oldCode) {
                 return false;
             }
-            if (status != oldStatus) {
-                throw new IllegalStateException("Expected state " + oldStatus + " but was " + status);
-            }
-            if (STATE_UPDATER.compareAndSet(this, status, newStatus)) {
+            if (STATUS_UPDATER.compareAndSet(this, status, status & ~MAX_PHASE | newCode)) {
                 return true;
             }
         }
     }
+
+    private static long phase(long word) {
+        return word >>> 32;
+    }
+
+    private static int count(long word) {
+        return (int) word;
+    }
+
+    private static long code(long status) {
+        return status & MAX_PHASE;
+    }
 }
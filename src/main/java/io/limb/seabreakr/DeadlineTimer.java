@@ -0,0 +1,87 @@
+package io.limb.seabreakr;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+final class DeadlineTimer {
+
+    private static final ScheduledThreadPoolExecutor TIMER = newTimer();
+
+    private DeadlineTimer() {
+    }
+
+    /**
+     * Starts a deadline for the calling thread. The thread is interrupted when the deadline expires
+     * before {@link Deadline#complete()} is called.
+     */
+    static Deadline start(long timeout) {
+        Thread thread = Thread.currentThread();
+        Deadline deadline = new Deadline(thread, thread.isInterrupted());
+        deadline.future = TIMER.schedule(deadline, timeout, TimeUnit.NANOSECONDS);
+        return deadline;
+    }
+
+    private static ScheduledThreadPoolExecutor newTimer() {
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, (r) -> {
+            Thread thread = new Thread(r, "SeaBreakr-Deadline");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.setRemoveOnCancelPolicy(true);
+        return timer;
+    }
+
+    static final class Deadline
+            implements Runnable {
+
+        private static final int RUNNING = 0;
+        private static final int COMPLETED = 1;
+        private static final int INTERRUPTING = 2;
+        private static final int EXPIRED = 3;
+
+        private static final AtomicIntegerFieldUpdater<Deadline> STATE_UPDATER = //
+                AtomicIntegerFieldUpdater.newUpdater(Deadline.class, "state");
+
+        private final Thread thread;
+        private final boolean interrupted;
+        private ScheduledFuture<?> future;
+
+        // Only updated through Atomic Updater
+        private volatile int state = RUNNING;
+
+        private Deadline(Thread thread, boolean interrupted) {
+            this.thread = thread;
+            this.interrupted = interrupted;
+        }
+
+        @Override
+        public void run() {
+            if (STATE_UPDATER.compareAndSet(this, RUNNING, INTERRUPTING)) {
+                thread.interrupt();
+                state = EXPIRED;
+            }
+        }
+
+        /**
+         * Completes the deadline from the owning thread. Returns {@code false} if the deadline already
+         * expired, in which case the interrupt raised by the timer is cleared before returning. An interrupt
+         * which was pending when the deadline started is kept.
+         */
+        boolean complete() {
+            if (STATE_UPDATER.compareAndSet(this, RUNNING, COMPLETED)) {
+                future.cancel(false);
+                return true;
+            }
+            while (state == INTERRUPTING) {
+                Thread.yield();
+            }
+            Thread.interrupted();
+            if (interrupted) {
+                thread.interrupt();
+            }
+            return false;
+        }
+    }
+}
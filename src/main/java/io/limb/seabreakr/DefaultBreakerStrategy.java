@@ -4,58 +4,194 @@ import io.limb.seabreakr.spi.Context;
 import io.limb.seabreakr.spi.EventListener;
 import io.limb.seabreakr.spi.Strategy;
 
-import java.util.Random;
+import java.util.concurrent.TimeUnit;
 
 public class DefaultBreakerStrategy
         implements Strategy {
 
     public static final float DEFAULT_FAILURE_THRESHOLD = 20.f;
 
-    public static final Strategy INSTANCE = new DefaultBreakerStrategy(DEFAULT_FAILURE_THRESHOLD);
+    public static final float DEFAULT_SLOW_CALL_RATE_THRESHOLD = 100.f;
+
+    private static final DefaultBreakerStrategy DEFAULTS = new DefaultBreakerStrategy(DEFAULT_FAILURE_THRESHOLD, //
+            Long.MAX_VALUE, DEFAULT_SLOW_CALL_RATE_THRESHOLD);
+
+    public static final Strategy INSTANCE = DEFAULTS;
 
-    private final Random random = new Random();
     private final float failureThreshold;
+    private final long slowCallDuration;
+    private final float slowCallRateThreshold;
 
-    private DefaultBreakerStrategy(float failureThreshold) {
+    private DefaultBreakerStrategy(float failureThreshold, long slowCallDuration, float slowCallRateThreshold) {
         this.failureThreshold = failureThreshold;
+        this.slowCallDuration = slowCallDuration;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+    }
+
+    /**
+     * Returns the strategy with the default thresholds, same as {@link #INSTANCE}, to derive configured
+     * strategies from.
+     */
+    public static DefaultBreakerStrategy defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * Returns a copy of this strategy which opens the breaker when more than {@code failureThreshold}
+     * percent of the calls in the sliding window failed.
+     */
+    public DefaultBreakerStrategy withFailureThreshold(float failureThreshold) {
+        requirePercentage(failureThreshold, "failureThreshold must be between 0 and 100");
+        return new DefaultBreakerStrategy(failureThreshold, slowCallDuration, slowCallRateThreshold);
+    }
+
+    /**
+     * Returns a copy of this strategy which counts calls taking {@code slowCallDuration} or longer as slow
+     * and opens the breaker when more than {@code slowCallRateThreshold} percent of the calls in the
+     * sliding window were slow. Slow calls are tracked independently of failures, so a slow failure
+     * counts against both thresholds.
+     */
+    public DefaultBreakerStrategy withSlowCallThreshold(long slowCallDuration, TimeUnit timeUnit,
+                                                        float slowCallRateThreshold) {
+
+        Preconditions.requireGreaterEquals(slowCallDuration, 1, "slowCallDuration must be greater or equal to 1");
+        requirePercentage(slowCallRateThreshold, "slowCallRateThreshold must be between 0 and 100");
+        return new DefaultBreakerStrategy(failureThreshold, timeUnit.toNanos(slowCallDuration), slowCallRateThreshold);
+    }
+
+    public float getFailureThreshold() {
+        return failureThreshold;
+    }
+
+    public long getSlowCallDuration(TimeUnit timeUnit) {
+        return timeUnit.convert(slowCallDuration, TimeUnit.NANOSECONDS);
+    }
+
+    public float getSlowCallRateThreshold() {
+        return slowCallRateThreshold;
     }
 
     @Override
     public boolean isCallAllowed(Context context) {
-        return context.isCallAllowed() || isAvailabilityCheck();
+        return context.acquirePermit() != Context.NOT_PERMITTED;
     }
 
+    @Override
+    public long acquirePermit(Context context) {
+        return context.acquirePermit();
+    }
+
+    /**
+     * Calls reported without their duration are never slow.
+     */
     @Override
     public void onFailure(Context context, EventListener listener) {
+        onFailure(context, listener, 0);
+    }
+
+    /**
+     * Calls reported without their permit never count as trials.
+     */
+    @Override
+    public void onFailure(Context context, EventListener listener, long duration) {
+        onFailure(context, listener, duration, Context.PERMITTED);
+    }
+
+    @Override
+    public void onFailure(Context context, EventListener listener, long duration, long permit) {
+        if (isStale(context, permit)) {
+            return;
+        }
         MetricsRecorder metricsRecorder = context.getMetricsRecorder();
-        metricsRecorder.recordFailure();
-        verifyFailureThreshold(context, metricsRecorder);
+        if (duration >= slowCallDuration) {
+            metricsRecorder.recordSlowFailure();
+        } else {
+            metricsRecorder.recordFailure();
+        }
+        verifyState(context, metricsRecorder, permit);
     }
 
+    /**
+     * Calls reported without their duration are never slow.
+     */
     @Override
     public void onSuccess(Context context, EventListener listener) {
+        onSuccess(context, listener, 0);
+    }
+
+    /**
+     * Calls reported without their permit never count as trials.
+     */
+    @Override
+    public void onSuccess(Context context, EventListener listener, long duration) {
+        onSuccess(context, listener, duration, Context.PERMITTED);
+    }
+
+    @Override
+    public void onSuccess(Context context, EventListener listener, long duration, long permit) {
+        if (isStale(context, permit)) {
+            return;
+        }
         MetricsRecorder metricsRecorder = context.getMetricsRecorder();
-        metricsRecorder.recordSuccess();
-        verifyFailureThreshold(context, metricsRecorder);
+        if (duration >= slowCallDuration) {
+            metricsRecorder.recordSlowSuccess();
+        } else {
+            metricsRecorder.recordSuccess();
+        }
+        verifyState(context, metricsRecorder, permit);
     }
 
-    private boolean isAvailabilityCheck() {
-        return random.nextInt(100) <= 20;
+    /**
+     * While HalfOpen the sliding window only holds the trials, calls which were permitted before are left out.
+     */
+    private boolean isStale(Context context, long permit) {
+        return context.getState() == State.HalfOpen && !context.isTrial(permit);
+    }
+
+    private void verifyState(Context context, Metrics metrics, long permit) {
+        State state = context.getState();
+        if (state == State.Closed) {
+            verifyThresholds(context, metrics);
+        } else if (state == State.HalfOpen) {
+            verifyTrials(context, metrics, permit);
+        }
     }
 
-    private void verifyFailureThreshold(Context context, Metrics metrics) {
-        if (metrics.getFailureRate() > failureThreshold) {
-            if (context.getState() == State.Closed) {
-                if (context.open()) {
-                    context.getEventPublisher().fireOpenState();
-                }
+    private void verifyThresholds(Context context, Metrics metrics) {
+        SlidingWindow slidingWindow = context.getSlidingWindow();
+        if (slidingWindow != null && metrics.getNumberOfBufferedEvents() < slidingWindow.getMinimumNumberOfCalls()) {
+            return;
+        }
+        if (isAboveThresholds(metrics)) {
+            if (context.open()) {
+                context.getEventPublisher().fireOpenState();
+            }
+        }
+    }
+
+    private void verifyTrials(Context context, Metrics metrics, long permit) {
+        // The sliding window was reset when entering HalfOpen, it only holds the trial calls
+        if (!context.completeTrial(permit)) {
+            return;
+        }
+        if (isAboveThresholds(metrics)) {
+            if (context.open()) {
+                context.getEventPublisher().fireOpenState();
             }
         } else {
-            /*if (context.getState() != BreakerState.Closed) {
-                if (context.close()) {
-                    context.getEventPublisher().fireClosedState();
-                }
-            }*/
+            if (context.close()) {
+                context.getEventPublisher().fireClosedState();
+            }
+        }
+    }
+
+    private boolean isAboveThresholds(Metrics metrics) {
+        return metrics.getFailureRate() > failureThreshold || metrics.getSlowCallRate() > slowCallRateThreshold;
+    }
+
+    private static void requirePercentage(float value, String msg) {
+        if (value < 0.f || value > 100.f) {
+            throw new IllegalArgumentException(msg);
         }
     }
 }
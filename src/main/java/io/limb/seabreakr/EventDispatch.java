@@ -0,0 +1,113 @@
+package io.limb.seabreakr;
+
+import java.util.Objects;
+
+/**
+ * Configuration of how a breaker delivers its events to the registered listeners. By default listeners
+ * are called on the thread which performs the state transition, usually the thread of a call. With
+ * asynchronous dispatch events are put onto a bounded lock-free queue per breaker and delivered in batches
+ * by a thread pool shared by all breakers, so a slow listener never delays a call. A pool thread drains one
+ * queue at a time and is only taken while events are queued, so idle breakers hold no thread. The pool has
+ * one thread per processor, at least two, so slow listeners of that many breakers delay the events of the
+ * other breakers. Events which do not fit into a full queue are handled by the {@link OverflowPolicy} and
+ * counted in {@link Metrics#getNumberOfDroppedEvents()}.
+ */
+public final class EventDispatch {
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+    public static final int DEFAULT_MAX_BATCH_SIZE = 64;
+
+    private static final EventDispatch SYNCHRONOUS = new EventDispatch(false, 0, OverflowPolicy.DropNewest, 0);
+
+    public enum OverflowPolicy {
+        /**
+         * The oldest queued event is dropped to make room for the new one.
+         */
+        DropOldest,
+
+        /**
+         * The new event is dropped.
+         */
+        DropNewest,
+
+        /**
+         * The thread firing the event waits until the dispatcher made room. Events fired by a listener
+         * itself are delivered on the dispatcher thread right away.
+         */
+        Block
+    }
+
+    private final boolean async;
+    private final int queueCapacity;
+    private final OverflowPolicy overflowPolicy;
+    private final int maxBatchSize;
+
+    private EventDispatch(boolean async, int queueCapacity, OverflowPolicy overflowPolicy, int maxBatchSize) {
+        this.async = async;
+        this.queueCapacity = queueCapacity;
+        this.overflowPolicy = overflowPolicy;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public static EventDispatch synchronous() {
+        return SYNCHRONOUS;
+    }
+
+    public static EventDispatch async() {
+        return async(DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Queues up to {@code queueCapacity} events, rounded up to the next power of two, and drops the oldest
+     * event when the queue is full.
+     */
+    public static EventDispatch async(int queueCapacity) {
+        Preconditions.requireGreaterEquals(queueCapacity, 1, "queueCapacity must be greater or equal to 1");
+        Preconditions.requireGreaterEquals(1 << 30, queueCapacity, "queueCapacity must be less or equal to 2^30");
+        return new EventDispatch(true, queueCapacity, OverflowPolicy.DropOldest, DEFAULT_MAX_BATCH_SIZE);
+    }
+
+    public EventDispatch withOverflowPolicy(OverflowPolicy overflowPolicy) {
+        Objects.requireNonNull(overflowPolicy, "overflowPolicy cannot be null");
+        requireAsync();
+        return new EventDispatch(async, queueCapacity, overflowPolicy, maxBatchSize);
+    }
+
+    /**
+     * Maximum number of events the dispatcher takes from the queue before delivering them.
+     */
+    public EventDispatch withMaxBatchSize(int maxBatchSize) {
+        Preconditions.requireGreaterEquals(maxBatchSize, 1, "maxBatchSize must be greater or equal to 1");
+        requireAsync();
+        return new EventDispatch(async, queueCapacity, overflowPolicy, maxBatchSize);
+    }
+
+    public boolean isAsync() {
+        return async;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    private void requireAsync() {
+        if (!async) {
+            throw new IllegalStateException("Synchronous dispatch has no queue");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "EventDispatch{" + "async=" + async + ", queueCapacity=" + queueCapacity + ", overflowPolicy="
+                + overflowPolicy + ", maxBatchSize=" + maxBatchSize + '}';
+    }
+}
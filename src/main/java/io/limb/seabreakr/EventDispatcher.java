@@ -0,0 +1,192 @@
+package io.limb.seabreakr;
+
+import io.limb.seabreakr.spi.EventListener;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runtime part of an {@link EventDispatch}, one instance per breaker. Passed to the breaker and its strategy
+ * in place of the registered listeners, it either calls them right away or queues the event for delivery.
+ * Queued events are delivered by a thread of a pool shared by all breakers, which drains the queue of one
+ * breaker at a time and goes back to the pool once the queue is empty, so idle breakers hold no thread.
+ * The pool is bounded by {@link #DISPATCHER_THREADS}, further breakers with queued events wait for a free
+ * thread; at most one task per breaker is ever waiting.
+ */
+final class EventDispatcher
+        implements EventListener {
+
+    private static final AtomicIntegerFieldUpdater<EventDispatcher> SCHEDULED_UPDATER = //
+            AtomicIntegerFieldUpdater.newUpdater(EventDispatcher.class, "scheduled");
+
+    private static final AtomicInteger DISPATCHER_COUNTER = new AtomicInteger();
+
+    static final int DISPATCHER_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    private static final Executor DISPATCHERS = newDispatchers();
+
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(10);
+
+    private final LongAdder droppedEvents = new LongAdder();
+
+    private final EventListener listener;
+    private final EventDispatch dispatch;
+    private final EventQueue<Event> queue;
+    private final Event[] batch;
+
+    // Only updated through Atomic Updater, 1 while a pool thread drains the queue or is about to
+    private volatile int scheduled = 0;
+
+    // Thread draining the queue, null if there is none
+    private volatile Thread thread;
+
+    private volatile boolean shutdown;
+
+    EventDispatcher(EventListener listener, EventDispatch dispatch) {
+        this.listener = listener;
+        this.dispatch = dispatch;
+        if (listener == null || !dispatch.isAsync()) {
+            this.queue = null;
+            this.batch = null;
+            return;
+        }
+        this.queue = new EventQueue<>(dispatch.getQueueCapacity());
+        this.batch = new Event[dispatch.getMaxBatchSize()];
+    }
+
+    @Override
+    public void onEvent(Event event) {
+        if (listener == null) {
+            return;
+        }
+        if (shutdown) {
+            droppedEvents.increment();
+            return;
+        }
+        if (queue == null || Thread.currentThread() == thread) {
+            // A listener firing an event would wait for itself on a full queue
+            listener.onEvent(event);
+            return;
+        }
+
+        if (!queue.offer(event)) {
+            overflow(event);
+        }
+        schedule();
+    }
+
+    /**
+     * Drops events fired from now on, events which are already queued are still delivered.
+     */
+    void shutdown() {
+        if (queue != null) {
+            shutdown = true;
+        }
+    }
+
+    long getNumberOfDroppedEvents() {
+        return droppedEvents.sum();
+    }
+
+    private void overflow(Event event) {
+        switch (dispatch.getOverflowPolicy()) {
+            case DropNewest:
+                droppedEvents.increment();
+                return;
+
+            case DropOldest:
+                while (!queue.offer(event)) {
+                    if (queue.poll() != null) {
+                        droppedEvents.increment();
+                    }
+                }
+                return;
+
+            default:
+                while (!queue.offer(event)) {
+                    schedule();
+                    LockSupport.parkNanos(BLOCK_PARK_NANOS);
+                }
+        }
+    }
+
+    private void schedule() {
+        if (scheduled == 0 && SCHEDULED_UPDATER.compareAndSet(this, 0, 1)) {
+            DISPATCHERS.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        thread = Thread.currentThread();
+        try {
+            drainQueue();
+        } catch (Throwable e) {
+            // An Error thrown by the listener ends the task, release the queue so later events are delivered
+            for (int i = 0; i < batch.length; i++) {
+                if (batch[i] != null) {
+                    batch[i] = null;
+                    droppedEvents.increment();
+                }
+            }
+            thread = null;
+            scheduled = 0;
+            if (!queue.isEmpty()) {
+                schedule();
+            }
+            throw e;
+        }
+    }
+
+    private void drainQueue() {
+        while (true) {
+            int size = 0;
+            Event event;
+            while (size < batch.length && (event = queue.poll()) != null) {
+                batch[size++] = event;
+            }
+
+            if (size == 0) {
+                // Release the queue before checking it again, producers only schedule an unscheduled queue
+                thread = null;
+                scheduled = 0;
+                if (queue.isEmpty() || !SCHEDULED_UPDATER.compareAndSet(this, 0, 1)) {
+                    return;
+                }
+                // An event is still being added
+                thread = Thread.currentThread();
+                Thread.yield();
+                continue;
+            }
+
+            for (int i = 0; i < size; i++) {
+                event = batch[i];
+                batch[i] = null;
+                try {
+                    listener.onEvent(event);
+                } catch (RuntimeException e) {
+                    // A failing listener must not stop the delivery of further events
+                    Thread current = Thread.currentThread();
+                    current.getUncaughtExceptionHandler().uncaughtException(current, e);
+                }
+            }
+        }
+    }
+
+    private static Executor newDispatchers() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(DISPATCHER_THREADS, DISPATCHER_THREADS, //
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), (r) -> {
+                    Thread thread = new Thread(r, "SeaBreakr-Events-" + DISPATCHER_COUNTER.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        // Dispatchers terminate after 60 seconds without queued events
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
@@ -0,0 +1,88 @@
+package io.limb.seabreakr;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free queue of events. Every slot carries a sequence number telling producers whether the
+ * slot is free for the current lap and consumers whether it has been filled, so both sides only CAS their
+ * own index. Meant for many producers and the dispatcher as consumer, but {@link #poll()} is also safe
+ * for producers which drop the oldest event of a full queue.
+ */
+final class EventQueue<E> {
+
+    // The class literal of a generic class is raw, the updaters have to be raw as well
+    @SuppressWarnings("rawtypes")
+    private static final AtomicLongFieldUpdater<EventQueue> HEAD_UPDATER = //
+            AtomicLongFieldUpdater.newUpdater(EventQueue.class, "head");
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicLongFieldUpdater<EventQueue> TAIL_UPDATER = //
+            AtomicLongFieldUpdater.newUpdater(EventQueue.class, "tail");
+
+    private final AtomicReferenceArray<E> elements;
+    private final AtomicLongArray sequences;
+    private final int mask;
+
+    // Only updated through Atomic Updater
+    private volatile long head;
+
+    // Only updated through Atomic Updater
+    private volatile long tail;
+
+    EventQueue(int capacity) {
+        Preconditions.requireGreaterEquals(capacity, 1, "capacity must be greater or equal to 1");
+        int size = Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1;
+        this.elements = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Adds the element, returns {@code false} if the queue is full.
+     */
+    boolean offer(E element) {
+        while (true) {
+            long tail = this.tail;
+            int index = (int) (tail & mask);
+            long sequence = sequences.get(index);
+            if (sequence < tail) {
+                return false;
+            }
+            if (sequence == tail && TAIL_UPDATER.compareAndSet(this, tail, tail + 1)) {
+                elements.lazySet(index, element);
+                sequences.lazySet(index, tail + 1);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Removes the oldest element, returns {@code null} if the queue is empty or the oldest element is still
+     * being added.
+     */
+    E poll() {
+        while (true) {
+            long head = this.head;
+            int index = (int) (head & mask);
+            long sequence = sequences.get(index);
+            if (sequence < head + 1) {
+                return null;
+            }
+            if (sequence == head + 1 && HEAD_UPDATER.compareAndSet(this, head, head + 1)) {
+                E element = elements.get(index);
+                elements.lazySet(index, null);
+                sequences.lazySet(index, head + mask + 1);
+                return element;
+            }
+        }
+    }
+
+    boolean isEmpty() {
+        return head == tail;
+    }
+}
@@ -0,0 +1,22 @@
+package io.limb.seabreakr;
+
+public enum ExecutionMode {
+    /**
+     * Synchronous methods are executed on a separate thread and the caller blocks until the result
+     * is available or the deadline is reached.
+     */
+    Async,
+
+    /**
+     * Synchronous methods are executed on the calling thread. The deadline is enforced by a shared timer
+     * which interrupts the calling thread, calls rejected by an open breaker go to the failover directly.
+     */
+    Direct,
+
+    /**
+     * Synchronous methods are executed on a new virtual thread per call and the caller blocks until the
+     * result is available or the deadline is reached. A call which misses its deadline interrupts its
+     * virtual thread instead of leaving a pool thread blocked on the backend. Requires Java 21 or later.
+     */
+    Virtual
+}
@@ -0,0 +1,78 @@
+package io.limb.seabreakr;
+
+/**
+ * A single call decoded from the file of a {@link FlightRecorder}.
+ */
+public final class FlightRecord {
+
+    private final long sequence;
+    private final long timestamp;
+    private final int breakerId;
+    private final String breakerName;
+    private final int methodIndex;
+    private final FlightRecorder.Outcome outcome;
+    private final long latency;
+
+    FlightRecord(long sequence, long timestamp, int breakerId, String breakerName, int methodIndex,
+                 FlightRecorder.Outcome outcome, long latency) {
+
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+        this.breakerId = breakerId;
+        this.breakerName = breakerName;
+        this.methodIndex = methodIndex;
+        this.outcome = outcome;
+        this.latency = latency;
+    }
+
+    /**
+     * Position of the call in the order calls were recorded, starting at 1.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Wall clock time in milliseconds since the epoch at which the outcome was recorded.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public int getBreakerId() {
+        return breakerId;
+    }
+
+    /**
+     * Name of the breaker, {@code null} if it did not fit into the header of the file.
+     */
+    public String getBreakerName() {
+        return breakerName;
+    }
+
+    /**
+     * Position of the method in the breaker's method table, {@code -1} if unknown.
+     */
+    public int getMethodIndex() {
+        return methodIndex;
+    }
+
+    public FlightRecorder.Outcome getOutcome() {
+        return outcome;
+    }
+
+    /**
+     * Latency of the call in nanoseconds, {@code 0} for calls which were rejected or went to the failover
+     * without calling the backend.
+     */
+    public long getLatency() {
+        return latency;
+    }
+
+    @Override
+    public String toString() {
+        return "FlightRecord{" + "sequence=" + sequence + ", timestamp=" + timestamp + ", breakerId=" + breakerId
+                + ", breakerName=" + breakerName + ", methodIndex=" + methodIndex + ", outcome=" + outcome
+                + ", latency=" + latency + '}';
+    }
+}
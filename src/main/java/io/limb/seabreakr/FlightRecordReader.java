@@ -0,0 +1,118 @@
+package io.limb.seabreakr;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static io.limb.seabreakr.FlightRecorder.BREAKER_COUNT_OFFSET;
+import static io.limb.seabreakr.FlightRecorder.BREAKER_OFFSET;
+import static io.limb.seabreakr.FlightRecorder.CAPACITY_OFFSET;
+import static io.limb.seabreakr.FlightRecorder.HEADER_SIZE;
+import static io.limb.seabreakr.FlightRecorder.LATENCY_OFFSET;
+import static io.limb.seabreakr.FlightRecorder.MAGIC;
+import static io.limb.seabreakr.FlightRecorder.MAGIC_OFFSET;
+import static io.limb.seabreakr.FlightRecorder.MAX_NAMED_BREAKERS;
+import static io.limb.seabreakr.FlightRecorder.METHOD_OFFSET;
+import static io.limb.seabreakr.FlightRecorder.NAMES_OFFSET;
+import static io.limb.seabreakr.FlightRecorder.NAME_SIZE;
+import static io.limb.seabreakr.FlightRecorder.OUTCOME_OFFSET;
+import static io.limb.seabreakr.FlightRecorder.RECORD_SIZE;
+import static io.limb.seabreakr.FlightRecorder.SEQUENCE_OFFSET;
+import static io.limb.seabreakr.FlightRecorder.TIMESTAMP_OFFSET;
+import static io.limb.seabreakr.FlightRecorder.VERSION;
+import static io.limb.seabreakr.FlightRecorder.VERSION_OFFSET;
+import static io.limb.seabreakr.FlightRecorder.outcome;
+
+/**
+ * Decodes the ring file of a {@link FlightRecorder}, also while the recorder is still writing to it. Run
+ * with {@code java -cp seabreakr.jar io.limb.seabreakr.FlightRecordReader <file> [breaker]} to print the
+ * recorded calls in order, optionally only the ones of the named breaker.
+ */
+public final class FlightRecordReader {
+
+    private FlightRecordReader() {
+    }
+
+    /**
+     * Returns the complete records of the file, oldest first.
+     */
+    public static List<FlightRecord> read(Path file)
+            throws IOException {
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException("Not a flight recorder file: " + file);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt(MAGIC_OFFSET) != MAGIC || buffer.getInt(VERSION_OFFSET) != VERSION) {
+                throw new IOException("Not a flight recorder file: " + file);
+            }
+            int capacity = buffer.getInt(CAPACITY_OFFSET);
+            if (capacity < 1 || Integer.bitCount(capacity) != 1
+                    || channel.size() != HEADER_SIZE + (long) capacity * RECORD_SIZE) {
+                throw new IOException("Truncated flight recorder file: " + file);
+            }
+
+            String[] names = names(buffer);
+            List<FlightRecord> records = new ArrayList<>();
+            for (int i = 0; i < capacity; i++) {
+                int offset = HEADER_SIZE + i * RECORD_SIZE;
+                long sequence = buffer.getLong(offset + SEQUENCE_OFFSET);
+                FlightRecorder.Outcome outcome = outcome(buffer.get(offset + OUTCOME_OFFSET));
+                // Empty slots, records still being written and damaged records are skipped
+                if (sequence <= 0 || ((sequence - 1) & (capacity - 1)) != i || outcome == null) {
+                    continue;
+                }
+                int breakerId = buffer.getShort(offset + BREAKER_OFFSET) & 0xFFFF;
+                records.add(new FlightRecord(sequence, buffer.getLong(offset + TIMESTAMP_OFFSET), breakerId,
+                        breakerId < names.length ? names[breakerId] : null, buffer.getShort(offset + METHOD_OFFSET),
+                        outcome, buffer.getLong(offset + LATENCY_OFFSET)));
+            }
+            records.sort(Comparator.comparingLong(FlightRecord::getSequence));
+            return records;
+        }
+    }
+
+    public static void main(String[] args)
+            throws IOException {
+
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: FlightRecordReader <file> [breaker]");
+            System.exit(1);
+        }
+
+        String breaker = args.length > 1 ? args[1] : null;
+        for (FlightRecord record : read(Paths.get(args[0]))) {
+            if (breaker != null && !breaker.equals(record.getBreakerName())) {
+                continue;
+            }
+            String name = record.getBreakerName() != null ? record.getBreakerName() : "#" + record.getBreakerId();
+            System.out.printf("%10d %-24s %-24s %6d %-8s %12d us%n", record.getSequence(),
+                    Instant.ofEpochMilli(record.getTimestamp()), name, record.getMethodIndex(), record.getOutcome(),
+                    TimeUnit.NANOSECONDS.toMicros(record.getLatency()));
+        }
+    }
+
+    private static String[] names(MappedByteBuffer buffer) {
+        int count = Math.max(0, Math.min(buffer.getInt(BREAKER_COUNT_OFFSET), MAX_NAMED_BREAKERS));
+        String[] names = new String[count];
+        for (int id = 0; id < count; id++) {
+            int offset = NAMES_OFFSET + id * NAME_SIZE;
+            byte[] bytes = new byte[Math.max(0, Math.min(buffer.getShort(offset), NAME_SIZE - 2))];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = buffer.get(offset + 2 + i);
+            }
+            names[id] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return names;
+    }
+}
@@ -0,0 +1,202 @@
+package io.limb.seabreakr;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * Records the outcome of every call of the breakers it is passed to as a fixed-size binary record in a
+ * memory-mapped ring file, so the calls leading up to an incident can be reconstructed with
+ * {@link FlightRecordReader} even if the process died. Recording a call takes one atomic increment and a
+ * few writes into the mapped file, it neither locks nor allocates. Once the ring is full the oldest
+ * records are overwritten.
+ * <p>
+ * An existing file of the same capacity is continued, breakers registering with a known name keep their
+ * id. One recorder may be shared by up to 63 breakers of a process, but a file must not be opened by two
+ * recorders at once.
+ */
+public final class FlightRecorder
+        implements Closeable {
+
+    public enum Outcome {
+        Success, Failure, Timeout, Rejected, Failover
+    }
+
+    static final int MAGIC = 0x53424652; // SBFR
+    static final int VERSION = 1;
+
+    static final int HEADER_SIZE = 4096;
+    static final int RECORD_SIZE = 32;
+
+    // Header layout
+    static final int MAGIC_OFFSET = 0;
+    static final int VERSION_OFFSET = 4;
+    static final int CAPACITY_OFFSET = 8;
+    static final int BREAKER_COUNT_OFFSET = 12;
+    static final int NAMES_OFFSET = 64;
+    static final int NAME_SIZE = 64;
+    static final int MAX_NAMED_BREAKERS = (HEADER_SIZE - NAMES_OFFSET) / NAME_SIZE;
+
+    // Record layout, the sequence is written last and tells a reader the record is complete
+    static final int SEQUENCE_OFFSET = 0;
+    static final int TIMESTAMP_OFFSET = 8;
+    static final int LATENCY_OFFSET = 16;
+    static final int BREAKER_OFFSET = 24;
+    static final int METHOD_OFFSET = 26;
+    static final int OUTCOME_OFFSET = 28;
+
+    private static final AtomicLongFieldUpdater<FlightRecorder> POSITION_UPDATER = //
+            AtomicLongFieldUpdater.newUpdater(FlightRecorder.class, "position");
+
+    private static final Outcome[] OUTCOMES = Outcome.values();
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int mask;
+
+    // Only updated through Atomic Updater
+    private volatile long position;
+
+    private FlightRecorder(FileChannel channel, MappedByteBuffer buffer, int capacity, long position) {
+        this.channel = channel;
+        this.buffer = buffer;
+        this.mask = capacity - 1;
+        this.position = position;
+    }
+
+    /**
+     * Opens or creates the ring file keeping the last {@code capacity} calls, rounded up to the next power
+     * of two. An existing file with a different layout is overwritten.
+     */
+    public static FlightRecorder open(Path file, int capacity)
+            throws IOException {
+
+        Objects.requireNonNull(file, "file cannot be null");
+        Preconditions.requireGreaterEquals(capacity, 1, "capacity must be greater or equal to 1");
+        Preconditions.requireGreaterEquals(1 << 24, capacity, "capacity must be less or equal to 2^24");
+        int size = Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1;
+
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            long fileSize = HEADER_SIZE + (long) size * RECORD_SIZE;
+            boolean continued = channel.size() == fileSize;
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+            continued &= buffer.getInt(MAGIC_OFFSET) == MAGIC && buffer.getInt(VERSION_OFFSET) == VERSION
+                    && buffer.getInt(CAPACITY_OFFSET) == size;
+
+            if (!continued) {
+                for (int i = 0; i < fileSize; i += 8) {
+                    buffer.putLong(i, 0);
+                }
+                buffer.putInt(VERSION_OFFSET, VERSION);
+                buffer.putInt(CAPACITY_OFFSET, size);
+                buffer.putInt(MAGIC_OFFSET, MAGIC);
+                return new FlightRecorder(channel, buffer, size, 0);
+            }
+
+            long position = 0;
+            for (int i = 0; i < size; i++) {
+                position = Math.max(position, buffer.getLong(HEADER_SIZE + i * RECORD_SIZE + SEQUENCE_OFFSET));
+            }
+            return new FlightRecorder(channel, buffer, size, position);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Number of calls recorded into the file, including the ones which were overwritten since.
+     */
+    public long getNumberOfRecords() {
+        return position;
+    }
+
+    /**
+     * Returns the id of the breaker with the given name, registering the name if it is new. The header holds
+     * the names of at most {@link #MAX_NAMED_BREAKERS} breakers, registering a further name fails.
+     */
+    synchronized int register(String name) {
+        int count = buffer.getInt(BREAKER_COUNT_OFFSET);
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, NAME_SIZE - 2);
+        for (int id = 0; id < Math.min(count, MAX_NAMED_BREAKERS); id++) {
+            if (nameEquals(NAMES_OFFSET + id * NAME_SIZE, bytes, length)) {
+                return id;
+            }
+        }
+
+        if (count >= MAX_NAMED_BREAKERS) {
+            throw new IllegalStateException(
+                    "FlightRecorder holds at most " + MAX_NAMED_BREAKERS + " breakers, cannot register " + name);
+        }
+
+        int offset = NAMES_OFFSET + count * NAME_SIZE;
+        buffer.putShort(offset, (short) length);
+        for (int i = 0; i < length; i++) {
+            buffer.put(offset + 2 + i, bytes[i]);
+        }
+        buffer.putInt(BREAKER_COUNT_OFFSET, count + 1);
+        return count;
+    }
+
+    /**
+     * Appends the outcome of a call, {@code methodIndex} is the position of the method in the breaker's
+     * method table or {@code -1} if unknown.
+     */
+    void record(int breakerId, int methodIndex, Outcome outcome, long latency) {
+        long sequence = POSITION_UPDATER.incrementAndGet(this);
+        int offset = HEADER_SIZE + (int) ((sequence - 1) & mask) * RECORD_SIZE;
+
+        buffer.putLong(offset + SEQUENCE_OFFSET, 0);
+        buffer.putLong(offset + TIMESTAMP_OFFSET, System.currentTimeMillis());
+        buffer.putLong(offset + LATENCY_OFFSET, latency);
+        buffer.putShort(offset + BREAKER_OFFSET, (short) breakerId);
+        buffer.putShort(offset + METHOD_OFFSET, (short) methodIndex);
+        buffer.put(offset + OUTCOME_OFFSET, (byte) outcome.ordinal());
+        buffer.putLong(offset + SEQUENCE_OFFSET, sequence);
+    }
+
+    /**
+     * Writes the mapped records through to the file, which is only needed to survive a crash of the
+     * operating system. A crashed process leaves the records to the page cache.
+     */
+    public void force() {
+        buffer.force();
+    }
+
+    @Override
+    public void close()
+            throws IOException {
+
+        buffer.force();
+        channel.close();
+    }
+
+    static Outcome outcome(int ordinal) {
+        return ordinal >= 0 && ordinal < OUTCOMES.length ? OUTCOMES[ordinal] : null;
+    }
+
+    private boolean nameEquals(int offset, byte[] bytes, int length) {
+        if (buffer.getShort(offset) != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (buffer.get(offset + 2 + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
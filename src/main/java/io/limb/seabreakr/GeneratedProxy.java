@@ -0,0 +1,7 @@
+package io.limb.seabreakr;
+
+public interface GeneratedProxy {
+
+    MethodDispatcher getMethodDispatcher();
+
+}
@@ -0,0 +1,124 @@
+package io.limb.seabreakr;
+
+import io.limb.seabreakr.spi.EventListener;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Runtime part of a breaker gossiping through a {@link GossipNode}. Registered as listener of the breaker
+ * it hands every transition to the node for broadcasting, and it keeps the latest summary of each peer to
+ * apply the {@link GossipPolicy} whenever a new one arrives.
+ * <p>
+ * Opens caused by gossip are flagged in the summaries and never count toward the quorum of a peer, and
+ * summaries received before the last close of the local breaker are ignored. Otherwise breakers which
+ * recovered would open each other again on the stale or echoed opens of their peers.
+ */
+final class GossipMember
+        implements EventListener {
+
+    private final ConcurrentMap<Long, PeerView> peers = new ConcurrentHashMap<>();
+
+    private final GossipNode node;
+    private final String name;
+    private final GossipPolicy policy;
+
+    private volatile CircuitBreaker circuitBreaker;
+    private volatile boolean openedByGossip;
+    private volatile long closedAt = System.nanoTime();
+
+    GossipMember(GossipNode node, String name, GossipPolicy policy) {
+        this.node = node;
+        this.name = name;
+        this.policy = policy;
+    }
+
+    @Override
+    public void onEvent(Event event) {
+        State state = event.getState();
+        if (state != State.Open) {
+            openedByGossip = false;
+        }
+        if (state == State.Closed) {
+            closedAt = System.nanoTime();
+        }
+        node.publish(this);
+    }
+
+    String getName() {
+        return name;
+    }
+
+    CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    void attach(CircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    /**
+     * Returns true if the breaker is open because the policy opened it on the summaries of its peers.
+     */
+    boolean isOpenedByGossip() {
+        return openedByGossip;
+    }
+
+    /**
+     * Stores the summary of a peer and opens the breaker if the policy asks for it. Summaries arriving out
+     * of order are ignored.
+     */
+    void onSummary(long peerId, long sequence, State state, boolean openedByGossip, long calls, long failures) {
+        long now = System.nanoTime();
+        PeerView view = new PeerView(sequence, now, state, openedByGossip, calls, failures);
+        peers.merge(peerId, view, (oldView, newView) -> oldView.sequence < newView.sequence ? newView : oldView);
+
+        CircuitBreaker circuitBreaker = this.circuitBreaker;
+        if (circuitBreaker == null || circuitBreaker.getState() != State.Closed) {
+            return;
+        }
+
+        Metrics metrics = circuitBreaker.getMetrics();
+        long totalCalls = metrics.getNumberOfBufferedEvents();
+        long totalFailures = metrics.getNumberOfFailedEvents();
+        int openPeers = 0;
+        long expiry = node.getExpiry();
+        long closedAt = this.closedAt;
+        for (PeerView peer : peers.values()) {
+            if (now - peer.receivedAt > expiry || peer.receivedAt - closedAt < 0) {
+                continue;
+            }
+            if (peer.state == State.Open && !peer.openedByGossip) {
+                openPeers++;
+            }
+            totalCalls += peer.calls;
+            totalFailures += peer.failures;
+        }
+
+        if (policy.shouldOpen(openPeers, totalCalls, totalFailures)) {
+            // Flagged before the transition, the summary sent for it already carries the flag
+            this.openedByGossip = true;
+            circuitBreaker.open();
+        }
+    }
+
+    private static final class PeerView {
+        private final long sequence;
+        private final long receivedAt;
+        private final State state;
+        private final boolean openedByGossip;
+        private final long calls;
+        private final long failures;
+
+        private PeerView(long sequence, long receivedAt, State state, boolean openedByGossip, long calls,
+                         long failures) {
+
+            this.sequence = sequence;
+            this.receivedAt = receivedAt;
+            this.state = state;
+            this.openedByGossip = openedByGossip;
+            this.calls = calls;
+            this.failures = failures;
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package io.limb.seabreakr;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Gossips the state of breakers between the instances of a fleet over UDP. Every breaker joining the node
+ * through {@link CircuitBreakerBuilder#gossip(GossipNode, GossipPolicy)} sends a compact summary of its
+ * state and sliding window to all peers right after each transition and once per gossip interval, and
+ * applies its {@link GossipPolicy} to the summaries of the breakers of the same name on the peers.
+ * <p>
+ * Calls never wait for the network: transitions are put onto a bounded lock-free queue and sent by the
+ * node's sender thread, a full queue drops the transition until the next periodic summary. Datagrams are
+ * received by a second thread. Breakers are matched across nodes by their {@link CircuitBreaker#getName() name}.
+ * One node may be shared by many breakers of a process.
+ */
+public final class GossipNode
+        implements Closeable {
+
+    public static final long DEFAULT_INTERVAL_MILLIS = 1000;
+
+    static final int MAGIC = 0x53424750; // SBGP
+    static final byte VERSION = 2;
+
+    static final int MAX_NAME_SIZE = 255;
+
+    // Message layout, followed by the UTF-8 bytes of the breaker name
+    private static final int HEADER_SIZE = 4 + 1 + 1 + 1 + 8 + 8 + 8 + 8 + 2;
+    private static final int MAX_MESSAGE_SIZE = HEADER_SIZE + MAX_NAME_SIZE;
+
+    // Message flags
+    private static final byte OPENED_BY_GOSSIP = 1;
+
+    private static final int QUEUE_CAPACITY = 1024;
+    private static final int EXPIRY_INTERVALS = 3;
+
+    private static final State[] STATES = State.values();
+
+    private final ConcurrentMap<String, GossipMember> members = new ConcurrentHashMap<>();
+    private final List<InetSocketAddress> peers = new CopyOnWriteArrayList<>();
+    private final EventQueue<GossipMember> pending = new EventQueue<>(QUEUE_CAPACITY);
+
+    private final LongAdder sentMessages = new LongAdder();
+    private final LongAdder receivedMessages = new LongAdder();
+    private final LongAdder droppedMessages = new LongAdder();
+
+    private final DatagramChannel channel;
+    private final InetSocketAddress localAddress;
+    private final long nodeId;
+    private final long interval;
+    private final Thread sender;
+    private final Thread receiver;
+
+    // Only written by the sender thread
+    private long sequence;
+
+    private volatile boolean waiting;
+    private volatile boolean closed;
+
+    private GossipNode(DatagramChannel channel, long interval) throws IOException {
+        this.channel = channel;
+        this.localAddress = (InetSocketAddress) channel.getLocalAddress();
+        this.nodeId = ThreadLocalRandom.current().nextLong();
+        this.interval = interval;
+
+        this.sender = new Thread(this::send, "SeaBreakr-Gossip-Sender-" + localAddress.getPort());
+        this.receiver = new Thread(this::receive, "SeaBreakr-Gossip-Receiver-" + localAddress.getPort());
+        sender.setDaemon(true);
+        receiver.setDaemon(true);
+        sender.start();
+        receiver.start();
+    }
+
+    /**
+     * Binds the node to the given address, use port {@code 0} for an ephemeral port.
+     */
+    public static GossipNode open(InetSocketAddress bindAddress)
+            throws IOException {
+
+        return open(bindAddress, DEFAULT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Binds the node to the given address and sends the summaries of all breakers every {@code interval}.
+     */
+    public static GossipNode open(InetSocketAddress bindAddress, long interval, TimeUnit timeUnit)
+            throws IOException {
+
+        Objects.requireNonNull(bindAddress, "bindAddress cannot be null");
+        Objects.requireNonNull(timeUnit, "timeUnit cannot be null");
+        Preconditions.requireGreaterEquals(interval, 1, "interval must be greater or equal to 1");
+
+        DatagramChannel channel = DatagramChannel.open();
+        try {
+            channel.bind(bindAddress);
+            return new GossipNode(channel, timeUnit.toNanos(interval));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public void addPeer(InetSocketAddress peer) {
+        Objects.requireNonNull(peer, "peer cannot be null");
+        if (!peers.contains(peer)) {
+            peers.add(peer);
+        }
+    }
+
+    public void removePeer(InetSocketAddress peer) {
+        peers.remove(peer);
+    }
+
+    public InetSocketAddress getLocalAddress() {
+        return localAddress;
+    }
+
+    public long getNumberOfSentMessages() {
+        return sentMessages.sum();
+    }
+
+    public long getNumberOfReceivedMessages() {
+        return receivedMessages.sum();
+    }
+
+    /**
+     * Number of summaries which were not sent, because the queue was full or the network refused them.
+     */
+    public long getNumberOfDroppedMessages() {
+        return droppedMessages.sum();
+    }
+
+    @Override
+    public void close()
+            throws IOException {
+
+        closed = true;
+        LockSupport.unpark(sender);
+        channel.close();
+    }
+
+    GossipMember newMember(String name, GossipPolicy policy) {
+        if (name.getBytes(StandardCharsets.UTF_8).length > MAX_NAME_SIZE) {
+            throw new IllegalArgumentException("name must not be longer than " + MAX_NAME_SIZE + " bytes");
+        }
+        if (members.containsKey(name)) {
+            throw alreadyJoined(name);
+        }
+        return new GossipMember(this, name, policy);
+    }
+
+    /**
+     * Registers the member of a built breaker, only one breaker per name may gossip through a node.
+     */
+    void join(GossipMember member, CircuitBreaker circuitBreaker) {
+        if (members.putIfAbsent(member.getName(), member) != null) {
+            throw alreadyJoined(member.getName());
+        }
+        member.attach(circuitBreaker);
+        publish(member);
+    }
+
+    /**
+     * Stops gossiping about the member's breaker, peers forget it once its summaries expire.
+     */
+    void leave(GossipMember member) {
+        members.remove(member.getName(), member);
+    }
+
+    /**
+     * Queues the summary of the member for sending, never blocks.
+     */
+    void publish(GossipMember member) {
+        if (!pending.offer(member)) {
+            droppedMessages.increment();
+        }
+        if (waiting) {
+            LockSupport.unpark(sender);
+        }
+    }
+
+    long getExpiry() {
+        return interval * EXPIRY_INTERVALS;
+    }
+
+    private void send() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(MAX_MESSAGE_SIZE);
+        long nextSummaries = System.nanoTime();
+        while (!closed) {
+            GossipMember member;
+            while ((member = pending.poll()) != null) {
+                send(buffer, member);
+            }
+
+            long now = System.nanoTime();
+            if (now - nextSummaries >= 0) {
+                for (GossipMember m : members.values()) {
+                    send(buffer, m);
+                }
+                nextSummaries = now + interval;
+                continue;
+            }
+
+            // Announce the wait before checking the queue again, publishers unpark only a waiting sender
+            waiting = true;
+            if (pending.isEmpty() && !closed) {
+                LockSupport.parkNanos(this, nextSummaries - now);
+            }
+            waiting = false;
+        }
+    }
+
+    private void send(ByteBuffer buffer, GossipMember member) {
+        CircuitBreaker circuitBreaker = member.getCircuitBreaker();
+        if (circuitBreaker == null) {
+            return;
+        }
+
+        Metrics metrics = circuitBreaker.getMetrics();
+        State state = circuitBreaker.getState();
+        byte[] name = member.getName().getBytes(StandardCharsets.UTF_8);
+        buffer.clear();
+        buffer.putInt(MAGIC);
+        buffer.put(VERSION);
+        buffer.put((byte) state.ordinal());
+        buffer.put(state == State.Open && member.isOpenedByGossip() ? OPENED_BY_GOSSIP : 0);
+        buffer.putLong(nodeId);
+        buffer.putLong(++sequence);
+        buffer.putLong(metrics.getNumberOfBufferedEvents());
+        buffer.putLong(metrics.getNumberOfFailedEvents());
+        buffer.putShort((short) name.length);
+        buffer.put(name);
+        buffer.flip();
+
+        for (InetSocketAddress peer : peers) {
+            try {
+                channel.send(buffer, peer);
+                sentMessages.increment();
+            } catch (IOException e) {
+                if (closed) {
+                    return;
+                }
+                droppedMessages.increment();
+            }
+            buffer.rewind();
+        }
+    }
+
+    private void receive() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(MAX_MESSAGE_SIZE);
+        while (!closed) {
+            buffer.clear();
+            try {
+                channel.receive(buffer);
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                continue;
+            }
+            buffer.flip();
+            receive(buffer);
+        }
+    }
+
+    private void receive(ByteBuffer buffer) {
+        // Datagrams of other protocols, other versions or the node itself are ignored
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.get() != VERSION) {
+            return;
+        }
+        int state = buffer.get();
+        byte flags = buffer.get();
+        long peerId = buffer.getLong();
+        long sequence = buffer.getLong();
+        long calls = buffer.getLong();
+        long failures = buffer.getLong();
+        int length = buffer.getShort();
+        if (peerId == nodeId || state < 0 || state >= STATES.length || length < 0 || length != buffer.remaining()) {
+            return;
+        }
+
+        byte[] name = new byte[length];
+        buffer.get(name);
+        receivedMessages.increment();
+        GossipMember member = members.get(new String(name, StandardCharsets.UTF_8));
+        if (member != null) {
+            boolean openedByGossip = (flags & OPENED_BY_GOSSIP) != 0;
+            member.onSummary(peerId, sequence, STATES[state], openedByGossip, calls, failures);
+        }
+    }
+
+    private static IllegalStateException alreadyJoined(String name) {
+        return new IllegalStateException("A breaker named " + name + " already gossips through this node");
+    }
+}
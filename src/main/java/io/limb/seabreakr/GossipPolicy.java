@@ -0,0 +1,91 @@
+package io.limb.seabreakr;
+
+/**
+ * Configuration of how a breaker gossiping through a {@link GossipNode} combines the summaries received
+ * from its peers with its own state. Remote signals only ever open a closed breaker early, the transition
+ * to HalfOpen and the trials stay local. Summaries of peers which were not heard of for three gossip
+ * intervals are ignored.
+ */
+public final class GossipPolicy {
+
+    private static final GossipPolicy BROADCAST_ONLY = new GossipPolicy(0, -1.f, 0);
+
+    private final int openPeers;
+    private final float failureRateThreshold;
+    private final int minimumNumberOfCalls;
+
+    private GossipPolicy(int openPeers, float failureRateThreshold, int minimumNumberOfCalls) {
+        this.openPeers = openPeers;
+        this.failureRateThreshold = failureRateThreshold;
+        this.minimumNumberOfCalls = minimumNumberOfCalls;
+    }
+
+    /**
+     * Publishes the state and window of the breaker to the peers but never acts on theirs.
+     */
+    public static GossipPolicy broadcastOnly() {
+        return BROADCAST_ONLY;
+    }
+
+    /**
+     * Opens the breaker as soon as at least {@code openPeers} peers report their breaker of the same name
+     * as open. Peers which were opened by gossip themselves do not count.
+     */
+    public static GossipPolicy quorum(int openPeers) {
+        return BROADCAST_ONLY.withQuorum(openPeers);
+    }
+
+    /**
+     * Opens the breaker as soon as the failure rate over the local window and the windows of all peers
+     * exceeds {@code failureRateThreshold} percent, once they hold at least {@code minimumNumberOfCalls}
+     * calls together.
+     */
+    public static GossipPolicy clusterFailureRate(float failureRateThreshold, int minimumNumberOfCalls) {
+        return BROADCAST_ONLY.withClusterFailureRate(failureRateThreshold, minimumNumberOfCalls);
+    }
+
+    public GossipPolicy withQuorum(int openPeers) {
+        Preconditions.requireGreaterEquals(openPeers, 1, "openPeers must be greater or equal to 1");
+        return new GossipPolicy(openPeers, failureRateThreshold, minimumNumberOfCalls);
+    }
+
+    public GossipPolicy withClusterFailureRate(float failureRateThreshold, int minimumNumberOfCalls) {
+        if (failureRateThreshold < 0.f || failureRateThreshold > 100.f) {
+            throw new IllegalArgumentException("failureRateThreshold must be between 0 and 100");
+        }
+        Preconditions.requireGreaterEquals(minimumNumberOfCalls, 1, "minimumNumberOfCalls must be greater or equal to 1");
+        return new GossipPolicy(openPeers, failureRateThreshold, minimumNumberOfCalls);
+    }
+
+    /**
+     * Number of open peers which open the breaker, {@code 0} if the quorum is disabled.
+     */
+    public int getOpenPeers() {
+        return openPeers;
+    }
+
+    /**
+     * Cluster failure rate in percent which opens the breaker, {@code -1} if disabled.
+     */
+    public float getFailureRateThreshold() {
+        return failureRateThreshold;
+    }
+
+    public int getMinimumNumberOfCalls() {
+        return minimumNumberOfCalls;
+    }
+
+    boolean shouldOpen(int openPeers, long calls, long failures) {
+        if (this.openPeers > 0 && openPeers >= this.openPeers) {
+            return true;
+        }
+        return failureRateThreshold >= 0.f && calls >= minimumNumberOfCalls
+                && failures * 100.f / calls > failureRateThreshold;
+    }
+
+    @Override
+    public String toString() {
+        return "GossipPolicy{" + "openPeers=" + openPeers + ", failureRateThreshold=" + failureRateThreshold
+                + ", minimumNumberOfCalls=" + minimumNumberOfCalls + '}';
+    }
+}
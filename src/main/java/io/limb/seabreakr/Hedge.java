@@ -0,0 +1,114 @@
+package io.limb.seabreakr;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Configuration of hedged calls. When a call of an idempotent method did not complete within the hedge
+ * delay, a second attempt is sent to the backend, or to the failover, and the first successful response
+ * wins while the other attempt is cancelled. Unlike the failover on timeout, hedging does not wait for the
+ * deadline of the call.
+ * <p>
+ * The delay is either fixed or a percentile of the latencies of the method, or of the breaker if method
+ * latencies are disabled. Percentile delays are refreshed once per second and no call is hedged before
+ * {@link #MIN_SAMPLES} latencies were recorded. Hedged calls are capped at a percentage of the calls by a
+ * budget like the one of {@link Retry}. If the breaker retries as well, hedges draw from the retry budget
+ * instead, so retries and hedges together stay within it, and the budget of the hedge is ignored.
+ * Synchronous calls in {@link ExecutionMode#Direct direct execution mode} are not hedged.
+ */
+public final class Hedge {
+
+    public static final float DEFAULT_BUDGET_PERCENTAGE = 5.f;
+
+    public static final int DEFAULT_BUDGET_CAPACITY = 10;
+
+    public static final long MIN_SAMPLES = 100;
+
+    private static final Hedge NONE = new Hedge(-1, Double.NaN, false, 0, 0);
+
+    private final long delay;
+    private final double percentile;
+    private final boolean toFailover;
+    private final float budgetPercentage;
+    private final int budgetCapacity;
+
+    private Hedge(long delay, double percentile, boolean toFailover, float budgetPercentage, int budgetCapacity) {
+        this.delay = delay;
+        this.percentile = percentile;
+        this.toFailover = toFailover;
+        this.budgetPercentage = budgetPercentage;
+        this.budgetCapacity = budgetCapacity;
+    }
+
+    public static Hedge none() {
+        return NONE;
+    }
+
+    public static Hedge afterDelay(long delay, TimeUnit timeUnit) {
+        Objects.requireNonNull(timeUnit, "timeUnit cannot be null");
+        Preconditions.requireGreaterEquals(delay, 1, "delay must be greater or equal to 1");
+        return new Hedge(timeUnit.toNanos(delay), Double.NaN, false, DEFAULT_BUDGET_PERCENTAGE, DEFAULT_BUDGET_CAPACITY);
+    }
+
+    /**
+     * Hedges calls which take longer than the given latency percentile (0 to 100), e.g. {@code 95}.
+     */
+    public static Hedge afterPercentile(double percentile) {
+        if (!(percentile > 0.0 && percentile < 100.0)) {
+            throw new IllegalArgumentException("percentile must be between 0 and 100");
+        }
+        return new Hedge(-1, percentile, false, DEFAULT_BUDGET_PERCENTAGE, DEFAULT_BUDGET_CAPACITY);
+    }
+
+    /**
+     * Sends the hedged attempt to the failover instead of the backend. A call answered by the failover
+     * counts as a timed out call of the backend, so a hung backend still trips the breaker.
+     */
+    public Hedge toFailover() {
+        return new Hedge(delay, percentile, true, budgetPercentage, budgetCapacity);
+    }
+
+    public Hedge withBudget(float budgetPercentage, int budgetCapacity) {
+        if (budgetPercentage < 0.f || budgetPercentage > 100.f) {
+            throw new IllegalArgumentException("budgetPercentage must be between 0 and 100");
+        }
+        Preconditions.requireGreaterEquals(budgetCapacity, 1, "budgetCapacity must be greater or equal to 1");
+        return new Hedge(delay, percentile, toFailover, budgetPercentage, budgetCapacity);
+    }
+
+    public boolean isEnabled() {
+        return delay > 0 || !Double.isNaN(percentile);
+    }
+
+    /**
+     * Fixed hedge delay in nanoseconds, {@code -1} for percentile based delays.
+     */
+    public long getDelay() {
+        return delay;
+    }
+
+    /**
+     * Latency percentile the hedge delay follows, {@code NaN} for fixed delays.
+     */
+    public double getPercentile() {
+        return percentile;
+    }
+
+    public boolean isToFailover() {
+        return toFailover;
+    }
+
+    public float getBudgetPercentage() {
+        return budgetPercentage;
+    }
+
+    public int getBudgetCapacity() {
+        return budgetCapacity;
+    }
+
+    @Override
+    public String toString() {
+        return "Hedge{" + "delay=" + delay + ", percentile=" + percentile + ", toFailover=" + toFailover
+                + ", budgetPercentage=" + budgetPercentage + ", budgetCapacity=" + budgetCapacity + '}';
+    }
+}
@@ -0,0 +1,116 @@
+package io.limb.seabreakr;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runtime part of a {@link Hedge}, one instance per breaker, which owns the hedge counters and the hedge
+ * budget, or draws from the retry budget if the breaker retries as well. The delay is computed by a
+ * {@link Trigger} per hedged method.
+ */
+final class HedgeStage {
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder wins = new LongAdder();
+
+    private final Hedge hedge;
+    private final LoadBudget budget;
+    private final boolean sharedBudget;
+
+    /**
+     * Creates the stage with its own budget, or with {@code retryBudget} if not {@code null}. The retry
+     * budget is refilled by every call of the breaker, so hedges do not deposit into it.
+     */
+    HedgeStage(Hedge hedge, LoadBudget retryBudget) {
+        this.hedge = hedge;
+        this.sharedBudget = retryBudget != null;
+        this.budget = sharedBudget //
+                ? retryBudget : new LoadBudget(hedge.getBudgetPercentage(), hedge.getBudgetCapacity());
+    }
+
+    boolean isToFailover() {
+        return hedge.isToFailover();
+    }
+
+    Trigger newTrigger(LatencyHistogram latencies) {
+        return new Trigger(hedge, latencies);
+    }
+
+    /**
+     * Called once for every call of a hedged method, refills the hedge budget unless it is shared.
+     */
+    void onCall() {
+        calls.increment();
+        if (!sharedBudget) {
+            budget.deposit();
+        }
+    }
+
+    boolean tryHedge() {
+        if (!budget.tryWithdraw()) {
+            return false;
+        }
+        hedges.increment();
+        return true;
+    }
+
+    void recordWin() {
+        wins.increment();
+    }
+
+    long getNumberOfHedges() {
+        return hedges.sum();
+    }
+
+    long getNumberOfHedgeWins() {
+        return wins.sum();
+    }
+
+    float getHedgeRate() {
+        long calls = this.calls.sum();
+        return calls == 0 ? 0.f : hedges.sum() * 100.f / calls;
+    }
+
+    /**
+     * Hedge delay of a single method. Percentile delays are cached and refreshed by one caller per second,
+     * since a snapshot of the histogram is too expensive to take for every call.
+     */
+    static final class Trigger {
+
+        private static final AtomicLongFieldUpdater<Trigger> REFRESH_AT_UPDATER = //
+                AtomicLongFieldUpdater.newUpdater(Trigger.class, "refreshAt");
+
+        private static final long REFRESH_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
+        private final Hedge hedge;
+        private final LatencyHistogram latencies;
+
+        private volatile long delay = -1;
+
+        // Only updated through Atomic Updater
+        private volatile long refreshAt;
+
+        private Trigger(Hedge hedge, LatencyHistogram latencies) {
+            this.hedge = hedge;
+            this.latencies = latencies;
+            this.refreshAt = System.nanoTime();
+        }
+
+        /**
+         * Returns the hedge delay in nanoseconds, {@code -1} while too few latencies are known.
+         */
+        long delay() {
+            if (hedge.getDelay() > 0) {
+                return hedge.getDelay();
+            }
+            long now = System.nanoTime();
+            long refreshAt = this.refreshAt;
+            if (now - refreshAt >= 0 && REFRESH_AT_UPDATER.compareAndSet(this, refreshAt, now + REFRESH_INTERVAL)) {
+                delay = latencies.getCount() < Hedge.MIN_SAMPLES ? -1 : latencies.getPercentile(hedge.getPercentile());
+            }
+            return delay;
+        }
+    }
+}
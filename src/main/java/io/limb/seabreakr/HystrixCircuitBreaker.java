@@ -23,7 +23,8 @@ public class HystrixCircuitBreaker<T>
                                     EventListener listener, int numOfBufferedEvents) {
 
         // TODO
-        super(type, backend, failover, listener, numOfBufferedEvents, ContextImpl::new);
+        super(type, backend, failover, listener, SlidingWindow.countBased(numOfBufferedEvents),
+                ContextFactories.defaultFactory());
 
         this.groupKey = HystrixCommandGroupKey.Factory.asKey(type.getName());
 
@@ -1,139 +1,869 @@
 package io.limb.seabreakr;
 
 import io.limb.seabreakr.spi.Context;
-import io.limb.seabreakr.spi.EventListener;
 import io.limb.seabreakr.spi.EventPublisher;
 import io.limb.seabreakr.spi.Strategy;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Scheduler;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
 
 import static io.limb.seabreakr.BreakerExceptions.rethrow;
 import static io.limb.seabreakr.BreakerExceptions.unwrapException;
 
 class JavaProxyCircuitBreaker<T>
         extends AbstractCircuitBreaker<T>
-        implements InvocationHandler {
+        implements InvocationHandler, MethodDispatcher {
 
+    private static final State[] STATES = State.values();
+
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final List<Runnable> shutdownActions = new CopyOnWriteArrayList<>();
+
+    private final BulkheadStage bulkhead;
+    private final RetryStage retry;
+    private final RateLimiter rateLimiter;
+    private final HedgeStage hedge;
+    private final CoalescingStage coalescing = new CoalescingStage();
+    private final ResponseCacheStage cache;
+    private final Streaming streaming;
+    private final Map<Method, MethodPlan> plansByMethod;
+    private final MethodPlan[] plans;
     private final Strategy strategy;
+    private final String name;
+    private final ExecutionMode executionMode;
     private final boolean callThrough;
     private final Scheduler scheduler;
+    private final Executor virtualExecutor;
+    private final EventDispatcher events;
+    private final FlightRecorder flightRecorder;
+    private final int flightRecorderId;
     private final long timeout;
+    private final Metrics metrics;
+
+    /**
+     * The proxy engines differ in the methods and invokers only, {@code methods[i]} is called through
+     * {@code invokers[i]}.
+     */
+    JavaProxyCircuitBreaker(BreakerConfig<T> config, Method[] methods, MethodInvoker[] invokers) {
+        super(config.getType(), config.getBackend(), config.getFailover(), config.getEvents(),
+                config.getSlidingWindow(), config.getContextFactory(), config.getTransitionScheduler(),
+                config.getWaitDurationInOpenState(), config.getPermittedCallsInHalfOpenState());
+
+        Hedge hedge = config.getHedge();
+        ResponseCache cache = config.getCache();
+        this.retry = new RetryStage(config.getRetry());
+        this.hedge = new HedgeStage(hedge, this.retry.isEnabled() ? this.retry.getBudget() : null);
+        this.plans = new MethodPlan[methods.length];
+        this.plansByMethod = new HashMap<>();
+        for (int i = 0; i < methods.length; i++) {
+            String methodName = methods[i].getName();
+            HedgeStage methodHedge = hedge.isEnabled() && config.getHedgedMethods().contains(methodName)
+                    ? this.hedge : null;
+            boolean coalesced = config.getCoalescedMethods().contains(methodName);
+            long cacheTimeToLive = cache.isEnabled() ? cache.getTimeToLive(methodName) : -1;
+            plans[i] = MethodPlan.of(methods[i], i, invokers[i], config.getTimeout(), config.isMethodLatencies(),
+                    methodHedge, latencies, coalesced, cacheTimeToLive);
+            plansByMethod.put(methods[i], plans[i]);
+        }
+
+        this.strategy = config.getStrategy();
+        this.name = config.getName();
+        this.executionMode = config.getExecutionMode();
+        this.timeout = config.getTimeout();
+        this.scheduler = config.getScheduler();
+        this.virtualExecutor = executionMode == ExecutionMode.Virtual
+                ? VirtualThreads.newExecutor(name) : null;
+        this.callThrough = config.isCallThrough();
+        this.events = config.getEvents();
+        this.flightRecorder = config.getFlightRecorder();
+        this.flightRecorderId = flightRecorder != null ? flightRecorder.register(name) : -1;
+        this.bulkhead = new BulkheadStage(config.getBulkhead(), name, timeout);
+        this.rateLimiter = new RateLimiter(config.getRateLimit());
+        this.cache = new ResponseCacheStage(cache);
+        this.streaming = config.getStreaming();
+        this.metrics = new BreakerMetrics(context.getMetrics(), latencies, this.bulkhead, this.retry, rateLimiter,
+                this.hedge, coalescing, this.cache, this.events);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Releases the threads of the breaker and runs the actions registered by the builder, e.g. leaving the
+     * gossip. Calls which are still running complete, the breaker must not be used afterwards.
+     */
+    void shutdown() {
+        cancelHalfOpen();
+        bulkhead.shutdown();
+        events.shutdown();
+        for (Runnable action : shutdownActions) {
+            action.run();
+        }
+    }
+
+    void onShutdown(Runnable action) {
+        shutdownActions.add(action);
+    }
+
+    @Override
+    public Metrics getMetrics(Method method) {
+        MethodPlan plan = plansByMethod.get(method);
+        if (plan == null || plan.getLatencies() == null) {
+            return metrics;
+        }
+        return new BreakerMetrics(context.getMetrics(), plan.getLatencies(), bulkhead, retry, rateLimiter, hedge,
+                coalescing, cache, events);
+    }
+
+    /**
+     * Writes state, open timestamp, sliding window and latencies of the breaker for a {@link SnapshotStore}.
+     * The window is only written if the context keeps it in process.
+     */
+    void writeSnapshot(DataOutput out)
+            throws IOException {
+
+        State state = context.getState();
+        out.writeByte(state.ordinal());
+        out.writeLong(state == State.Closed ? 0 : getOpenedAt());
+
+        MetricsRecorder metricsRecorder = context.getMetricsRecorder();
+        if (metricsRecorder instanceof PersistentWindow) {
+            ByteArrayOutputStream window = new ByteArrayOutputStream();
+            ((PersistentWindow) metricsRecorder).writeTo(new DataOutputStream(window));
+            out.writeInt(window.size());
+            out.write(window.toByteArray());
+        } else {
+            out.writeInt(0);
+        }
+        latencies.writeTo(out);
+    }
 
-    JavaProxyCircuitBreaker(Class<T> type, Strategy strategy, T backend, T failover, long timeout,
-                            EventListener listener, boolean callThrough, Scheduler scheduler) {
+    /**
+     * Restores a snapshot written {@code age} nanoseconds ago. A window of a different kind or size is
+     * skipped, a breaker which was HalfOpen comes back Open to repeat its trials. The snapshot is decoded
+     * completely before anything is applied, a damaged one leaves the breaker untouched.
+     */
+    void restoreSnapshot(DataInput in, long age)
+            throws IOException {
 
-        super(type, backend, failover, listener, 1000, ContextImpl::new);
+        int state = in.readUnsignedByte();
+        if (state >= STATES.length) {
+            throw new IOException("Unknown state " + state);
+        }
+        long openedAt = in.readLong();
+        byte[] window = new byte[in.readInt()];
+        in.readFully(window);
+        Runnable restoreLatencies = latencies.readFrom(in);
 
-        this.strategy = strategy;
-        this.timeout = timeout;
-        this.scheduler = scheduler;
-        this.callThrough = callThrough;
+        // Windows decode their contents before replacing their own
+        MetricsRecorder metricsRecorder = context.getMetricsRecorder();
+        if (window.length > 0 && metricsRecorder instanceof PersistentWindow) {
+            ((PersistentWindow) metricsRecorder).readFrom(new DataInputStream(new ByteArrayInputStream(window)), age);
+        }
+        restoreLatencies.run();
+        if (STATES[state] != State.Closed) {
+            restoreOpen(openedAt);
+        }
     }
 
     @Override
     public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-        if (!isCallAllowed() && failover == null) {
-            throw createNoSuchFailoverException();
+        MethodPlan plan = plansByMethod.get(method);
+        if (plan == null) {
+            plan = MethodPlan.of(method, ProxyGenerator.reflectiveInvoker(method), timeout, false);
+        }
+        return invoke(plan, args);
+    }
+
+    @Override
+    public Object dispatch(int methodIndex, Object[] args) throws Throwable {
+        return invoke(plans[methodIndex], args);
+    }
+
+    private Object invoke(MethodPlan plan, Object[] args) throws Throwable {
+        if (plan.isBypass()) {
+            try {
+                return plan.getInvoker().invoke(backend, args);
+            } catch (Throwable throwable) {
+                throw unwrapException(throwable);
+            }
+        }
+        Object result = plan.isCached() ? invokeCached(plan, args) : invokeShared(plan, args);
+        if (plan.getReturnKind() == MethodPlan.ReturnKind.Future) {
+            // Subscribed right away, the caller gets a running future back without blocking a thread
+            return ((Mono<?>) result).toFuture();
+        }
+        return result;
+    }
+
+    private Object invokeCached(MethodPlan plan, Object[] args) throws Throwable {
+        if (plan.isReactive()) {
+            return Mono.defer(() -> {
+                Object cached = cache.getFresh(plan, args);
+                if (cached != null) {
+                    return Mono.just(cached);
+                }
+                return plan.isCoalesced() ? invokeCoalescedMono(plan, args) : invokeMono(plan, args);
+            });
+        }
+
+        Object cached = cache.getFresh(plan, args);
+        return cached != null ? cached : invokeShared(plan, args);
+    }
+
+    private Object invokeShared(MethodPlan plan, Object[] args) throws Throwable {
+        if (!plan.isCoalesced()) {
+            return invokePlan(plan, args);
+        }
+        if (plan.isReactive()) {
+            return invokeCoalescedMono(plan, args);
+        }
+        return invokeCoalesced(plan, args);
+    }
+
+    private Mono<Object> invokeCoalescedMono(MethodPlan plan, Object[] args) {
+        return Mono.defer(() -> {
+            CallKey key = CallKey.copyOf(plan, args);
+            CompletableFuture<Object> future = new CompletableFuture<>();
+            CompletableFuture<Object> inFlight = coalescing.join(key, future);
+            if (inFlight != null) {
+                return Mono.fromFuture(inFlight);
+            }
+
+            // Subscribed independently of the first caller, cancelling it must not fail the others
+            Mono<Object> call = invokeMono(plan, args);
+            call.subscribe(value -> coalescing.complete(key, future, value, null),
+                    error -> coalescing.complete(key, future, null, error),
+                    () -> coalescing.complete(key, future, null, null));
+            return Mono.fromFuture(future);
+        }).mapError(BreakerExceptions::unwrapException);
+    }
+
+    private Object invokeCoalesced(MethodPlan plan, Object[] args) throws Throwable {
+        CallKey key = CallKey.copyOf(plan, args);
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> inFlight = coalescing.join(key, future);
+        if (inFlight != null) {
+            // Waits no longer than the deadline of its own call, the call in flight may never complete
+            try {
+                return inFlight.get(plan.getDeadline().toNanos(), TimeUnit.NANOSECONDS);
+            } catch (ExecutionException e) {
+                throw unwrapException(e.getCause());
+            } catch (TimeoutException e) {
+                throw new CallTimeoutException("Call timed out", e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CallTimeoutException("Call interrupted", e);
+            }
+        }
+
+        try {
+            Object result = invokePlan(plan, args);
+            coalescing.complete(key, future, result, null);
+            return result;
+        } catch (Throwable throwable) {
+            coalescing.complete(key, future, null, throwable);
+            throw throwable;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Mono<Object> invokeMono(MethodPlan plan, Object[] args) {
+        try {
+            return (Mono<Object>) invokePlan(plan, args);
+        } catch (Throwable throwable) {
+            return Mono.error(throwable);
+        }
+    }
+
+    private Object invokePlan(MethodPlan plan, Object[] args) throws Throwable {
+        if (plan.getReturnKind() == MethodPlan.ReturnKind.Flux) {
+            return invokeFlux(plan, args);
+        }
+
+        boolean isMono = plan.isReactive();
+        if (!isMono && rateLimiter.isEnabled() && !awaitRateLimit()) {
+            return invokeRateLimited(plan, args);
+        }
+        if (!isMono && executionMode == ExecutionMode.Direct) {
+            return invokeDirect(plan, args);
+        }
+
+        if (!isMono) {
+            // Synchronous calls are subscribed right away, take the permit here to fail fast
+            long permit = strategy.acquirePermit(context);
+            if (permit == Context.NOT_PERMITTED && failover == null && !plan.isCached()) {
+                throw createNoSuchFailoverException();
+            }
+            return invokeAsync(plan, args, permit).block();
+        }
+
+        // Reactive calls take their permit on subscription, an unsubscribed Mono must not hold a trial permit
+        Mono<Object> call = Mono.defer(() -> invokeAsync(plan, args, strategy.acquirePermit(context)));
+        if (!rateLimiter.isEnabled()) {
+            return call;
+        }
+        return Mono.defer(() -> {
+            long wait = rateLimiter.reserve();
+            if (wait < 0) {
+                return rateLimitedAsync(plan, args);
+            }
+            return wait == 0 ? call : Mono.delay(Duration.ofNanos(wait)).then(() -> call);
+        });
+    }
+
+    private Flux<Object> invokeFlux(MethodPlan plan, Object[] args) {
+        // Streams take their permit on subscription, like reactive calls
+        Flux<Object> call = Flux.defer(() -> invokeStream(plan, args, strategy.acquirePermit(context)));
+        if (!rateLimiter.isEnabled()) {
+            return call;
+        }
+        return Flux.defer(() -> {
+            long wait = rateLimiter.reserve();
+            if (wait < 0) {
+                return Flux.from(rateLimitedAsync(plan, args));
+            }
+            return wait == 0 ? call : call.delaySubscription(Duration.ofNanos(wait));
+        });
+    }
+
+    private Flux<Object> invokeStream(MethodPlan plan, Object[] args, long permit) {
+        MethodInvoker invoker = plan.getInvoker();
+        if (permit == Context.NOT_PERMITTED) {
+            return invokeAsFlux(invoker, failover, args);
+        }
+        if (!bulkhead.tryAcquire(false)) {
+            BulkheadFullException rejection = rejectCall(plan, permit);
+            return failover == null ? Flux.error(rejection) : invokeAsFlux(invoker, failover, args);
+        }
+
+        long start = System.nanoTime();
+        Duration firstElementDeadline = streamDeadline(streaming.getFirstElementTimeout());
+        Duration elementDeadline = streamDeadline(streaming.getElementTimeout());
+
+        StreamCall call = new StreamCall();
+        Flux<Object> stream = Flux.using(() -> bulkhead.newPermit(start), //
+                p -> invokeAsFlux(invoker, backend, args).doOnError(p::onError), BulkheadStage.Permit::release)
+                .subscribeOn(scheduler)
+                .timeout(Mono.delay(firstElementDeadline), element -> Mono.delay(elementDeadline))
+                .doOnNext(element -> call.onElement(start));
+
+        if (streaming.getStreamTimeout() > 0) {
+            // Cut the stream off at the deadline, then fail it in place of completing
+            Mono<Long> streamDeadline = Mono.delay(Duration.ofNanos(streaming.getStreamTimeout()));
+            stream = stream
+                    .takeUntilOther(streamDeadline.doOnNext(tick -> call.timedOut = true))
+                    .concatWith(Flux.defer(() -> call.timedOut
+                            ? Flux.error(new CallTimeoutException("Stream timed out")) : Flux.empty()));
+        }
+
+        stream = stream
+                .mapError(error -> error instanceof TimeoutException
+                        ? new CallTimeoutException("Stream element timed out", error) : unwrapException(error))
+                .doOnError(error -> {
+                    call.terminated = true;
+                    recordResult(plan, call.latency(start), permit, error);
+                })
+                .doOnComplete(() -> {
+                    call.terminated = true;
+                    recordResult(plan, call.latency(start), permit, null);
+                })
+                .doOnCancel(() -> {
+                    if (!call.terminated) {
+                        context.releasePermit(permit);
+                    }
+                });
+
+        if (streaming.isResumeOnFailover() && failover != null) {
+            stream = stream.onErrorResumeWith(error -> invokeAsFlux(invoker, failover, args));
+        }
+        return stream;
+    }
+
+    private Duration streamDeadline(long timeout) {
+        return Duration.ofNanos(timeout > 0 ? timeout : this.timeout);
+    }
+
+    private boolean awaitRateLimit() {
+        long wait = rateLimiter.reserve();
+        if (wait <= 0) {
+            return wait == 0;
+        }
+        long deadline = System.nanoTime() + wait;
+        for (long remaining = wait; remaining > 0; remaining = deadline - System.nanoTime()) {
+            LockSupport.parkNanos(this, remaining);
+            if (Thread.currentThread().isInterrupted()) {
+                // The reserved slot lies in the future, hand it to the next caller
+                rateLimiter.cancel();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Object invokeRateLimited(MethodPlan plan, Object[] args) throws Throwable {
+        record(plan, FlightRecorder.Outcome.Rejected, 0);
+        if (rateLimiter.getMode() != RateLimit.Mode.Failover || failover == null) {
+            throw createRateLimitExceededException();
+        }
+        return invokeFailover(plan.getInvoker(), args);
+    }
+
+    private Mono<Object> rateLimitedAsync(MethodPlan plan, Object[] args) {
+        record(plan, FlightRecorder.Outcome.Rejected, 0);
+        if (rateLimiter.getMode() != RateLimit.Mode.Failover || failover == null) {
+            return Mono.error(createRateLimitExceededException());
         }
+        return invokeAsMono(plan.getInvoker(), failover, args);
+    }
+
+    private Mono<Object> invokeAsync(MethodPlan plan, Object[] args, long permit) {
+        MethodInvoker invoker = plan.getInvoker();
+        boolean isMono = plan.isReactive();
 
         Mono<Object> main;
         Mono<Object> fallback;
 
-        boolean isMono = isMono(method);
-        if (isMono) {
-            main = invokeAsMono(method, args);
-            fallback = invokeAsMono(method, failover, args);
+        long start = System.nanoTime();
+        AsyncCall call = new AsyncCall();
+        boolean permitted = permit != Context.NOT_PERMITTED;
+        if (!permitted) {
+            main = staleOr(plan, args, () -> isMono ? invokeAsMono(invoker, failover, args)
+                    : failover == null ? Mono.error(createNoSuchFailoverException())
+                    : Mono.fromFuture(buildCompletableFuture(invoker, failover, args)));
+        } else {
+            retry.onCall();
+            main = attemptBackend(invoker, args, isMono);
+            if (main == null) {
+                return rejectAsync(plan, args, permit, isMono);
+            }
+            if (retry.isEnabled()) {
+                main = withRetries(main, invoker, args, isMono, plan.getDeadline(), start, 1);
+            }
+            if (plan.getHedgeTrigger() != null) {
+                main = hedged(main, plan, args, isMono, call);
+            }
+            if (plan.isCached()) {
+                main = main.doOnSuccess(value -> cache.put(plan, args, value));
+            }
+        }
+
+        // CompletionStage methods time out like synchronous methods, Mono methods go to the failover
+        if (plan.getReturnKind() == MethodPlan.ReturnKind.Mono) {
+            fallback = Mono.defer(() -> staleOr(plan, args, () -> invokeAsMono(invoker, failover, args)));
         } else {
-            CompletableFuture<Object> completableFuture = buildCompletableFuture(method, args);
-            main = Mono.fromFuture(completableFuture);
-            fallback = timeoutHandler(method, args);
+            fallback = Mono.defer(() -> staleOr(plan, args, () -> timeoutHandler(invoker, args, isMono)));
         }
 
-        Duration duration = Duration.ofNanos(timeout);
-        Mono<?> mono = main
-                .subscribeOn(scheduler)
-                .timeout(duration, fallback)
+        return subscribeOn(main, isMono)
+                .timeout(plan.getDeadline(), Mono.defer(() -> {
+                    call.timedOut = true;
+                    return fallback;
+                }))
                 .mapError(BreakerExceptions::unwrapException)
-                .doOnTerminate(this::handleResult);
+                .doOnTerminate((value, error) -> {
+                    call.terminated = true;
+                    handleResult(plan, start, permit, call.failure(error));
+                })
+                .doOnCancel(() -> {
+                    if (permitted && !call.terminated) {
+                        context.releasePermit(permit);
+                    }
+                });
+    }
 
+    /**
+     * Sends a single attempt through the bulkhead to the backend, returns {@code null} if the bulkhead
+     * rejected it.
+     */
+    private Mono<Object> attemptBackend(MethodInvoker invoker, Object[] args, boolean isMono) {
+        long start = System.nanoTime();
+        if (!bulkhead.tryAcquire(!isMono)) {
+            return null;
+        }
+        if (bulkhead.isThreadPool()) {
+            // Subscribing on a scheduler would silently drop rejected tasks, hand the call to the pool directly,
+            // reactive calls included, so a full pool rejects them instead of only assembling them on the pool
+            try {
+                return isMono ? invokeOnPool(invoker, args) : Mono.fromFuture(
+                        buildCompletableFuture(invoker, backend, args, bulkhead.getExecutor()));
+            } catch (RejectedExecutionException e) {
+                return null;
+            }
+        }
         if (isMono) {
-            return mono;
+            return Mono.using(() -> bulkhead.newPermit(start), //
+                    p -> invokeAsMono(invoker, backend, args).doOnError(p::onError),
+                    BulkheadStage.Permit::release);
+        }
+        if (virtualExecutor != null) {
+            return interruptible(bulkheaded(invoke(invoker, backend, args), start), virtualExecutor);
+        }
+        return Mono.fromFuture(buildCompletableFuture(bulkheaded(invoke(invoker, backend, args), start)));
+    }
+
+    private Mono<Object> subscribeOn(Mono<Object> mono, boolean isMono) {
+        // A synchronous attempt already runs on its own virtual thread, a scheduler worker would only add a thread
+        return isMono || virtualExecutor == null ? mono.subscribeOn(scheduler) : mono;
+    }
+
+    /**
+     * Runs the call on a thread of the given executor which is interrupted when the call is cancelled,
+     * either by its deadline or by a hedge answering first.
+     */
+    private Mono<Object> interruptible(ThrowingSupplier<Object> supplier, Executor executor) {
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        FutureTask<Void> task = new FutureTask<>(() -> {
+            try {
+                result.complete(supplier.get());
+            } catch (Throwable throwable) {
+                result.completeExceptionally(throwable);
+            }
+        }, null);
+        executor.execute(task);
+        return Mono.fromFuture(result).doOnCancel(() -> task.cancel(true));
+    }
+
+    private Mono<Object> withRetries(Mono<Object> attempt, MethodInvoker invoker, Object[] args, boolean isMono,
+                                     Duration deadline, long start, int retryNumber) {
+
+        return attempt.otherwise(error -> {
+            Throwable cause = unwrapException(error);
+            long remainingDeadline = deadline.toNanos() - (System.nanoTime() - start);
+            long backoff = retry.backoff(retryNumber, cause, remainingDeadline);
+            if (backoff < 0) {
+                return Mono.error(cause);
+            }
+
+            // Waits on the timer, the retry itself must not run on the timer thread
+            return Mono.delay(Duration.ofNanos(backoff)).then(() -> {
+                Mono<Object> next = attemptBackend(invoker, args, isMono);
+                if (next == null) {
+                    bulkhead.recordRejection();
+                    retry.onRejectedRetry();
+                    return Mono.error(cause);
+                }
+                retry.onRetry();
+                next = withRetries(next, invoker, args, isMono, deadline, start, retryNumber + 1);
+                return subscribeOn(next, isMono);
+            });
+        });
+    }
+
+    private Mono<Object> hedged(Mono<Object> main, MethodPlan plan, Object[] args, boolean isMono, AsyncCall call) {
+        hedge.onCall();
+        long delay = plan.getHedgeTrigger().delay();
+        if (delay < 0 || delay >= plan.getDeadline().toNanos() || (hedge.isToFailover() && failover == null)) {
+            return main;
+        }
+
+        // The hedge only ever answers with a success, its errors leave the call to the first attempt
+        MethodInvoker invoker = plan.getInvoker();
+        Mono<Object> second = Mono.delay(Duration.ofNanos(delay)).then(() -> {
+            if (!hedge.tryHedge()) {
+                return Mono.<Object>never();
+            }
+            Mono<Object> attempt;
+            if (hedge.isToFailover()) {
+                attempt = isMono ? invokeAsMono(invoker, failover, args)
+                        : Mono.fromFuture(buildCompletableFuture(invoker, failover, args));
+            } else {
+                attempt = attemptBackend(invoker, args, isMono);
+                if (attempt == null) {
+                    return Mono.<Object>never();
+                }
+            }
+            return subscribeOn(attempt, isMono)
+                    .doOnSuccess(value -> {
+                        hedge.recordWin();
+                        call.failoverHedged = hedge.isToFailover();
+                    })
+                    .otherwise(error -> Mono.never());
+        });
+
+        // First response wins, the loser is cancelled
+        return main.or(second);
+    }
+
+    private Object invokeDirect(MethodPlan plan, Object[] args) throws Throwable {
+        MethodInvoker invoker = plan.getInvoker();
+        long permit = strategy.acquirePermit(context);
+        if (permit == Context.NOT_PERMITTED) {
+            record(plan, FlightRecorder.Outcome.Failover, 0);
+            Object stale = getStale(plan, args);
+            return stale != null ? stale : invokeFailover(invoker, args);
+        }
+        if (!bulkhead.tryAcquire(true)) {
+            BulkheadFullException rejection = rejectCall(plan, permit);
+            if (failover == null) {
+                throw rejection;
+            }
+            return invokeFailover(invoker, args);
+        }
+
+        Object result = null;
+        Throwable error = null;
+
+        long start = System.nanoTime();
+        DeadlineTimer.Deadline deadline = DeadlineTimer.start(timeout);
+        try {
+            result = invoker.invoke(backend, args);
+        } catch (Throwable throwable) {
+            error = unwrapException(throwable);
+        } finally {
+            bulkhead.release(start, error != null);
+        }
+
+        if (!deadline.complete()) {
+            CallTimeoutException timeoutException = new CallTimeoutException("Call timed out", error);
+            handleResult(plan, start, permit, timeoutException);
+            Object stale = getStale(plan, args);
+            if (stale != null) {
+                return stale;
+            }
+            if (callThrough) {
+                return invokeFailover(invoker, args);
+            }
+            throw timeoutException;
+        }
+
+        handleResult(plan, start, permit, error);
+        if (error != null) {
+            throw error;
         }
-        return mono.block();
+        if (plan.isCached()) {
+            cache.put(plan, args, result);
+        }
+        return result;
+    }
+
+    /**
+     * Serves the last cached result, even if expired, in place of the given failover call.
+     */
+    private Mono<Object> staleOr(MethodPlan plan, Object[] args, Supplier<Mono<Object>> otherwise) {
+        Object stale = getStale(plan, args);
+        return stale != null ? Mono.just(stale) : otherwise.get();
     }
 
-    private <V> Mono<V> invokeAsMono(Method method, Object[] args) {
-        Object proxy = isCallAllowed() ? backend : failover;
-        return invokeAsMono(method, proxy, args);
+    private Object getStale(MethodPlan plan, Object[] args) {
+        return plan.isCached() ? cache.getStale(plan, args) : null;
+    }
+
+    private Object invokeFailover(MethodInvoker invoker, Object[] args) throws Throwable {
+        if (failover == null) {
+            throw createNoSuchFailoverException();
+        }
+        try {
+            return invoker.invoke(failover, args);
+        } catch (Throwable throwable) {
+            throw unwrapException(throwable);
+        }
     }
 
-    private <V> Mono<V> invokeAsMono(Method method, Object proxy, Object[] args) {
+    private <V> Mono<V> invokeAsMono(MethodInvoker invoker, Object proxy, Object[] args) {
         if (proxy == null) {
             return Mono.error(createNoSuchFailoverException());
         }
-        ThrowingSupplier<Mono<V>> invoker = invoke(method, proxy, args);
-        return invoker.get();
+        ThrowingSupplier<Mono<V>> supplier = invoke(invoker, proxy, args);
+        return supplier.get();
+    }
+
+    private <V> Flux<V> invokeAsFlux(MethodInvoker invoker, Object proxy, Object[] args) {
+        if (proxy == null) {
+            return Flux.error(createNoSuchFailoverException());
+        }
+        ThrowingSupplier<Publisher<V>> supplier = invoke(invoker, proxy, args);
+        return Flux.from(supplier.get());
+    }
+
+    /**
+     * Subscribes to the backend on a pool thread which waits for the result, so the pool bounds the reactive
+     * calls in flight like the synchronous ones and blocking backends run on the pool. Cancelling the call
+     * interrupts the wait, which cancels the backend subscription.
+     */
+    private Mono<Object> invokeOnPool(MethodInvoker invoker, Object[] args) {
+        ThrowingSupplier<Object> call = () -> this.<Object>invokeAsMono(invoker, backend, args).block();
+        return interruptible(call, bulkhead.getExecutor());
+    }
+
+    private Mono<Object> rejectAsync(MethodPlan plan, Object[] args, long permit, boolean isMono) {
+        BulkheadFullException rejection = rejectCall(plan, permit);
+        if (failover == null) {
+            return Mono.error(rejection);
+        }
+        MethodInvoker invoker = plan.getInvoker();
+        return isMono ? invokeAsMono(invoker, failover, args)
+                : Mono.fromFuture(buildCompletableFuture(invoker, failover, args));
+    }
+
+    private BulkheadFullException rejectCall(MethodPlan plan, long permit) {
+        // The trial permit was never used against the backend, a rejection says nothing about its health
+        context.releasePermit(permit);
+        bulkhead.recordRejection();
+        record(plan, FlightRecorder.Outcome.Rejected, 0);
+        return new BulkheadFullException("Circuit breaker cannot execute, bulkhead is full");
+    }
+
+    private <V> ThrowingSupplier<V> bulkheaded(ThrowingSupplier<V> supplier, long start) {
+        // Released when the backend returns, not when the caller stops waiting for it
+        return () -> {
+            boolean failed = true;
+            try {
+                V value = supplier.get();
+                failed = false;
+                return value;
+            } finally {
+                bulkhead.release(start, failed);
+            }
+        };
+    }
+
+    private RateLimitExceededException createRateLimitExceededException() {
+        return new RateLimitExceededException("Circuit breaker cannot execute, rate limit exceeded");
     }
 
     private NoSuchFailoverException createNoSuchFailoverException() {
         return new NoSuchFailoverException("Circuit breaker cannot execute, no failover available");
     }
 
-    private <V> CompletableFuture<V> buildCompletableFuture(Method method, Object[] args) {
-        Object proxy = isCallAllowed() ? backend : failover;
-        ThrowingSupplier<V> invoker = invoke(method, proxy, args);
-        return CompletableFuture.supplyAsync(invoker);
+    private <V> CompletableFuture<V> buildCompletableFuture(MethodInvoker invoker, Object proxy, Object[] args) {
+        return buildCompletableFuture(invoke(invoker, proxy, args));
     }
 
-    private <V> CompletableFuture<V> buildCompletableFuture(Method method, Object proxy, Object[] args) {
-        ThrowingSupplier<V> invoker = invoke(method, proxy, args);
-        return CompletableFuture.supplyAsync(invoker);
+    private <V> CompletableFuture<V> buildCompletableFuture(ThrowingSupplier<V> supplier) {
+        if (virtualExecutor != null) {
+            return CompletableFuture.supplyAsync(supplier, virtualExecutor);
+        }
+        return CompletableFuture.supplyAsync(supplier);
+    }
+
+    private <V> CompletableFuture<V> buildCompletableFuture(MethodInvoker invoker, Object proxy, Object[] args,
+                                                            Executor executor) {
+
+        ThrowingSupplier<V> supplier = invoke(invoker, proxy, args);
+        return CompletableFuture.supplyAsync(supplier, executor);
     }
 
     @SuppressWarnings("unchecked")
-    private <V> ThrowingSupplier<V> invoke(Method method, Object proxy, Object[] args) {
+    private <V> ThrowingSupplier<V> invoke(MethodInvoker invoker, Object proxy, Object[] args) {
         return () -> {
             try {
-                return (V) method.invoke(proxy, args);
+                return (V) invoker.invoke(proxy, args);
             } catch (Throwable throwable) {
-                if (proxy == backend) {
-                    context.getMetricsRecorder().recordFailure();
-                }
                 Throwable t = unwrapException(throwable);
                 throw rethrow(t);
             }
         };
     }
 
-    private <V> Mono<V> timeoutHandler(Method method, Object[] args) {
+    private <V> Mono<V> timeoutHandler(MethodInvoker invoker, Object[] args, boolean isMono) {
         if (callThrough) {
             if (failover == null) {
-                throw createNoSuchFailoverException();
+                return Mono.error(createNoSuchFailoverException());
             }
-            return Mono.fromFuture(buildCompletableFuture(method, failover, args));
+            return isMono ? invokeAsMono(invoker, failover, args)
+                    : Mono.fromFuture(buildCompletableFuture(invoker, failover, args));
         }
 
         return Mono.error(new CallTimeoutException("Call timed out"));
     }
 
-    private boolean isMono(Method method) {
-        return isReturnType(method, Mono.class);
-    }
-
-    private boolean isReturnType(Method method, Class<?> type) {
-        return type.isAssignableFrom(method.getReturnType());
+    private void handleResult(MethodPlan plan, long start, long permit, Throwable error) {
+        recordResult(plan, System.nanoTime() - start, permit, error);
     }
 
-    private void handleResult(Object value, Throwable error) {
+    private void recordResult(MethodPlan plan, long duration, long permit, Throwable error) {
+        // Only calls which went to the backend tell the strategy and the latencies anything about the backend
+        if (permit == Context.NOT_PERMITTED) {
+            record(plan, FlightRecorder.Outcome.Failover, duration);
+            return;
+        }
+        latencies.record(duration);
+        if (plan.getLatencies() != null) {
+            plan.getLatencies().record(duration);
+        }
+        if (flightRecorder != null) {
+            record(plan, error == null ? FlightRecorder.Outcome.Success : error instanceof CallTimeoutException
+                    ? FlightRecorder.Outcome.Timeout : FlightRecorder.Outcome.Failure, duration);
+        }
         if (error != null) {
-            strategy.onFailure(context, listener);
+            strategy.onFailure(context, listener, duration, permit);
         } else {
-            strategy.onSuccess(context, listener);
+            strategy.onSuccess(context, listener, duration, permit);
+        }
+    }
+
+    private void record(MethodPlan plan, FlightRecorder.Outcome outcome, long duration) {
+        if (flightRecorder != null) {
+            flightRecorder.record(flightRecorderId, plan.getIndex(), outcome, duration);
+        }
+    }
+
+    private static final class StreamCall {
+        private volatile long firstElementLatency = -1;
+        private volatile boolean timedOut;
+        private volatile boolean terminated;
+
+        private void onElement(long start) {
+            if (firstElementLatency < 0) {
+                firstElementLatency = System.nanoTime() - start;
+            }
+        }
+
+        // The length of a stream is up to its subscriber, the backend latency is the time to the first element
+        private long latency(long start) {
+            long firstElementLatency = this.firstElementLatency;
+            return firstElementLatency >= 0 ? firstElementLatency : System.nanoTime() - start;
+        }
+    }
+
+    private static final class AsyncCall {
+        private volatile boolean timedOut;
+        private volatile boolean failoverHedged;
+        private volatile boolean terminated;
+
+        // A call which ran into the deadline is a failure, even if the failover answered in its place. So is a
+        // call whose backend was beaten by a hedge to the failover, a hung backend must still trip the breaker
+        private Throwable failure(Throwable error) {
+            if (error == null && timedOut) {
+                return new CallTimeoutException("Call timed out");
+            }
+            if (error == null && failoverHedged) {
+                return new CallTimeoutException("Call was answered by the failover hedge");
+            }
+            return error;
         }
     }
 }
@@ -0,0 +1,213 @@
+package io.limb.seabreakr;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * Fixed size, log-linear latency histogram in the spirit of HdrHistogram. Values are recorded in
+ * nanoseconds into 32 linear sub-buckets per power of two, which keeps the relative error below ~3%
+ * for values up to {@link #MAX_VALUE} (about 2.4 hours). Recording is lock-free and, after the first
+ * recording, allocation-free.
+ * <p>
+ * The buckets take about 10KB and are allocated by the first recording, so breakers which are never
+ * called, e.g. most breakers of a large registry, keep an empty histogram of a few bytes.
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_MAGNITUDE = 42;
+
+    static final int NUM_OF_BUCKETS = (MAX_MAGNITUDE - SUB_BUCKET_BITS + 2) * SUB_BUCKET_COUNT;
+    static final long MAX_VALUE = (1L << (MAX_MAGNITUDE + 1)) - 1;
+
+    private static final AtomicLongFieldUpdater<LatencyHistogram> MAX_UPDATER = //
+            AtomicLongFieldUpdater.newUpdater(LatencyHistogram.class, "max");
+
+    private static final AtomicReferenceFieldUpdater<LatencyHistogram, AtomicLongArray> COUNTS_UPDATER = //
+            AtomicReferenceFieldUpdater.newUpdater(LatencyHistogram.class, AtomicLongArray.class, "counts");
+
+    // Counts at the start of the current interval, null while no interval snapshot was taken
+    private final AtomicReference<long[]> intervalStart = new AtomicReference<>();
+
+    // Only updated through Atomic Updater, null until the first value is recorded
+    private volatile AtomicLongArray counts = null;
+
+    // Only updated through Atomic Updater
+    private volatile long max = 0;
+
+    void record(long value) {
+        long v = value < 0 ? 0 : Math.min(value, MAX_VALUE);
+        counts().incrementAndGet(index(v));
+        updateMax(v);
+    }
+
+    /**
+     * Returns all values recorded since the histogram was created.
+     */
+    LatencySnapshot snapshot() {
+        AtomicLongArray counts = this.counts;
+        return counts == null ? LatencySnapshot.EMPTY : new LatencySnapshot(copyCounts(counts), max);
+    }
+
+    long getCount() {
+        AtomicLongArray counts = this.counts;
+        if (counts == null) {
+            return 0;
+        }
+        long count = 0;
+        for (int i = 0; i < NUM_OF_BUCKETS; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * Same as {@code snapshot().getPercentile(percentile)}, but reads the buckets in place instead of copying
+     * them. Values recorded while the buckets are read may or may not be counted.
+     */
+    long getPercentile(double percentile) {
+        AtomicLongArray counts = this.counts;
+        long count = getCount();
+        if (counts == null || count == 0) {
+            return 0;
+        }
+        long rank = LatencySnapshot.rank(percentile, count);
+        long cumulative = 0;
+        for (int i = 0; i < NUM_OF_BUCKETS; i++) {
+            cumulative += counts.get(i);
+            if (cumulative >= rank) {
+                return Math.min(highestEquivalentValue(i), max);
+            }
+        }
+        return max;
+    }
+
+    long getMax() {
+        return max;
+    }
+
+    /**
+     * Returns the values recorded since the previous interval snapshot and starts a new interval.
+     * Concurrent recordings are never lost, they are attributed to either of both intervals.
+     */
+    LatencySnapshot intervalSnapshot() {
+        AtomicLongArray counts = this.counts;
+        if (counts == null) {
+            return LatencySnapshot.EMPTY;
+        }
+        long[] current = copyCounts(counts);
+        long[] previous = intervalStart.getAndSet(current);
+
+        long[] interval = new long[NUM_OF_BUCKETS];
+        long intervalMax = 0;
+        for (int i = 0; i < NUM_OF_BUCKETS; i++) {
+            interval[i] = Math.max(0, current[i] - (previous == null ? 0 : previous[i]));
+            if (interval[i] > 0) {
+                intervalMax = highestEquivalentValue(i);
+            }
+        }
+        return new LatencySnapshot(interval, Math.min(intervalMax, max));
+    }
+
+    /**
+     * Writes the non-empty buckets only, most histograms use a small fraction of them.
+     */
+    void writeTo(DataOutput out)
+            throws IOException {
+
+        AtomicLongArray current = this.counts;
+        long[] counts = current == null ? new long[0] : copyCounts(current);
+        int used = 0;
+        for (long count : counts) {
+            used += count > 0 ? 1 : 0;
+        }
+        out.writeLong(max);
+        out.writeShort(used);
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                out.writeShort(i);
+                out.writeLong(counts[i]);
+            }
+        }
+    }
+
+    /**
+     * Reads the values written by {@link #writeTo(DataOutput)} and returns the action adding them to the
+     * histogram. They count for the totals but not for the current interval.
+     */
+    Runnable readFrom(DataInput in)
+            throws IOException {
+
+        long max = in.readLong();
+        long[] counts = new long[NUM_OF_BUCKETS];
+        int used = in.readUnsignedShort();
+        for (int i = 0; i < used; i++) {
+            int index = in.readUnsignedShort();
+            long count = in.readLong();
+            if (index < NUM_OF_BUCKETS) {
+                counts[index] += count;
+            }
+        }
+        return () -> {
+            AtomicLongArray current = counts();
+            for (int i = 0; i < NUM_OF_BUCKETS; i++) {
+                if (counts[i] > 0) {
+                    current.addAndGet(i, counts[i]);
+                }
+            }
+            updateMax(Math.max(0, Math.min(max, MAX_VALUE)));
+            intervalStart.set(copyCounts(current));
+        };
+    }
+
+    private void updateMax(long value) {
+        long currentMax;
+        while (value > (currentMax = max)) {
+            if (MAX_UPDATER.compareAndSet(this, currentMax, value)) {
+                return;
+            }
+        }
+    }
+
+    private AtomicLongArray counts() {
+        AtomicLongArray counts = this.counts;
+        if (counts == null) {
+            COUNTS_UPDATER.compareAndSet(this, null, new AtomicLongArray(NUM_OF_BUCKETS));
+            counts = this.counts;
+        }
+        return counts;
+    }
+
+    private static long[] copyCounts(AtomicLongArray counts) {
+        long[] copy = new long[NUM_OF_BUCKETS];
+        for (int i = 0; i < NUM_OF_BUCKETS; i++) {
+            copy[i] = counts.get(i);
+        }
+        return copy;
+    }
+
+    static int index(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        int shift = magnitude - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKET_COUNT;
+        return (shift + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    static long highestEquivalentValue(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        long subBucket = index % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
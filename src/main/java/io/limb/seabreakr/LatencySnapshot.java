@@ -0,0 +1,75 @@
+package io.limb.seabreakr;
+
+/**
+ * Immutable view of a latency histogram. All values are in nanoseconds.
+ */
+public final class LatencySnapshot {
+
+    static final LatencySnapshot EMPTY = new LatencySnapshot(new long[0], 0);
+
+    private final long[] counts;
+    private final long count;
+    private final long max;
+
+    LatencySnapshot(long[] counts, long max) {
+        long count = 0;
+        for (long c : counts) {
+            count += c;
+        }
+        this.counts = counts;
+        this.count = count;
+        this.max = max;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the value below which the given percentage (0 to 100) of the recorded values fall.
+     */
+    public long getPercentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = rank(percentile, count);
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            if (cumulative >= rank) {
+                return Math.min(LatencyHistogram.highestEquivalentValue(i), max);
+            }
+        }
+        return max;
+    }
+
+    public long getP50() {
+        return getPercentile(50.);
+    }
+
+    public long getP90() {
+        return getPercentile(90.);
+    }
+
+    public long getP99() {
+        return getPercentile(99.);
+    }
+
+    public long getP999() {
+        return getPercentile(99.9);
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    static long rank(double percentile, long count) {
+        return Math.max(1, (long) Math.ceil(Math.min(percentile, 100.) / 100. * count));
+    }
+
+    @Override
+    public String toString() {
+        return "LatencySnapshot{" + "count=" + count + ", p50=" + getP50() + ", p90=" + getP90() + ", p99=" + getP99()
+                + ", p999=" + getP999() + ", max=" + max + '}';
+    }
+}
@@ -0,0 +1,28 @@
+package io.limb.seabreakr;
+
+/**
+ * Algorithms of an {@link Bulkhead#adaptive(LimitAlgorithm, int, int, int) adaptive} bulkhead, deciding
+ * how the number of permitted in-flight calls follows the observed round-trip latency and drops. A drop is
+ * a call which ran into the breaker's deadline.
+ */
+public enum LimitAlgorithm {
+    /**
+     * Additive increase, multiplicative decrease. Grows the limit by one while the limit is utilized and
+     * cuts it by 10% on every drop. Ignores latency, therefore only reacts once calls time out.
+     */
+    Aimd,
+
+    /**
+     * Estimates the queue building up in front of the backend from the ratio between the lowest observed
+     * latency and the current one, growing the limit while the queue is short and shrinking it once the
+     * queue grows.
+     */
+    Vegas,
+
+    /**
+     * Scales the limit by the ratio between the lowest observed latency, with a tolerance of 50%, and the
+     * current latency, plus a headroom of the square root of the limit, so the limit shrinks as soon as
+     * calls get noticeably slower than the unloaded backend.
+     */
+    Gradient
+}
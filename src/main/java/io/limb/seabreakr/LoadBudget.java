@@ -0,0 +1,63 @@
+package io.limb.seabreakr;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * Token bucket which caps extra load, such as retries or hedged calls, at a percentage of the regular
+ * calls. Every call deposits {@code percentage / 100} tokens up to the capacity and every extra call takes
+ * one token. Tokens are kept in thousandths so that fractions can be deposited without floating point CAS.
+ */
+final class LoadBudget {
+
+    private static final AtomicLongFieldUpdater<LoadBudget> TOKENS_UPDATER = //
+            AtomicLongFieldUpdater.newUpdater(LoadBudget.class, "tokens");
+
+    private static final long TOKEN = 1000;
+
+    private final long deposit;
+    private final long capacity;
+
+    // Only updated through Atomic Updater
+    private volatile long tokens;
+
+    LoadBudget(float percentage, int capacity) {
+        this.deposit = (long) (percentage * TOKEN / 100);
+        this.capacity = capacity * TOKEN;
+        this.tokens = this.capacity;
+    }
+
+    void deposit() {
+        while (true) {
+            long tokens = this.tokens;
+            long newTokens = Math.min(capacity, tokens + deposit);
+            if (newTokens == tokens || TOKENS_UPDATER.compareAndSet(this, tokens, newTokens)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns a token taken by {@link #tryWithdraw()} for extra load which was never sent.
+     */
+    void refund() {
+        while (true) {
+            long tokens = this.tokens;
+            long newTokens = Math.min(capacity, tokens + TOKEN);
+            if (newTokens == tokens || TOKENS_UPDATER.compareAndSet(this, tokens, newTokens)) {
+                return;
+            }
+        }
+    }
+
+    boolean tryWithdraw() {
+        while (true) {
+            long tokens = this.tokens;
+            if (tokens < TOKEN) {
+                return false;
+            }
+            if (TOKENS_UPDATER.compareAndSet(this, tokens, tokens - TOKEN)) {
+                return true;
+            }
+        }
+    }
+}
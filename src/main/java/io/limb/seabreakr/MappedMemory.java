@@ -0,0 +1,100 @@
+package io.limb.seabreakr;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.Buffer;
+import java.nio.MappedByteBuffer;
+
+import static io.limb.seabreakr.BreakerExceptions.rethrow;
+
+/**
+ * Atomic access to the longs of a memory-mapped file, which stay atomic across processes mapping the same
+ * file. Offsets are in bytes and must be multiples of 8. This version is used on Java versions before 21
+ * and goes through {@code sun.misc.Unsafe}, the multi-release jar replaces it with an implementation based
+ * on {@code VarHandle} on Java 21 and later.
+ * <p>
+ * Unsafe is only looked up reflectively and called through constant method handles, which the JIT inlines
+ * like direct calls, so the build does not depend on the internal API and compiles without its warnings.
+ */
+final class MappedMemory {
+
+    private static final MethodHandle GET_LONG_VOLATILE;
+    private static final MethodHandle PUT_LONG_VOLATILE;
+    private static final MethodHandle COMPARE_AND_SWAP_LONG;
+    private static final MethodHandle GET_AND_ADD_LONG;
+    private static final MethodHandle GET_LONG;
+    private static final long ADDRESS_OFFSET;
+
+    static {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            Object unsafe = field.get(null);
+
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            GET_LONG_VOLATILE = lookup.findVirtual(unsafeClass, "getLongVolatile",
+                    MethodType.methodType(long.class, Object.class, long.class)).bindTo(unsafe);
+            PUT_LONG_VOLATILE = lookup.findVirtual(unsafeClass, "putLongVolatile",
+                    MethodType.methodType(void.class, Object.class, long.class, long.class)).bindTo(unsafe);
+            COMPARE_AND_SWAP_LONG = lookup.findVirtual(unsafeClass, "compareAndSwapLong",
+                    MethodType.methodType(boolean.class, Object.class, long.class, long.class, long.class))
+                    .bindTo(unsafe);
+            GET_AND_ADD_LONG = lookup.findVirtual(unsafeClass, "getAndAddLong",
+                    MethodType.methodType(long.class, Object.class, long.class, long.class)).bindTo(unsafe);
+            GET_LONG = lookup.findVirtual(unsafeClass, "getLong",
+                    MethodType.methodType(long.class, Object.class, long.class)).bindTo(unsafe);
+            ADDRESS_OFFSET = (long) unsafeClass.getMethod("objectFieldOffset", Field.class)
+                    .invoke(unsafe, Buffer.class.getDeclaredField("address"));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // Referenced to keep the mapping alive as long as its address is in use
+    private final MappedByteBuffer buffer;
+    private final long address;
+
+    MappedMemory(MappedByteBuffer buffer) {
+        this.buffer = buffer;
+        try {
+            this.address = (long) GET_LONG.invokeExact((Object) buffer, ADDRESS_OFFSET);
+        } catch (Throwable throwable) {
+            throw rethrow(throwable);
+        }
+    }
+
+    long get(long offset) {
+        try {
+            return (long) GET_LONG_VOLATILE.invokeExact((Object) null, address + offset);
+        } catch (Throwable throwable) {
+            throw rethrow(throwable);
+        }
+    }
+
+    void set(long offset, long value) {
+        try {
+            PUT_LONG_VOLATILE.invokeExact((Object) null, address + offset, value);
+        } catch (Throwable throwable) {
+            throw rethrow(throwable);
+        }
+    }
+
+    boolean compareAndSet(long offset, long expected, long value) {
+        try {
+            return (boolean) COMPARE_AND_SWAP_LONG.invokeExact((Object) null, address + offset, expected, value);
+        } catch (Throwable throwable) {
+            throw rethrow(throwable);
+        }
+    }
+
+    long getAndAdd(long offset, long delta) {
+        try {
+            return (long) GET_AND_ADD_LONG.invokeExact((Object) null, address + offset, delta);
+        } catch (Throwable throwable) {
+            throw rethrow(throwable);
+        }
+    }
+}
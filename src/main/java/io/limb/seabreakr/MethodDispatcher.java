@@ -0,0 +1,8 @@
+package io.limb.seabreakr;
+
+public interface MethodDispatcher {
+
+    Object dispatch(int methodIndex, Object[] args)
+            throws Throwable;
+
+}
@@ -0,0 +1,8 @@
+package io.limb.seabreakr;
+
+public interface MethodInvoker {
+
+    Object invoke(Object target, Object[] args)
+            throws Throwable;
+
+}
@@ -0,0 +1,184 @@
+package io.limb.seabreakr;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Immutable, per-method invocation plan which is resolved once when the circuit breaker is built. The same
+ * {@link MethodInvoker} is used to call backend and failover since both implement the service interface.
+ */
+final class MethodPlan {
+
+    enum ReturnKind {
+        Sync, Mono, Flux, Future
+    }
+
+    private final Method method;
+    private final int index;
+    private final MethodInvoker invoker;
+    private final ReturnKind returnKind;
+    private final Duration deadline;
+    private final boolean bypass;
+    private final LatencyHistogram latencies;
+    private final HedgeStage.Trigger hedgeTrigger;
+    private final boolean coalesced;
+    private final long cacheTimeToLive;
+
+    private MethodPlan(Method method, int index, MethodInvoker invoker, ReturnKind returnKind, Duration deadline,
+                       boolean bypass, LatencyHistogram latencies, HedgeStage.Trigger hedgeTrigger, boolean coalesced,
+                       long cacheTimeToLive) {
+
+        this.method = method;
+        this.index = index;
+        this.invoker = invoker;
+        this.returnKind = returnKind;
+        this.deadline = deadline;
+        this.bypass = bypass;
+        this.latencies = latencies;
+        this.hedgeTrigger = hedgeTrigger;
+        this.coalesced = coalesced;
+        this.cacheTimeToLive = cacheTimeToLive;
+    }
+
+    Method getMethod() {
+        return method;
+    }
+
+    /**
+     * Position of the method in the method table of the breaker, {@code -1} for methods resolved on their
+     * first call.
+     */
+    int getIndex() {
+        return index;
+    }
+
+    MethodInvoker getInvoker() {
+        return invoker;
+    }
+
+    ReturnKind getReturnKind() {
+        return returnKind;
+    }
+
+    /**
+     * Mono and CompletionStage methods run through the same reactive pipeline, the invoker of a
+     * CompletionStage method adapts the returned stage to a Mono.
+     */
+    boolean isReactive() {
+        return returnKind == ReturnKind.Mono || returnKind == ReturnKind.Future;
+    }
+
+    Duration getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * Methods declared by {@link Object} (hashCode, equals, toString) are forwarded to the backend without
+     * passing the circuit breaker.
+     */
+    boolean isBypass() {
+        return bypass;
+    }
+
+    /**
+     * Per-method latency histogram, {@code null} unless method latencies are enabled.
+     */
+    LatencyHistogram getLatencies() {
+        return latencies;
+    }
+
+    /**
+     * Hedge delay of an idempotent method, {@code null} unless the method is hedged.
+     */
+    HedgeStage.Trigger getHedgeTrigger() {
+        return hedgeTrigger;
+    }
+
+    /**
+     * Concurrent calls with equal arguments share one backend call.
+     */
+    boolean isCoalesced() {
+        return coalesced;
+    }
+
+    boolean isCached() {
+        return cacheTimeToLive >= 0;
+    }
+
+    /**
+     * Time to live in nanoseconds of cached results, {@code -1} unless the method is cached.
+     */
+    long getCacheTimeToLive() {
+        return cacheTimeToLive;
+    }
+
+    static MethodPlan of(Method method, MethodInvoker invoker, long timeout, boolean methodLatencies) {
+        return of(method, -1, invoker, timeout, methodLatencies, null, null, false, -1);
+    }
+
+    /**
+     * Creates the plan of a method which is hedged by the given stage, based on the method latencies if
+     * enabled and on the breaker latencies otherwise.
+     */
+    static MethodPlan of(Method method, int index, MethodInvoker invoker, long timeout, boolean methodLatencies,
+                         HedgeStage hedge, LatencyHistogram breakerLatencies, boolean coalesced, long cacheTimeToLive) {
+
+        boolean bypass = method.getDeclaringClass() == Object.class;
+        ReturnKind returnKind = returnKind(method);
+        LatencyHistogram latencies = methodLatencies && !bypass ? new LatencyHistogram() : null;
+
+        // Streams only pass through the deadlines, bulkhead and rate limiter
+        boolean single = !bypass && returnKind != ReturnKind.Flux;
+        HedgeStage.Trigger hedgeTrigger = hedge != null && single //
+                ? hedge.newTrigger(latencies != null ? latencies : breakerLatencies) : null;
+
+        coalesced = single && (coalesced || method.isAnnotationPresent(Coalesced.class));
+        if (returnKind == ReturnKind.Future) {
+            invoker = stageInvoker(invoker);
+        }
+        return new MethodPlan(method, index, invoker, returnKind, Duration.ofNanos(timeout), bypass, latencies,
+                hedgeTrigger, coalesced, single ? cacheTimeToLive : -1);
+    }
+
+    private static ReturnKind returnKind(Method method) {
+        Class<?> returnType = method.getReturnType();
+        if (Mono.class.isAssignableFrom(returnType)) {
+            return ReturnKind.Mono;
+        }
+        if (Flux.class.isAssignableFrom(returnType)) {
+            return ReturnKind.Flux;
+        }
+        // The proxy returns a plain CompletableFuture, which only fits these two declared types
+        if (returnType == CompletionStage.class || returnType == CompletableFuture.class) {
+            return ReturnKind.Future;
+        }
+        return ReturnKind.Sync;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static MethodInvoker stageInvoker(MethodInvoker invoker) {
+        return (target, args) -> {
+            CompletionStage<Object> stage = (CompletionStage<Object>) invoker.invoke(target, args);
+            if (stage == null) {
+                return Mono.error(new NullPointerException("backend returned null instead of a CompletionStage"));
+            }
+            if (stage instanceof CompletableFuture) {
+                return Mono.fromFuture((CompletableFuture<Object>) stage);
+            }
+            CompletableFuture<Object> future = new CompletableFuture<>();
+            stage.whenComplete((value, error) -> {
+                if (error != null) {
+                    future.completeExceptionally(error);
+                } else {
+                    future.complete(value);
+                }
+            });
+            return Mono.fromFuture(future);
+        };
+    }
+}
@@ -8,4 +8,146 @@ public interface Metrics {
 
     long getNumberOfBufferedEvents();
 
+    default float getSlowCallRate() {
+        return 0.f;
+    }
+
+    default long getNumberOfSlowEvents() {
+        return 0;
+    }
+
+    /**
+     * Returns the number of calls rejected by the bulkhead since the breaker was created. Rejected calls
+     * never reached the backend and are not part of the sliding window.
+     */
+    default long getNumberOfRejectedCalls() {
+        return 0;
+    }
+
+    /**
+     * Returns the number of calls the bulkhead currently permits in flight, which changes over time for
+     * adaptive bulkheads. {@code 0} without a bulkhead.
+     */
+    default int getConcurrencyLimit() {
+        return 0;
+    }
+
+    default int getNumberOfInFlightCalls() {
+        return 0;
+    }
+
+    /**
+     * Returns the smoothed round-trip latency in nanoseconds an adaptive bulkhead bases its limit on.
+     */
+    default long getLatencyEstimate() {
+        return 0;
+    }
+
+    /**
+     * Returns the number of retries the breaker sent to the backend since it was created.
+     */
+    default long getNumberOfRetries() {
+        return 0;
+    }
+
+    /**
+     * Returns the number of retries which were not sent because the retry budget was exhausted.
+     */
+    default long getNumberOfSuppressedRetries() {
+        return 0;
+    }
+
+    /**
+     * Returns the number of calls the rate limiter did not permit since the breaker was created, whether
+     * they were rejected or sent to the failover.
+     */
+    default long getNumberOfRateLimitedCalls() {
+        return 0;
+    }
+
+    /**
+     * Returns the number of hedged attempts the breaker started since it was created.
+     */
+    default long getNumberOfHedges() {
+        return 0;
+    }
+
+    /**
+     * Returns the number of hedged attempts which answered before the first attempt.
+     */
+    default long getNumberOfHedgeWins() {
+        return 0;
+    }
+
+    /**
+     * Returns the percentage of the calls of hedged methods which started a hedged attempt.
+     */
+    default float getHedgeRate() {
+        return 0.f;
+    }
+
+    /**
+     * Returns the number of calls of coalesced methods which shared the backend call of an equal call.
+     */
+    default long getNumberOfCoalescedCalls() {
+        return 0;
+    }
+
+    /**
+     * Returns the percentage of the calls of coalesced methods which shared the backend call of an equal call.
+     */
+    default float getCoalescingRate() {
+        return 0.f;
+    }
+
+    /**
+     * Returns the percentage of the lookups of cached methods which were answered by the response cache.
+     */
+    default float getCacheHitRate() {
+        return 0.f;
+    }
+
+    default long getNumberOfCacheEvictions() {
+        return 0;
+    }
+
+    /**
+     * Returns the number of expired cached results served in place of the failover.
+     */
+    default long getNumberOfStaleServes() {
+        return 0;
+    }
+
+    /**
+     * Returns the number of events which did not fit into the queue of an asynchronous event dispatch.
+     */
+    default long getNumberOfDroppedEvents() {
+        return 0;
+    }
+
+    /**
+     * Returns the call latencies recorded since the breaker was created.
+     */
+    default LatencySnapshot getLatencySnapshot() {
+        return LatencySnapshot.EMPTY;
+    }
+
+    /**
+     * Returns the call latencies recorded since the previous call of this method and starts a new interval.
+     */
+    default LatencySnapshot getIntervalLatencySnapshot() {
+        return LatencySnapshot.EMPTY;
+    }
+
+    /**
+     * Returns the call latency in nanoseconds below which the given percentage (0 to 100) of calls fall.
+     */
+    default long getLatencyPercentile(double percentile) {
+        return getLatencySnapshot().getPercentile(percentile);
+    }
+
+    default long getMaxLatency() {
+        return getLatencySnapshot().getMax();
+    }
+
 }
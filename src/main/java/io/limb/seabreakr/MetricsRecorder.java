@@ -7,6 +7,16 @@ public interface MetricsRecorder
 
     void recordFailure();
 
+    /**
+     * Records a successful call which took longer than the slow call threshold of the strategy.
+     */
+    void recordSlowSuccess();
+
+    /**
+     * Records a failed call which took longer than the slow call threshold of the strategy.
+     */
+    void recordSlowFailure();
+
     void reset();
 
 }
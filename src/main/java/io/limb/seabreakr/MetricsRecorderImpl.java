@@ -1,74 +1,169 @@
 package io.limb.seabreakr;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 
+/**
+ * Count based sliding window over the last {@code numOfBufferedEvents} outcomes. Failures and slow calls
+ * are tracked in two rings with running counters which are adjusted whenever an overwritten slot flips,
+ * therefore reading the failure or slow call rate never scans a ring.
+ */
 final class MetricsRecorderImpl
-        implements MetricsRecorder {
+        implements MetricsRecorder, PersistentWindow {
+
+    private static final byte SNAPSHOT_KIND = 1;
 
     private static final AtomicLongFieldUpdater<MetricsRecorderImpl> POSITION_UPDATER = //
             AtomicLongFieldUpdater.newUpdater(MetricsRecorderImpl.class, "position");
 
+    private static final AtomicIntegerFieldUpdater<MetricsRecorderImpl> FAILURES_UPDATER = //
+            AtomicIntegerFieldUpdater.newUpdater(MetricsRecorderImpl.class, "failures");
+
+    private static final AtomicIntegerFieldUpdater<MetricsRecorderImpl> SLOW_CALLS_UPDATER = //
+            AtomicIntegerFieldUpdater.newUpdater(MetricsRecorderImpl.class, "slowCalls");
+
     private final BitRing bitRing;
+    private final BitRing slowBitRing;
     private final int numOfBufferedEvents;
 
     // Only updated through Atomic Updater
     private volatile long position = 0;
 
+    // Only updated through Atomic Updater
+    private volatile int failures = 0;
+
+    // Only updated through Atomic Updater
+    private volatile int slowCalls = 0;
+
     MetricsRecorderImpl(int numOfBufferedEvents) {
         this.bitRing = new BitRing(numOfBufferedEvents);
+        this.slowBitRing = new BitRing(numOfBufferedEvents);
         this.numOfBufferedEvents = this.bitRing.size();
     }
 
     @Override
     public float getFailureRate() {
-        return getNumberOfFailedEvents() * 100.f / getNumberOfBufferedEvents();
+        long bufferedEvents = getNumberOfBufferedEvents();
+        if (bufferedEvents == 0) {
+            return 0.f;
+        }
+        return getNumberOfFailedEvents() * 100.f / bufferedEvents;
     }
 
     @Override
     public long getNumberOfFailedEvents() {
-        return bitRing.cardinality();
+        return Math.max(0, failures);
     }
 
     @Override
     public long getNumberOfBufferedEvents() {
-        return numOfBufferedEvents;
+        return Math.min(position, numOfBufferedEvents);
+    }
+
+    @Override
+    public float getSlowCallRate() {
+        long bufferedEvents = getNumberOfBufferedEvents();
+        if (bufferedEvents == 0) {
+            return 0.f;
+        }
+        return getNumberOfSlowEvents() * 100.f / bufferedEvents;
+    }
+
+    @Override
+    public long getNumberOfSlowEvents() {
+        return Math.max(0, slowCalls);
     }
 
     @Override
     public void recordSuccess() {
-        long position = nextPosition();
-        bitRing.clear(position);
+        record(false, false);
     }
 
     @Override
     public void recordFailure() {
-        long position = nextPosition();
-        bitRing.set(position);
+        record(true, false);
+    }
+
+    @Override
+    public void recordSlowSuccess() {
+        record(false, true);
+    }
+
+    @Override
+    public void recordSlowFailure() {
+        record(true, true);
     }
 
     @Override
     public void reset() {
         bitRing.reset();
+        slowBitRing.reset();
         POSITION_UPDATER.set(this, 0);
+        FAILURES_UPDATER.set(this, 0);
+        SLOW_CALLS_UPDATER.set(this, 0);
     }
 
-    String dump() {
-        return bitRing.toString();
+    @Override
+    public void writeTo(DataOutput out)
+            throws IOException {
+
+        out.writeByte(SNAPSHOT_KIND);
+        out.writeLong(position);
+        out.writeInt(failures);
+        out.writeInt(slowCalls);
+        bitRing.writeTo(out);
+        slowBitRing.writeTo(out);
     }
 
-    private long nextPosition() {
-        while (true) {
-            long currentPosition = this.position;
-            long newPosition = currentPosition + 1;
+    @Override
+    public boolean readFrom(DataInput in, long age)
+            throws IOException {
 
-            // Fix overflow
-            if (newPosition < 0) {
-                newPosition = 0;
-            }
+        if (in.readByte() != SNAPSHOT_KIND) {
+            return false;
+        }
+        long position = in.readLong();
+        int failures = in.readInt();
+        int slowCalls = in.readInt();
+        long[] words = bitRing.readWords(in);
+        long[] slowWords = words != null ? slowBitRing.readWords(in) : null;
+        if (slowWords == null) {
+            return false;
+        }
+        bitRing.setWords(words);
+        slowBitRing.setWords(slowWords);
+        POSITION_UPDATER.set(this, position);
+        FAILURES_UPDATER.set(this, failures);
+        SLOW_CALLS_UPDATER.set(this, slowCalls);
+        return true;
+    }
 
-            if (POSITION_UPDATER.compareAndSet(this, currentPosition, newPosition)) {
-                return newPosition;
+    private void record(boolean failure, boolean slow) {
+        long position = nextPosition();
+        if (failure) {
+            if (!bitRing.set(position)) {
+                FAILURES_UPDATER.incrementAndGet(this);
+            }
+        } else if (bitRing.clear(position)) {
+            FAILURES_UPDATER.decrementAndGet(this);
+        }
+        if (slow) {
+            if (!slowBitRing.set(position)) {
+                SLOW_CALLS_UPDATER.incrementAndGet(this);
             }
+        } else if (slowBitRing.clear(position)) {
+            SLOW_CALLS_UPDATER.decrementAndGet(this);
         }
     }
+
+    String dump() {
+        return bitRing.toString();
+    }
+
+    private long nextPosition() {
+        return POSITION_UPDATER.getAndIncrement(this);
+    }
 }
@@ -0,0 +1,23 @@
+package io.limb.seabreakr;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Sliding window whose contents can be written into a {@link SnapshotStore} and restored by the next
+ * process, implemented by the windows of the built-in context factories.
+ */
+interface PersistentWindow {
+
+    void writeTo(DataOutput out)
+            throws IOException;
+
+    /**
+     * Replaces the contents of the window with the ones written {@code age} nanoseconds ago. Returns
+     * {@code false} and keeps the window untouched if the snapshot was written by a different kind of window,
+     * a truncated snapshot fails before the window is changed.
+     */
+    boolean readFrom(DataInput in, long age)
+            throws IOException;
+}
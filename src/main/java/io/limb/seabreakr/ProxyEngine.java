@@ -0,0 +1,14 @@
+package io.limb.seabreakr;
+
+public enum ProxyEngine {
+    /**
+     * Dispatches through {@link java.lang.reflect.Proxy} and {@link java.lang.reflect.Method#invoke(Object, Object...)}.
+     */
+    JavaProxy,
+
+    /**
+     * Dispatches through a class generated per service interface which calls backend and failover directly.
+     * Falls back to {@link #JavaProxy} for interfaces which cannot be implemented from outside their package.
+     */
+    Generated
+}
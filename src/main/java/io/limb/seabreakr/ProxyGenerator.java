@@ -0,0 +1,443 @@
+package io.limb.seabreakr;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static io.limb.seabreakr.ClassFileWriter.*;
+
+/**
+ * Generates a concrete implementation class per service interface which forwards every call to a
+ * {@link MethodDispatcher}, together with one {@link MethodInvoker} class per method which calls the
+ * backend (or failover) through a plain interface call instead of {@link Method#invoke(Object, Object...)}.
+ * Arguments and results are still boxed on their way through {@link MethodDispatcher#dispatch(int, Object[])}.
+ * <p>
+ * Generated types are cached per interface but only held weakly, the class loader of the generated classes
+ * keeps its type alive instead. Once no breaker uses the generated classes, they and the class loaders they
+ * reference can be unloaded, and the type is generated again on its next use.
+ */
+final class ProxyGenerator {
+
+    private static final String GENERATED_PACKAGE = "io/limb/seabreakr/generated/";
+    private static final String OBJECT = "java/lang/Object";
+    private static final String DISPATCHER = internalName(MethodDispatcher.class);
+    private static final String INVOKER = internalName(MethodInvoker.class);
+    private static final String GENERATED_PROXY = internalName(GeneratedProxy.class);
+    private static final String DISPATCHER_FIELD = "dispatcher";
+    private static final String DISPATCHER_DESCRIPTOR = "L" + DISPATCHER + ";";
+
+    private static final AtomicLong CLASS_COUNTER = new AtomicLong();
+
+    private static final GeneratedType UNSUPPORTED = new GeneratedType(null, null, null);
+
+    // Only JDK classes are stored in the interface, a SeaBreakr class would pin the SeaBreakr class loader
+    private static final ClassValue<AtomicReference<WeakReference<GeneratedType>>> GENERATED_TYPES = //
+            new ClassValue<AtomicReference<WeakReference<GeneratedType>>>() {
+                @Override
+                protected AtomicReference<WeakReference<GeneratedType>> computeValue(Class<?> type) {
+                    return new AtomicReference<>(new WeakReference<>(null));
+                }
+            };
+
+    private ProxyGenerator() {
+    }
+
+    /**
+     * Returns the generated type for the given interface or {@code null} if the interface cannot be
+     * implemented by a generated class, e.g. non-public interfaces or non-public signature types.
+     */
+    static GeneratedType generatedType(Class<?> type) {
+        AtomicReference<WeakReference<GeneratedType>> cached = GENERATED_TYPES.get(type);
+        GeneratedType generatedType = cached.get().get();
+        if (generatedType == null) {
+            synchronized (cached) {
+                generatedType = cached.get().get();
+                if (generatedType == null) {
+                    generatedType = generate(type);
+                    cached.set(new WeakReference<>(generatedType));
+                }
+            }
+        }
+        return generatedType == UNSUPPORTED ? null : generatedType;
+    }
+
+    /**
+     * Returns the methods which are dispatched through a proxy of the given interface, in the same
+     * order as {@link java.lang.reflect.Proxy} resolves duplicates: {@code hashCode}, {@code equals} and
+     * {@code toString} of {@link Object} first, followed by the interface methods.
+     */
+    static Method[] proxyMethods(Class<?> type) {
+        Map<String, Method> methods = new LinkedHashMap<>();
+        try {
+            addMethod(methods, Object.class.getMethod("hashCode"));
+            addMethod(methods, Object.class.getMethod("equals", Object.class));
+            addMethod(methods, Object.class.getMethod("toString"));
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+        for (Method method : type.getMethods()) {
+            if (!Modifier.isStatic(method.getModifiers())) {
+                addMethod(methods, method);
+            }
+        }
+        return methods.values().toArray(new Method[0]);
+    }
+
+    static MethodInvoker reflectiveInvoker(Method method) {
+        return method::invoke;
+    }
+
+    private static void addMethod(Map<String, Method> methods, Method method) {
+        methods.putIfAbsent(method.getName() + methodDescriptor(method.getParameterTypes(), void.class), method);
+    }
+
+    private static GeneratedType generate(Class<?> type) {
+        Method[] methods = proxyMethods(type);
+        if (!isSupported(type, methods)) {
+            return UNSUPPORTED;
+        }
+
+        String baseName = GENERATED_PACKAGE + type.getSimpleName() + "$SeaBreakr$" + CLASS_COUNTER.incrementAndGet();
+        GeneratedClassLoader classLoader = new GeneratedClassLoader(type.getClassLoader());
+
+        try {
+            MethodInvoker[] invokers = new MethodInvoker[methods.length];
+            for (int i = 0; i < methods.length; i++) {
+                String invokerName = baseName + "$Invoker" + i;
+                byte[] bytes = generateInvoker(invokerName, methods[i]);
+                Class<?> invokerClass = classLoader.define(invokerName, bytes);
+                invokers[i] = (MethodInvoker) invokerClass.getConstructor().newInstance();
+            }
+
+            String proxyName = baseName + "$Proxy";
+            Class<?> proxyClass = classLoader.define(proxyName, generateProxy(proxyName, type, methods));
+            Constructor<?> constructor = proxyClass.getConstructor(MethodDispatcher.class);
+            GeneratedType generatedType = new GeneratedType(methods, invokers, constructor);
+            classLoader.generatedType = generatedType;
+            return generatedType;
+
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return UNSUPPORTED;
+        }
+    }
+
+    private static boolean isSupported(Class<?> type, Method[] methods) {
+        if (!type.isInterface() || !Modifier.isPublic(type.getModifiers())) {
+            return false;
+        }
+
+        Map<String, Class<?>> returnTypes = new LinkedHashMap<>();
+        for (Method method : type.getMethods()) {
+            String signature = method.getName() + methodDescriptor(method.getParameterTypes(), void.class);
+            Class<?> returnType = returnTypes.putIfAbsent(signature, method.getReturnType());
+            if (returnType != null && returnType != method.getReturnType()) {
+                return false;
+            }
+        }
+
+        for (Method method : methods) {
+            if ("getMethodDispatcher".equals(method.getName()) && method.getParameterCount() == 0) {
+                return false;
+            }
+            if (!isPublic(method.getReturnType())) {
+                return false;
+            }
+            for (Class<?> parameterType : method.getParameterTypes()) {
+                if (!isPublic(parameterType)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean isPublic(Class<?> type) {
+        while (type.isArray()) {
+            type = type.getComponentType();
+        }
+        return type.isPrimitive() || Modifier.isPublic(type.getModifiers());
+    }
+
+    private static byte[] generateProxy(String className, Class<?> type, Method[] methods) {
+        String interfaceName = internalName(type);
+        ClassFileWriter writer = new ClassFileWriter(className, OBJECT, interfaceName, GENERATED_PROXY);
+        writer.field(ACC_PRIVATE | ACC_FINAL, DISPATCHER_FIELD, DISPATCHER_DESCRIPTOR);
+
+        writer.method(ACC_PUBLIC, "<init>", "(" + DISPATCHER_DESCRIPTOR + ")V") //
+                .op(ALOAD, 0) //
+                .invoke(INVOKESPECIAL, OBJECT, "<init>", "()V", false) //
+                .op(ALOAD, 0) //
+                .op(ALOAD, 1) //
+                .fieldOp(PUTFIELD, className, DISPATCHER_FIELD, DISPATCHER_DESCRIPTOR) //
+                .op(RETURN) //
+                .end(2, 2);
+
+        writer.method(ACC_PUBLIC, "getMethodDispatcher", "()" + DISPATCHER_DESCRIPTOR) //
+                .op(ALOAD, 0) //
+                .fieldOp(GETFIELD, className, DISPATCHER_FIELD, DISPATCHER_DESCRIPTOR) //
+                .op(ARETURN) //
+                .end(1, 1);
+
+        for (int i = 0; i < methods.length; i++) {
+            Method method = methods[i];
+            Class<?>[] parameterTypes = method.getParameterTypes();
+            ClassFileWriter.Code code = writer.method(ACC_PUBLIC, method.getName(), methodDescriptor(method));
+
+            code.op(ALOAD, 0) //
+                    .fieldOp(GETFIELD, className, DISPATCHER_FIELD, DISPATCHER_DESCRIPTOR) //
+                    .pushInt(i);
+
+            int slot = 1;
+            if (parameterTypes.length == 0) {
+                code.op(ACONST_NULL);
+            } else {
+                code.pushInt(parameterTypes.length).typeOp(ANEWARRAY, OBJECT);
+                for (int p = 0; p < parameterTypes.length; p++) {
+                    code.op(DUP).pushInt(p);
+                    slot += load(code, parameterTypes[p], slot);
+                    box(code, parameterTypes[p]);
+                    code.op(AASTORE);
+                }
+            }
+
+            code.invoke(INVOKEINTERFACE, DISPATCHER, "dispatch", "(I[Ljava/lang/Object;)Ljava/lang/Object;", true);
+            unboxAndReturn(code, method.getReturnType());
+            code.end(8, slot);
+        }
+
+        return writer.toByteArray();
+    }
+
+    private static byte[] generateInvoker(String className, Method method) {
+        ClassFileWriter writer = new ClassFileWriter(className, OBJECT, INVOKER);
+
+        writer.method(ACC_PUBLIC, "<init>", "()V") //
+                .op(ALOAD, 0) //
+                .invoke(INVOKESPECIAL, OBJECT, "<init>", "()V", false) //
+                .op(RETURN) //
+                .end(1, 1);
+
+        Class<?> declaringClass = method.getDeclaringClass();
+        boolean isInterface = declaringClass.isInterface();
+        String owner = internalName(declaringClass);
+        Class<?>[] parameterTypes = method.getParameterTypes();
+
+        ClassFileWriter.Code code = writer.method(ACC_PUBLIC, "invoke",
+                "(Ljava/lang/Object;[Ljava/lang/Object;)Ljava/lang/Object;");
+
+        code.op(ALOAD, 1);
+        if (isInterface) {
+            code.typeOp(CHECKCAST, owner);
+        }
+
+        int stack = 1;
+        for (int p = 0; p < parameterTypes.length; p++) {
+            code.op(ALOAD, 2).pushInt(p).op(AALOAD);
+            unbox(code, parameterTypes[p]);
+            stack += slots(parameterTypes[p]);
+        }
+
+        code.invoke(isInterface ? INVOKEINTERFACE : INVOKEVIRTUAL, owner, method.getName(), methodDescriptor(method),
+                isInterface);
+
+        Class<?> returnType = method.getReturnType();
+        if (returnType == void.class) {
+            code.op(ACONST_NULL);
+        } else {
+            box(code, returnType);
+        }
+        code.op(ARETURN).end(stack + 2, 3);
+
+        return writer.toByteArray();
+    }
+
+    private static int load(ClassFileWriter.Code code, Class<?> type, int slot) {
+        if (type == long.class) {
+            code.op(LLOAD, slot);
+        } else if (type == double.class) {
+            code.op(DLOAD, slot);
+        } else if (type == float.class) {
+            code.op(FLOAD, slot);
+        } else if (type.isPrimitive()) {
+            code.op(ILOAD, slot);
+        } else {
+            code.op(ALOAD, slot);
+        }
+        return slots(type);
+    }
+
+    private static int slots(Class<?> type) {
+        return type == long.class || type == double.class ? 2 : 1;
+    }
+
+    private static void box(ClassFileWriter.Code code, Class<?> type) {
+        if (type.isPrimitive()) {
+            String wrapper = internalName(wrapperType(type));
+            code.invoke(INVOKESTATIC, wrapper, "valueOf", "(" + descriptor(type) + ")L" + wrapper + ";", false);
+        }
+    }
+
+    private static void unbox(ClassFileWriter.Code code, Class<?> type) {
+        if (type.isPrimitive()) {
+            String wrapper = internalName(wrapperType(type));
+            code.typeOp(CHECKCAST, wrapper);
+            code.invoke(INVOKEVIRTUAL, wrapper, type.getName() + "Value", "()" + descriptor(type), false);
+        } else if (type != Object.class) {
+            code.typeOp(CHECKCAST, internalName(type));
+        }
+    }
+
+    private static void unboxAndReturn(ClassFileWriter.Code code, Class<?> type) {
+        if (type == void.class) {
+            code.op(POP).op(RETURN);
+            return;
+        }
+        unbox(code, type);
+        if (type == long.class) {
+            code.op(LRETURN);
+        } else if (type == double.class) {
+            code.op(DRETURN);
+        } else if (type == float.class) {
+            code.op(FRETURN);
+        } else if (type.isPrimitive()) {
+            code.op(IRETURN);
+        } else {
+            code.op(ARETURN);
+        }
+    }
+
+    private static Class<?> wrapperType(Class<?> type) {
+        if (type == int.class) {
+            return Integer.class;
+        } else if (type == long.class) {
+            return Long.class;
+        } else if (type == boolean.class) {
+            return Boolean.class;
+        } else if (type == byte.class) {
+            return Byte.class;
+        } else if (type == short.class) {
+            return Short.class;
+        } else if (type == char.class) {
+            return Character.class;
+        } else if (type == float.class) {
+            return Float.class;
+        } else if (type == double.class) {
+            return Double.class;
+        }
+        throw new IllegalArgumentException("Not a primitive type: " + type);
+    }
+
+    private static String internalName(Class<?> type) {
+        if (type.isArray()) {
+            return descriptor(type);
+        }
+        return type.getName().replace('.', '/');
+    }
+
+    private static String methodDescriptor(Method method) {
+        return methodDescriptor(method.getParameterTypes(), method.getReturnType());
+    }
+
+    private static String methodDescriptor(Class<?>[] parameterTypes, Class<?> returnType) {
+        StringBuilder sb = new StringBuilder("(");
+        for (Class<?> parameterType : parameterTypes) {
+            sb.append(descriptor(parameterType));
+        }
+        return sb.append(')').append(descriptor(returnType)).toString();
+    }
+
+    private static String descriptor(Class<?> type) {
+        if (type.isArray()) {
+            return type.getName().replace('.', '/');
+        } else if (type == void.class) {
+            return "V";
+        } else if (type == int.class) {
+            return "I";
+        } else if (type == long.class) {
+            return "J";
+        } else if (type == boolean.class) {
+            return "Z";
+        } else if (type == byte.class) {
+            return "B";
+        } else if (type == short.class) {
+            return "S";
+        } else if (type == char.class) {
+            return "C";
+        } else if (type == float.class) {
+            return "F";
+        } else if (type == double.class) {
+            return "D";
+        }
+        return "L" + internalName(type) + ";";
+    }
+
+    static final class GeneratedType {
+        private final Method[] methods;
+        private final MethodInvoker[] invokers;
+        private final Constructor<?> constructor;
+
+        private GeneratedType(Method[] methods, MethodInvoker[] invokers, Constructor<?> constructor) {
+            this.methods = methods;
+            this.invokers = invokers;
+            this.constructor = constructor;
+        }
+
+        Method[] getMethods() {
+            return methods.clone();
+        }
+
+        MethodInvoker[] getInvokers() {
+            return invokers.clone();
+        }
+
+        Object newInstance(MethodDispatcher dispatcher) {
+            try {
+                return constructor.newInstance(dispatcher);
+            } catch (ReflectiveOperationException e) {
+                throw new SeaBreakrException("Failed to instantiate generated proxy", e);
+            }
+        }
+    }
+
+    private static final class GeneratedClassLoader
+            extends ClassLoader {
+
+        private static final String SEABREAKR_PACKAGE = "io.limb.seabreakr.";
+
+        private final ClassLoader typeClassLoader;
+
+        // Reachable through every generated class and instance, keeps the weakly cached type alive while in use
+        private GeneratedType generatedType;
+
+        GeneratedClassLoader(ClassLoader typeClassLoader) {
+            super(ProxyGenerator.class.getClassLoader());
+            this.typeClassLoader = typeClassLoader;
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve)
+                throws ClassNotFoundException {
+
+            if (typeClassLoader != null && !name.startsWith(SEABREAKR_PACKAGE)) {
+                try {
+                    return Class.forName(name, false, typeClassLoader);
+                } catch (ClassNotFoundException e) {
+                    // Fall through to the SeaBreakr class loader
+                }
+            }
+            return super.loadClass(name, resolve);
+        }
+
+        Class<?> define(String internalName, byte[] bytes) {
+            return defineClass(internalName.replace('/', '.'), bytes, 0, bytes.length);
+        }
+    }
+}
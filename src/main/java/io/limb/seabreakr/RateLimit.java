@@ -0,0 +1,131 @@
+package io.limb.seabreakr;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Configuration of the rate limiter which caps the number of calls a breaker sends to its backend per
+ * period. Up to {@code permits} calls may be sent at once after an idle period, further calls are spaced
+ * evenly over the period. Calls over the limit are handled according to the {@link Mode} and are counted
+ * in {@link Metrics#getNumberOfRateLimitedCalls()}.
+ */
+public final class RateLimit {
+
+    private static final RateLimit NONE = new RateLimit(0, 0, Mode.Reject, 0);
+
+    public enum Mode {
+        /**
+         * Calls over the limit fail with a {@link RateLimitExceededException} right away.
+         */
+        Reject,
+
+        /**
+         * Calls over the limit wait up to {@code maxWaitDuration} for a permit and fail with a
+         * {@link RateLimitExceededException} if none becomes available in time. Reactive calls wait on a
+         * timer, synchronous calls on the calling thread. A synchronous call which is interrupted while
+         * waiting fails the same way and returns its permit.
+         */
+        Wait,
+
+        /**
+         * Calls over the limit are sent to the failover, or fail with a {@link RateLimitExceededException}
+         * if there is none.
+         */
+        Failover
+    }
+
+    private final int permits;
+    private final long period;
+    private final Mode mode;
+    private final long maxWaitDuration;
+
+    private RateLimit(int permits, long period, Mode mode, long maxWaitDuration) {
+        this.permits = permits;
+        this.period = period;
+        this.mode = mode;
+        this.maxWaitDuration = maxWaitDuration;
+    }
+
+    public static RateLimit none() {
+        return NONE;
+    }
+
+    public static RateLimit perSecond(int permits) {
+        return of(permits, 1, TimeUnit.SECONDS);
+    }
+
+    public static RateLimit of(int permits, long period, TimeUnit timeUnit) {
+        Objects.requireNonNull(timeUnit, "timeUnit cannot be null");
+        Preconditions.requireGreaterEquals(permits, 1, "permits must be greater or equal to 1");
+        Preconditions.requireGreaterEquals(timeUnit.toNanos(period), permits, "period is too short for permits");
+        return new RateLimit(permits, timeUnit.toNanos(period), Mode.Reject, 0);
+    }
+
+    public RateLimit rejecting() {
+        return new RateLimit(permits, period, Mode.Reject, 0);
+    }
+
+    public RateLimit waiting(long maxWaitDuration, TimeUnit timeUnit) {
+        Objects.requireNonNull(timeUnit, "timeUnit cannot be null");
+        Preconditions.requireGreaterEquals(maxWaitDuration, 1, "maxWaitDuration must be greater or equal to 1");
+        return new RateLimit(permits, period, Mode.Wait, timeUnit.toNanos(maxWaitDuration));
+    }
+
+    public RateLimit failingOver() {
+        return new RateLimit(permits, period, Mode.Failover, 0);
+    }
+
+    public boolean isEnabled() {
+        return permits > 0;
+    }
+
+    public int getPermits() {
+        return permits;
+    }
+
+    /**
+     * Period in nanoseconds the permits are refilled over.
+     */
+    public long getPeriod() {
+        return period;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Time in nanoseconds a call waits for a permit in {@link Mode#Wait}.
+     */
+    public long getMaxWaitDuration() {
+        return maxWaitDuration;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        RateLimit that = (RateLimit) o;
+
+        if (permits != that.permits) return false;
+        if (period != that.period) return false;
+        if (maxWaitDuration != that.maxWaitDuration) return false;
+        return mode == that.mode;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = permits;
+        result = 31 * result + (int) (period ^ (period >>> 32));
+        result = 31 * result + mode.hashCode();
+        result = 31 * result + (int) (maxWaitDuration ^ (maxWaitDuration >>> 32));
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "RateLimit{" + "permits=" + permits + ", period=" + period + ", mode=" + mode + ", maxWaitDuration="
+                + maxWaitDuration + '}';
+    }
+}
@@ -0,0 +1,74 @@
+package io.limb.seabreakr;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runtime part of a {@link RateLimit}, one instance per breaker. The token bucket is kept as the single
+ * nanoTime at which the bucket would be full again (generic cell rate algorithm): a permit is available
+ * while that time lies less than a full bucket ahead of now, and taking one moves it by one interval.
+ * Refill is implied by the passing time, so no thread ever refreshes the bucket and an available permit
+ * costs one nanoTime read and one CAS.
+ */
+final class RateLimiter {
+
+    private static final AtomicLongFieldUpdater<RateLimiter> FULL_AT_UPDATER = //
+            AtomicLongFieldUpdater.newUpdater(RateLimiter.class, "fullAt");
+
+    private final LongAdder rateLimited = new LongAdder();
+
+    private final RateLimit rateLimit;
+    private final long interval;
+    private final long tolerance;
+
+    // Only updated through Atomic Updater
+    private volatile long fullAt;
+
+    RateLimiter(RateLimit rateLimit) {
+        this.rateLimit = rateLimit;
+        this.interval = rateLimit.isEnabled() ? rateLimit.getPeriod() / rateLimit.getPermits() : 0;
+        this.tolerance = interval * (rateLimit.getPermits() - 1);
+        this.fullAt = System.nanoTime();
+    }
+
+    boolean isEnabled() {
+        return rateLimit.isEnabled();
+    }
+
+    RateLimit.Mode getMode() {
+        return rateLimit.getMode();
+    }
+
+    /**
+     * Takes a permit and returns the nanoseconds the caller has to wait before using it, {@code 0} if it can
+     * be used right away, or {@code -1} if no permit becomes available within the configured wait duration.
+     */
+    long reserve() {
+        long maxWait = rateLimit.getMode() == RateLimit.Mode.Wait ? rateLimit.getMaxWaitDuration() : 0;
+        while (true) {
+            long now = System.nanoTime();
+            long fullAt = this.fullAt;
+            long from = fullAt - now > 0 ? fullAt : now;
+            long wait = from - now - tolerance;
+            if (wait > maxWait) {
+                rateLimited.increment();
+                return -1;
+            }
+            if (FULL_AT_UPDATER.compareAndSet(this, fullAt, from + interval)) {
+                return wait > 0 ? wait : 0;
+            }
+        }
+    }
+
+    /**
+     * Returns a permit taken by {@link #reserve()} which is not going to be used, e.g. because the caller
+     * was interrupted while waiting for it.
+     */
+    void cancel() {
+        FULL_AT_UPDATER.getAndAdd(this, -interval);
+    }
+
+    long getNumberOfRateLimitedCalls() {
+        return rateLimited.sum();
+    }
+}
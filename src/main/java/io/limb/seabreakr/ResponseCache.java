@@ -0,0 +1,73 @@
+package io.limb.seabreakr;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Configuration of the response cache of a breaker. Results of the cached methods are kept per method and
+ * arguments for the time to live of the method, further calls within that time are answered from the cache
+ * without passing the breaker. Expired results stay in the cache until they are evicted in least recently
+ * used order, and are served in place of the failover when the breaker does not permit a call or a call
+ * ran into its deadline. {@code null} results are not cached.
+ */
+public final class ResponseCache {
+
+    private static final ResponseCache NONE = new ResponseCache(0, Collections.emptyMap());
+
+    private final int maxSize;
+    private final Map<String, Long> timeToLives;
+
+    private ResponseCache(int maxSize, Map<String, Long> timeToLives) {
+        this.maxSize = maxSize;
+        this.timeToLives = timeToLives;
+    }
+
+    public static ResponseCache none() {
+        return NONE;
+    }
+
+    /**
+     * Creates a cache of at most {@code maxSize} results, methods are added with
+     * {@link #cache(String, long, TimeUnit)}.
+     */
+    public static ResponseCache lru(int maxSize) {
+        Preconditions.requireGreaterEquals(maxSize, 1, "maxSize must be greater or equal to 1");
+        return new ResponseCache(maxSize, Collections.emptyMap());
+    }
+
+    public ResponseCache cache(String method, long timeToLive, TimeUnit timeUnit) {
+        Objects.requireNonNull(method, "method cannot be null");
+        Objects.requireNonNull(timeUnit, "timeUnit cannot be null");
+        Preconditions.requireGreaterEquals(timeToLive, 0, "timeToLive must be greater or equal to 0");
+        if (maxSize == 0) {
+            throw new IllegalStateException("Methods cannot be added to a disabled cache");
+        }
+        Map<String, Long> timeToLives = new HashMap<>(this.timeToLives);
+        timeToLives.put(method, timeUnit.toNanos(timeToLive));
+        return new ResponseCache(maxSize, Collections.unmodifiableMap(timeToLives));
+    }
+
+    public boolean isEnabled() {
+        return maxSize > 0 && !timeToLives.isEmpty();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Time to live in nanoseconds of the results of the given method, {@code -1} if it is not cached.
+     */
+    public long getTimeToLive(String method) {
+        Long timeToLive = timeToLives.get(method);
+        return timeToLive != null ? timeToLive : -1;
+    }
+
+    @Override
+    public String toString() {
+        return "ResponseCache{" + "maxSize=" + maxSize + ", timeToLives=" + timeToLives + '}';
+    }
+}
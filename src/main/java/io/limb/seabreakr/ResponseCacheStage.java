@@ -0,0 +1,126 @@
+package io.limb.seabreakr;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runtime part of a {@link ResponseCache}, one instance per breaker. The cache is split into segments,
+ * each an access ordered map behind its own lock, so that concurrent callers rarely contend. Every
+ * segment evicts its least recently used entry once it holds its share of the maximum size.
+ */
+final class ResponseCacheStage {
+
+    private static final int MAX_SEGMENTS = 16;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder staleServes = new LongAdder();
+
+    private final Segment[] segments;
+    private final int mask;
+
+    ResponseCacheStage(ResponseCache cache) {
+        int segmentCount = 1;
+        while (segmentCount < MAX_SEGMENTS && segmentCount * 2 <= cache.getMaxSize()) {
+            segmentCount *= 2;
+        }
+        int capacity = (cache.getMaxSize() + segmentCount - 1) / segmentCount;
+
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(capacity);
+        }
+        this.mask = segmentCount - 1;
+    }
+
+    /**
+     * Returns the cached result if it is younger than the time to live of the method, otherwise {@code null}.
+     */
+    Object getFresh(MethodPlan plan, Object[] args) {
+        CallKey key = new CallKey(plan, args);
+        CachedValue cached = segment(key).get(key);
+        if (cached != null && System.nanoTime() - cached.storedAt < plan.getCacheTimeToLive()) {
+            hits.increment();
+            return cached.value;
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Returns the last cached result regardless of its age, or {@code null} if there is none.
+     */
+    Object getStale(MethodPlan plan, Object[] args) {
+        CallKey key = new CallKey(plan, args);
+        CachedValue cached = segment(key).get(key);
+        if (cached == null) {
+            return null;
+        }
+        staleServes.increment();
+        return cached.value;
+    }
+
+    void put(MethodPlan plan, Object[] args, Object value) {
+        if (value == null) {
+            return;
+        }
+        // Lookups use the arguments in place, the stored key must not change with the caller's array
+        CallKey key = CallKey.copyOf(plan, args);
+        segment(key).put(key, new CachedValue(value, System.nanoTime()));
+    }
+
+    float getHitRate() {
+        long hits = this.hits.sum();
+        long lookups = hits + misses.sum();
+        return lookups == 0 ? 0.f : hits * 100.f / lookups;
+    }
+
+    long getNumberOfEvictions() {
+        return evictions.sum();
+    }
+
+    long getNumberOfStaleServes() {
+        return staleServes.sum();
+    }
+
+    private Segment segment(CallKey key) {
+        int hash = key.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & mask];
+    }
+
+    private static final class CachedValue {
+        private final Object value;
+        private final long storedAt;
+
+        private CachedValue(Object value, long storedAt) {
+            this.value = value;
+            this.storedAt = storedAt;
+        }
+    }
+
+    private final class Segment {
+        // Access ordered, the first key is the least recently used one
+        private final LinkedHashMap<CallKey, CachedValue> values = new LinkedHashMap<>(16, 0.75f, true);
+        private final int capacity;
+
+        private Segment(int capacity) {
+            this.capacity = capacity;
+        }
+
+        private synchronized CachedValue get(CallKey key) {
+            return values.get(key);
+        }
+
+        private synchronized void put(CallKey key, CachedValue value) {
+            values.put(key, value);
+            if (values.size() > capacity) {
+                Iterator<CallKey> eldest = values.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+    }
+}
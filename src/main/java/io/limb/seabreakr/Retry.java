@@ -0,0 +1,186 @@
+package io.limb.seabreakr;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Configuration of the retries a breaker performs for failed backend calls. Retries are delayed by an
+ * exponential backoff with jitter on a timer, never by a sleeping thread, and are only attempted while the
+ * backoff fits into the remaining deadline of the call.
+ * <p>
+ * Every call of a breaker adds {@code budgetPercentage / 100} tokens to a retry budget of at most
+ * {@code budgetCapacity} tokens and every retry takes one token, so retries cannot exceed the given
+ * percentage of the traffic by more than the capacity of the budget. Synchronous calls in
+ * {@link ExecutionMode#Direct direct execution mode} are not retried.
+ */
+public final class Retry {
+
+    public static final double DEFAULT_MULTIPLIER = 2.0;
+
+    public static final double DEFAULT_JITTER = 0.5;
+
+    public static final float DEFAULT_BUDGET_PERCENTAGE = 10.f;
+
+    public static final int DEFAULT_BUDGET_CAPACITY = 10;
+
+    private static final Predicate<Throwable> DEFAULT_PREDICATE = t -> !(t instanceof SeaBreakrException);
+
+    private static final Retry NONE = new Retry(1, 0, 0, DEFAULT_MULTIPLIER, 0, DEFAULT_PREDICATE, 0, 0);
+
+    private final int maxAttempts;
+    private final long initialBackoff;
+    private final long maxBackoff;
+    private final double multiplier;
+    private final double jitter;
+    private final Predicate<Throwable> predicate;
+    private final float budgetPercentage;
+    private final int budgetCapacity;
+
+    private Retry(int maxAttempts, long initialBackoff, long maxBackoff, double multiplier, double jitter,
+                  Predicate<Throwable> predicate, float budgetPercentage, int budgetCapacity) {
+
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.multiplier = multiplier;
+        this.jitter = jitter;
+        this.predicate = predicate;
+        this.budgetPercentage = budgetPercentage;
+        this.budgetCapacity = budgetCapacity;
+    }
+
+    public static Retry none() {
+        return NONE;
+    }
+
+    /**
+     * Retries failed calls up to {@code maxAttempts} attempts in total, waiting {@code initialBackoff} before
+     * the first retry and doubling the backoff for every further retry. By default every exception which is
+     * not raised by the breaker itself is retried.
+     */
+    public static Retry exponential(int maxAttempts, long initialBackoff, TimeUnit timeUnit) {
+        Objects.requireNonNull(timeUnit, "timeUnit cannot be null");
+        Preconditions.requireGreaterEquals(maxAttempts, 2, "maxAttempts must be greater or equal to 2");
+        Preconditions.requireGreaterEquals(initialBackoff, 1, "initialBackoff must be greater or equal to 1");
+        long backoff = timeUnit.toNanos(initialBackoff);
+        return new Retry(maxAttempts, backoff, Long.MAX_VALUE, DEFAULT_MULTIPLIER, DEFAULT_JITTER, DEFAULT_PREDICATE,
+                DEFAULT_BUDGET_PERCENTAGE, DEFAULT_BUDGET_CAPACITY);
+    }
+
+    public Retry withMaxBackoff(long maxBackoff, TimeUnit timeUnit) {
+        Objects.requireNonNull(timeUnit, "timeUnit cannot be null");
+        Preconditions.requireGreaterEquals(timeUnit.toNanos(maxBackoff), initialBackoff,
+                "maxBackoff must be greater or equal to initialBackoff");
+        return new Retry(maxAttempts, initialBackoff, timeUnit.toNanos(maxBackoff), multiplier, jitter, predicate,
+                budgetPercentage, budgetCapacity);
+    }
+
+    public Retry withMultiplier(double multiplier) {
+        if (multiplier < 1.0) {
+            throw new IllegalArgumentException("multiplier must be greater or equal to 1");
+        }
+        return new Retry(maxAttempts, initialBackoff, maxBackoff, multiplier, jitter, predicate, budgetPercentage,
+                budgetCapacity);
+    }
+
+    /**
+     * Randomly shortens every backoff by up to the given fraction (0 to 1) to spread the retries of
+     * concurrent callers.
+     */
+    public Retry withJitter(double jitter) {
+        if (jitter < 0.0 || jitter > 1.0) {
+            throw new IllegalArgumentException("jitter must be between 0 and 1");
+        }
+        return new Retry(maxAttempts, initialBackoff, maxBackoff, multiplier, jitter, predicate, budgetPercentage,
+                budgetCapacity);
+    }
+
+    /**
+     * Only retries exceptions which are instances of one of the given types.
+     */
+    @SafeVarargs
+    public final Retry retryOn(Class<? extends Throwable>... types) {
+        Objects.requireNonNull(types, "types cannot be null");
+        List<Class<? extends Throwable>> copy = new ArrayList<>(types.length);
+        for (Class<? extends Throwable> type : types) {
+            copy.add(Objects.requireNonNull(type, "types cannot contain null"));
+        }
+        List<Class<? extends Throwable>> retryableTypes = Collections.unmodifiableList(copy);
+        return retryIf(t -> {
+            for (Class<? extends Throwable> type : retryableTypes) {
+                if (type.isInstance(t)) {
+                    return true;
+                }
+            }
+            return false;
+        });
+    }
+
+    public Retry retryIf(Predicate<Throwable> predicate) {
+        Objects.requireNonNull(predicate, "predicate cannot be null");
+        return new Retry(maxAttempts, initialBackoff, maxBackoff, multiplier, jitter, predicate, budgetPercentage,
+                budgetCapacity);
+    }
+
+    public Retry withBudget(float budgetPercentage, int budgetCapacity) {
+        if (budgetPercentage < 0.f || budgetPercentage > 100.f) {
+            throw new IllegalArgumentException("budgetPercentage must be between 0 and 100");
+        }
+        Preconditions.requireGreaterEquals(budgetCapacity, 1, "budgetCapacity must be greater or equal to 1");
+        return new Retry(maxAttempts, initialBackoff, maxBackoff, multiplier, jitter, predicate, budgetPercentage,
+                budgetCapacity);
+    }
+
+    public boolean isEnabled() {
+        return maxAttempts > 1;
+    }
+
+    /**
+     * Number of attempts including the initial call.
+     */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Backoff before the first retry in nanoseconds.
+     */
+    public long getInitialBackoff() {
+        return initialBackoff;
+    }
+
+    public long getMaxBackoff() {
+        return maxBackoff;
+    }
+
+    public double getMultiplier() {
+        return multiplier;
+    }
+
+    public double getJitter() {
+        return jitter;
+    }
+
+    public Predicate<Throwable> getPredicate() {
+        return predicate;
+    }
+
+    public float getBudgetPercentage() {
+        return budgetPercentage;
+    }
+
+    public int getBudgetCapacity() {
+        return budgetCapacity;
+    }
+
+    @Override
+    public String toString() {
+        return "Retry{" + "maxAttempts=" + maxAttempts + ", initialBackoff=" + initialBackoff + ", maxBackoff="
+                + maxBackoff + ", multiplier=" + multiplier + ", jitter=" + jitter + ", budgetPercentage="
+                + budgetPercentage + ", budgetCapacity=" + budgetCapacity + '}';
+    }
+}
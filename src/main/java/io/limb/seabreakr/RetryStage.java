@@ -0,0 +1,85 @@
+package io.limb.seabreakr;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runtime part of a {@link Retry}, one instance per breaker.
+ */
+final class RetryStage {
+
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder suppressedRetries = new LongAdder();
+
+    private final Retry retry;
+    private final LoadBudget budget;
+
+    RetryStage(Retry retry) {
+        this.retry = retry;
+        this.budget = new LoadBudget(retry.getBudgetPercentage(), retry.getBudgetCapacity());
+    }
+
+    boolean isEnabled() {
+        return retry.isEnabled();
+    }
+
+    /**
+     * Called once for every call of the breaker, refills the retry budget.
+     */
+    void onCall() {
+        budget.deposit();
+    }
+
+    /**
+     * Returns the backoff in nanoseconds before the given retry (1 for the first retry) of a call which
+     * failed with {@code error}, or {@code -1} if the call must not be retried. Takes a token from the
+     * retry budget if the retry is permitted.
+     */
+    long backoff(int retryNumber, Throwable error, long remainingDeadline) {
+        if (retryNumber >= retry.getMaxAttempts() || !retry.getPredicate().test(error)) {
+            return -1;
+        }
+
+        double backoff = retry.getInitialBackoff() * Math.pow(retry.getMultiplier(), retryNumber - 1);
+        backoff = Math.min(backoff, retry.getMaxBackoff());
+        backoff -= backoff * retry.getJitter() * ThreadLocalRandom.current().nextDouble();
+        if ((long) backoff >= remainingDeadline) {
+            return -1;
+        }
+
+        if (!budget.tryWithdraw()) {
+            suppressedRetries.increment();
+            return -1;
+        }
+        return (long) backoff;
+    }
+
+    /**
+     * Called once a retry was actually sent, i.e. the bulkhead admitted it.
+     */
+    void onRetry() {
+        retries.increment();
+    }
+
+    /**
+     * Called instead of {@link #onRetry()} if the bulkhead rejected the retry, returns its budget token.
+     */
+    void onRejectedRetry() {
+        budget.refund();
+    }
+
+    /**
+     * Budget shared with hedged calls, so retries and hedges together stay within the retry budget.
+     */
+    LoadBudget getBudget() {
+        return budget;
+    }
+
+    long getNumberOfRetries() {
+        return retries.sum();
+    }
+
+    long getNumberOfSuppressedRetries() {
+        return suppressedRetries.sum();
+    }
+}
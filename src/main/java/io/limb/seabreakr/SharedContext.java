@@ -0,0 +1,268 @@
+package io.limb.seabreakr;
+
+import io.limb.seabreakr.spi.Context;
+import io.limb.seabreakr.spi.EventPublisher;
+
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * Context whose state and sliding window live in a region of a {@link SharedStateFile}, so every process
+ * using the same file and breaker name sees the same state. Transitions are compare-and-set operations on
+ * the mapped state word.
+ * <p>
+ * Transitions made by other processes are noticed whenever the state is read and published to the local
+ * listeners like local transitions, which also schedules the local transition to HalfOpen after a breaker
+ * was opened elsewhere.
+ * <p>
+ * Every process schedules its own transition to HalfOpen, so several of them race for it. The state word
+ * carries the number of the HalfOpen phase next to the state code, and the winner of the compare-and-set
+ * starts a new phase. Only the winner resets the window and then hands out the trial permits of the phase.
+ * Permits and completed trials are tagged with their phase as well, so calls see no permits until the
+ * winner initialized them and results of an older phase are never counted as trials.
+ */
+final class SharedContext
+        implements Context {
+
+    private static final AtomicReferenceFieldUpdater<SharedContext, State> OBSERVED_STATE_UPDATER = //
+            AtomicReferenceFieldUpdater.newUpdater(SharedContext.class, State.class, "observedState");
+
+    // Region layout, followed by the sliding window. State, permits and completed trials carry the HalfOpen
+    // phase in the upper and the state code or count in the lower half
+    private static final int STATE_OFFSET = 0;
+    private static final int PERMITTED_CALLS_OFFSET = 8;
+    private static final int PERMITS_OFFSET = 16;
+    private static final int COMPLETED_TRIALS_OFFSET = 24;
+    private static final int METRICS_OFFSET = 32;
+
+    // State codes, Closed is 0 so a new region starts closed
+    private static final long CLOSED = 0;
+    private static final long OPEN = 1;
+    private static final long HALF_OPEN = 2;
+
+    private static final long MAX_PHASE = 0xFFFFFFFFL;
+
+    private final SlidingWindow slidingWindow;
+    private final MetricsRecorder metrics;
+    private final EventPublisher eventPublisher;
+    private final MappedMemory memory;
+    private final long offset;
+
+    // Only updated through Atomic Updater
+    private volatile State observedState = State.Closed;
+
+    SharedContext(SharedStateFile file, String name, SlidingWindow slidingWindow, EventPublisher eventPublisher) {
+        boolean timeBased = slidingWindow.getType() == SlidingWindow.Type.TimeBased;
+        int metricsSize = timeBased //
+                ? SharedTimeWindowMetricsRecorder.size(slidingWindow.getSize()) //
+                : SharedMetricsRecorder.size(slidingWindow.getSize());
+
+        this.slidingWindow = slidingWindow;
+        this.eventPublisher = eventPublisher;
+        this.memory = file.getMemory();
+        this.offset = file.region(name, slidingWindow, METRICS_OFFSET + metricsSize);
+        this.metrics = timeBased //
+                ? new SharedTimeWindowMetricsRecorder(memory, offset + METRICS_OFFSET, slidingWindow.getSize(),
+                slidingWindow.getBucketDuration()) //
+                : new SharedMetricsRecorder(memory, offset + METRICS_OFFSET, slidingWindow.getSize());
+    }
+
+    @Override
+    public boolean close() {
+        if (transition(OPEN, CLOSED) || transition(HALF_OPEN, CLOSED)) {
+            metrics.reset();
+            return observed(State.Closed);
+        }
+        return false;
+    }
+
+    @Override
+    public boolean open() {
+        if (transition(CLOSED, OPEN) || transition(HALF_OPEN, OPEN)) {
+            return observed(State.Open);
+        }
+        return false;
+    }
+
+    @Override
+    public boolean halfOpen(int permittedCalls) {
+        long status = memory.get(offset + STATE_OFFSET);
+        if (code(status) != OPEN) {
+            return false;
+        }
+        long phase = phase(status) % MAX_PHASE + 1;
+        if (!memory.compareAndSet(offset + STATE_OFFSET, status, phase << 32 | HALF_OPEN)) {
+            return false;
+        }
+
+        // Permits are published last, no call takes a trial permit of the phase before
+        metrics.reset();
+        memory.set(offset + PERMITTED_CALLS_OFFSET, permittedCalls);
+        memory.set(offset + COMPLETED_TRIALS_OFFSET, phase << 32);
+        memory.set(offset + PERMITS_OFFSET, phase << 32 | permittedCalls);
+        return observed(State.HalfOpen);
+    }
+
+    @Override
+    public boolean isCallAllowed() {
+        State state = observe();
+        if (state != State.HalfOpen) {
+            return state == State.Closed;
+        }
+        long permits = memory.get(offset + PERMITS_OFFSET);
+        return phase(permits) == currentPhase() && count(permits) > 0;
+    }
+
+    /**
+     * Trial permits are the number of the HalfOpen phase they were taken in.
+     */
+    @Override
+    public long acquirePermit() {
+        State state = observe();
+        if (state == State.Closed) {
+            return PERMITTED;
+        }
+        if (state == State.Open) {
+            return NOT_PERMITTED;
+        }
+        long phase = currentPhase();
+        while (true) {
+            long permits = memory.get(offset + PERMITS_OFFSET);
+            if (phase(permits) != phase || count(permits) <= 0) {
+                return NOT_PERMITTED;
+            }
+            if (memory.compareAndSet(offset + PERMITS_OFFSET, permits, permits - 1)) {
+                return phase;
+            }
+        }
+    }
+
+    @Override
+    public void releasePermit(long permit) {
+        while (permit > PERMITTED) {
+            long permits = memory.get(offset + PERMITS_OFFSET);
+            if (phase(permits) != permit || memory.compareAndSet(offset + PERMITS_OFFSET, permits, permits + 1)) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public boolean isTrial(long permit) {
+        long status = memory.get(offset + STATE_OFFSET);
+        return permit > PERMITTED && code(status) == HALF_OPEN && phase(status) == permit;
+    }
+
+    @Override
+    public boolean completeTrial(long permit) {
+        if (!isTrial(permit)) {
+            return false;
+        }
+        while (true) {
+            long trials = memory.get(offset + COMPLETED_TRIALS_OFFSET);
+            if (phase(trials) != permit) {
+                return false;
+            }
+            if (memory.compareAndSet(offset + COMPLETED_TRIALS_OFFSET, trials, trials + 1)) {
+                return count(trials) + 1 == memory.get(offset + PERMITTED_CALLS_OFFSET);
+            }
+        }
+    }
+
+    @Override
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public MetricsRecorder getMetricsRecorder() {
+        return metrics;
+    }
+
+    @Override
+    public SlidingWindow getSlidingWindow() {
+        return slidingWindow;
+    }
+
+    @Override
+    public State getState() {
+        return observe();
+    }
+
+    @Override
+    public EventPublisher getEventPublisher() {
+        return eventPublisher;
+    }
+
+    /**
+     * Reads the shared state and publishes it if it was changed by another process since the last read.
+     */
+    private State observe() {
+        State state = state(code(memory.get(offset + STATE_OFFSET)));
+        State observedState = this.observedState;
+        if (state != observedState && OBSERVED_STATE_UPDATER.compareAndSet(this, observedState, state)) {
+            fire(state);
+        }
+        return state;
+    }
+
+    /**
+     * Records a transition made by this process, returns false if it was already observed and published.
+     */
+    private boolean observed(State state) {
+        return OBSERVED_STATE_UPDATER.getAndSet(this, state) != state;
+    }
+
+    private void fire(State state) {
+        switch (state) {
+            case Open:
+                eventPublisher.fireOpenState();
+                break;
+
+            case HalfOpen:
+                eventPublisher.fireHalfOpenState();
+                break;
+
+            default:
+                eventPublisher.fireClosedState();
+        }
+    }
+
+    private long currentPhase() {
+        return phase(memory.get(offset + STATE_OFFSET));
+    }
+
+    /**
+     * Moves the state from {@code oldCode} to {@code newCode}, keeping the phase.
+     */
+    private boolean transition(long oldCode, long newCode) {
+        while (true) {
+            long status = memory.get(offset + STATE_OFFSET);
+            if (code(status) != oldCode) {
+                return false;
+            }
+            long newStatus = status & ~MAX_PHASE | newCode;
+            if (memory.compareAndSet(offset + STATE_OFFSET, status, newStatus)) {
+                return true;
+            }
+        }
+    }
+
+    private static long phase(long word) {
+        return word >>> 32;
+    }
+
+    private static int count(long word) {
+        return (int) word;
+    }
+
+    private static long code(long status) {
+        return status & MAX_PHASE;
+    }
+
+    private static State state(long code) {
+        if (code == OPEN) {
+            return State.Open;
+        }
+        return code == HALF_OPEN ? State.HalfOpen : State.Closed;
+    }
+}
@@ -0,0 +1,135 @@
+package io.limb.seabreakr;
+
+/**
+ * Count based sliding window kept in a region of a {@link SharedStateFile}, the cross-process counterpart
+ * of {@link MetricsRecorderImpl}. Position, running counters and both rings are longs of the mapped file,
+ * every process recording into the region moves the same window.
+ */
+final class SharedMetricsRecorder
+        implements MetricsRecorder {
+
+    private static final int NUM_BITS_PER_WORD = 64;
+
+    // Region layout, followed by the words of the failure ring and the words of the slow call ring
+    private static final int POSITION_OFFSET = 0;
+    private static final int FAILURES_OFFSET = 8;
+    private static final int SLOW_CALLS_OFFSET = 16;
+    private static final int RINGS_OFFSET = 24;
+
+    private final MappedMemory memory;
+    private final long offset;
+    private final int numOfBufferedEvents;
+    private final long failureRing;
+    private final long slowRing;
+    private final int words;
+
+    SharedMetricsRecorder(MappedMemory memory, long offset, int numOfBufferedEvents) {
+        this.memory = memory;
+        this.offset = offset;
+        this.numOfBufferedEvents = numOfBufferedEvents;
+        this.words = words(numOfBufferedEvents);
+        this.failureRing = offset + RINGS_OFFSET;
+        this.slowRing = failureRing + words * 8L;
+    }
+
+    static int size(int numOfBufferedEvents) {
+        return RINGS_OFFSET + 2 * words(numOfBufferedEvents) * 8;
+    }
+
+    @Override
+    public float getFailureRate() {
+        long bufferedEvents = getNumberOfBufferedEvents();
+        if (bufferedEvents == 0) {
+            return 0.f;
+        }
+        return getNumberOfFailedEvents() * 100.f / bufferedEvents;
+    }
+
+    @Override
+    public long getNumberOfFailedEvents() {
+        return Math.max(0, memory.get(offset + FAILURES_OFFSET));
+    }
+
+    @Override
+    public long getNumberOfBufferedEvents() {
+        return Math.min(memory.get(offset + POSITION_OFFSET), numOfBufferedEvents);
+    }
+
+    @Override
+    public float getSlowCallRate() {
+        long bufferedEvents = getNumberOfBufferedEvents();
+        if (bufferedEvents == 0) {
+            return 0.f;
+        }
+        return getNumberOfSlowEvents() * 100.f / bufferedEvents;
+    }
+
+    @Override
+    public long getNumberOfSlowEvents() {
+        return Math.max(0, memory.get(offset + SLOW_CALLS_OFFSET));
+    }
+
+    @Override
+    public void recordSuccess() {
+        record(false, false);
+    }
+
+    @Override
+    public void recordFailure() {
+        record(true, false);
+    }
+
+    @Override
+    public void recordSlowSuccess() {
+        record(false, true);
+    }
+
+    @Override
+    public void recordSlowFailure() {
+        record(true, true);
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < words; i++) {
+            memory.set(failureRing + i * 8L, 0);
+            memory.set(slowRing + i * 8L, 0);
+        }
+        memory.set(offset + POSITION_OFFSET, 0);
+        memory.set(offset + FAILURES_OFFSET, 0);
+        memory.set(offset + SLOW_CALLS_OFFSET, 0);
+    }
+
+    private void record(boolean failure, boolean slow) {
+        long position = memory.getAndAdd(offset + POSITION_OFFSET, 1);
+        if (update(failureRing, position, failure)) {
+            memory.getAndAdd(offset + FAILURES_OFFSET, failure ? 1 : -1);
+        }
+        if (update(slowRing, position, slow)) {
+            memory.getAndAdd(offset + SLOW_CALLS_OFFSET, slow ? 1 : -1);
+        }
+    }
+
+    /**
+     * Sets or clears the bit at the given ring position and returns true if the bit flipped.
+     */
+    private boolean update(long ring, long position, boolean value) {
+        int slot = (int) Long.remainderUnsigned(position, numOfBufferedEvents);
+        long word = ring + (slot / NUM_BITS_PER_WORD) * 8L;
+        long mask = 1L << (slot % NUM_BITS_PER_WORD);
+        while (true) {
+            long oldWord = memory.get(word);
+            long newWord = value ? oldWord | mask : oldWord & ~mask;
+            if (oldWord == newWord) {
+                return false;
+            }
+            if (memory.compareAndSet(word, oldWord, newWord)) {
+                return true;
+            }
+        }
+    }
+
+    private static int words(int bits) {
+        return (bits - 1) / NUM_BITS_PER_WORD + 1;
+    }
+}
@@ -0,0 +1,158 @@
+package io.limb.seabreakr;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Memory-mapped file holding the state of breakers shared by all processes of a host, one region per breaker
+ * name. Regions are appended once while holding a file lock and never move or shrink, all further updates
+ * are atomic operations on the longs of a region. Every file is mapped once per process.
+ */
+final class SharedStateFile {
+
+    static final int FILE_SIZE = 1 << 20;
+
+    private static final long MAGIC = 0x5342534841524544L; // SBSHARED
+    private static final long VERSION = 1;
+
+    // File header
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 8;
+    private static final int END_OFFSET = 16;
+    private static final int HEADER_SIZE = 64;
+
+    // Region header, followed by the payload of the region
+    private static final int NAME_SIZE = 64;
+    private static final int SIZE_OFFSET = 64;
+    private static final int TYPE_OFFSET = 72;
+    private static final int WINDOW_SIZE_OFFSET = 80;
+    private static final int BUCKET_DURATION_OFFSET = 88;
+    private static final int REGION_HEADER_SIZE = 96;
+
+    private static final ConcurrentMap<Path, SharedStateFile> FILES = new ConcurrentHashMap<>();
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final MappedMemory memory;
+
+    private SharedStateFile(FileChannel channel, MappedByteBuffer buffer) {
+        this.channel = channel;
+        this.buffer = buffer;
+        this.memory = new MappedMemory(buffer);
+    }
+
+    static SharedStateFile of(Path file) {
+        return FILES.computeIfAbsent(file.toAbsolutePath().normalize(), SharedStateFile::open);
+    }
+
+    MappedMemory getMemory() {
+        return memory;
+    }
+
+    /**
+     * Returns the offset of the payload of the named region, appending a region with {@code payloadSize}
+     * zeroed bytes if the name is new. Every process must use the same sliding window for a name.
+     */
+    synchronized long region(String name, SlidingWindow slidingWindow, int payloadSize) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > NAME_SIZE - 2) {
+            throw new IllegalArgumentException("name must not be longer than " + (NAME_SIZE - 2) + " bytes");
+        }
+
+        FileLock lock = lock();
+        try {
+            if (memory.get(MAGIC_OFFSET) == 0) {
+                memory.set(VERSION_OFFSET, VERSION);
+                memory.set(END_OFFSET, HEADER_SIZE);
+                memory.set(MAGIC_OFFSET, MAGIC);
+            } else if (memory.get(MAGIC_OFFSET) != MAGIC || memory.get(VERSION_OFFSET) != VERSION) {
+                throw new IllegalStateException("Not a shared breaker state file");
+            }
+
+            long end = memory.get(END_OFFSET);
+            for (long offset = HEADER_SIZE; offset < end; offset += memory.get(offset + SIZE_OFFSET)) {
+                if (nameEquals((int) offset, bytes)) {
+                    if (!windowEquals(offset, slidingWindow)) {
+                        throw new IllegalStateException("Breaker " + name + " is shared with a different sliding window");
+                    }
+                    return offset + REGION_HEADER_SIZE;
+                }
+            }
+
+            // Aligned to cache lines, regions of different breakers never share one
+            long size = (REGION_HEADER_SIZE + payloadSize + 63) & ~63L;
+            if (end + size > FILE_SIZE) {
+                throw new IllegalStateException("Shared breaker state file is full");
+            }
+            buffer.putShort((int) end, (short) bytes.length);
+            for (int i = 0; i < bytes.length; i++) {
+                buffer.put((int) end + 2 + i, bytes[i]);
+            }
+            memory.set(end + SIZE_OFFSET, size);
+            memory.set(end + TYPE_OFFSET, slidingWindow.getType().ordinal());
+            memory.set(end + WINDOW_SIZE_OFFSET, slidingWindow.getSize());
+            memory.set(end + BUCKET_DURATION_OFFSET, slidingWindow.getBucketDuration());
+            memory.set(END_OFFSET, end + size);
+            return end + REGION_HEADER_SIZE;
+        } finally {
+            unlock(lock);
+        }
+    }
+
+    private FileLock lock() {
+        try {
+            return channel.lock(0, HEADER_SIZE, false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void unlock(FileLock lock) {
+        try {
+            lock.release();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private boolean nameEquals(int offset, byte[] bytes) {
+        if (buffer.getShort(offset) != bytes.length) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if (buffer.get(offset + 2 + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean windowEquals(long offset, SlidingWindow slidingWindow) {
+        return memory.get(offset + TYPE_OFFSET) == slidingWindow.getType().ordinal()
+                && memory.get(offset + WINDOW_SIZE_OFFSET) == slidingWindow.getSize()
+                && memory.get(offset + BUCKET_DURATION_OFFSET) == slidingWindow.getBucketDuration();
+    }
+
+    private static SharedStateFile open(Path file) {
+        try {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            try {
+                return new SharedStateFile(channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, FILE_SIZE));
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
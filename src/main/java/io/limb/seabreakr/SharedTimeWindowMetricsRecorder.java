@@ -0,0 +1,157 @@
+package io.limb.seabreakr;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Time based sliding window kept in a region of a {@link SharedStateFile}, the cross-process counterpart
+ * of {@link TimeWindowMetricsRecorder}. Buckets are rotated by the first process recording into a newer
+ * epoch. Epochs are derived from the wall clock since {@code System.nanoTime()} has a different origin in
+ * every process, and reading the window sums all buckets as there is no shared place to cache an
+ * aggregate.
+ */
+final class SharedTimeWindowMetricsRecorder
+        implements MetricsRecorder {
+
+    // Bucket layout, an epoch of 0 marks an empty bucket
+    private static final int EPOCH_OFFSET = 0;
+    private static final int CALLS_OFFSET = 8;
+    private static final int FAILURES_OFFSET = 16;
+    private static final int SLOW_CALLS_OFFSET = 24;
+    private static final int BUCKET_SIZE = 32;
+
+    private final MappedMemory memory;
+    private final long offset;
+    private final int numOfBuckets;
+    private final long bucketDuration;
+    private final LongSupplier clock;
+
+    SharedTimeWindowMetricsRecorder(MappedMemory memory, long offset, int numOfBuckets, long bucketDuration) {
+        this(memory, offset, numOfBuckets, bucketDuration,
+                () -> TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis()));
+    }
+
+    SharedTimeWindowMetricsRecorder(MappedMemory memory, long offset, int numOfBuckets, long bucketDuration,
+                                    LongSupplier clock) {
+
+        this.memory = memory;
+        this.offset = offset;
+        this.numOfBuckets = numOfBuckets;
+        this.bucketDuration = bucketDuration;
+        this.clock = clock;
+    }
+
+    static int size(int numOfBuckets) {
+        return numOfBuckets * BUCKET_SIZE;
+    }
+
+    @Override
+    public float getFailureRate() {
+        long epoch = epoch();
+        long bufferedEvents = sum(epoch, CALLS_OFFSET);
+        if (bufferedEvents == 0) {
+            return 0.f;
+        }
+        return sum(epoch, FAILURES_OFFSET) * 100.f / bufferedEvents;
+    }
+
+    @Override
+    public long getNumberOfFailedEvents() {
+        return sum(epoch(), FAILURES_OFFSET);
+    }
+
+    @Override
+    public long getNumberOfBufferedEvents() {
+        return sum(epoch(), CALLS_OFFSET);
+    }
+
+    @Override
+    public float getSlowCallRate() {
+        long epoch = epoch();
+        long bufferedEvents = sum(epoch, CALLS_OFFSET);
+        if (bufferedEvents == 0) {
+            return 0.f;
+        }
+        return sum(epoch, SLOW_CALLS_OFFSET) * 100.f / bufferedEvents;
+    }
+
+    @Override
+    public long getNumberOfSlowEvents() {
+        return sum(epoch(), SLOW_CALLS_OFFSET);
+    }
+
+    @Override
+    public void recordSuccess() {
+        record(false, false);
+    }
+
+    @Override
+    public void recordFailure() {
+        record(true, false);
+    }
+
+    @Override
+    public void recordSlowSuccess() {
+        record(false, true);
+    }
+
+    @Override
+    public void recordSlowFailure() {
+        record(true, true);
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < numOfBuckets; i++) {
+            long bucket = offset + i * (long) BUCKET_SIZE;
+            memory.set(bucket + CALLS_OFFSET, 0);
+            memory.set(bucket + FAILURES_OFFSET, 0);
+            memory.set(bucket + SLOW_CALLS_OFFSET, 0);
+            memory.set(bucket + EPOCH_OFFSET, 0);
+        }
+    }
+
+    private void record(boolean failure, boolean slow) {
+        long bucket = bucket(epoch());
+        memory.getAndAdd(bucket + CALLS_OFFSET, 1);
+        if (failure) {
+            memory.getAndAdd(bucket + FAILURES_OFFSET, 1);
+        }
+        if (slow) {
+            memory.getAndAdd(bucket + SLOW_CALLS_OFFSET, 1);
+        }
+    }
+
+    private long bucket(long epoch) {
+        long bucket = offset + Math.floorMod(epoch, (long) numOfBuckets) * BUCKET_SIZE;
+        while (true) {
+            long bucketEpoch = memory.get(bucket + EPOCH_OFFSET);
+            if (bucketEpoch >= epoch) {
+                return bucket;
+            }
+            if (memory.compareAndSet(bucket + EPOCH_OFFSET, bucketEpoch, epoch)) {
+                memory.set(bucket + CALLS_OFFSET, 0);
+                memory.set(bucket + FAILURES_OFFSET, 0);
+                memory.set(bucket + SLOW_CALLS_OFFSET, 0);
+                return bucket;
+            }
+        }
+    }
+
+    private long sum(long epoch, int counterOffset) {
+        long sum = 0;
+        long oldestEpoch = epoch - numOfBuckets;
+        for (int i = 0; i < numOfBuckets; i++) {
+            long bucket = offset + i * (long) BUCKET_SIZE;
+            long bucketEpoch = memory.get(bucket + EPOCH_OFFSET);
+            if (bucketEpoch > oldestEpoch && bucketEpoch <= epoch) {
+                sum += memory.get(bucket + counterOffset);
+            }
+        }
+        return sum;
+    }
+
+    private long epoch() {
+        return Math.floorDiv(clock.getAsLong(), bucketDuration);
+    }
+}
@@ -0,0 +1,114 @@
+package io.limb.seabreakr;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Configuration of the window in which call outcomes are recorded and evaluated by the strategy.
+ */
+public final class SlidingWindow {
+
+    public static final int DEFAULT_SIZE = 1000;
+
+    public static final int DEFAULT_MINIMUM_NUMBER_OF_CALLS = 100;
+
+    public enum Type {
+        /**
+         * Keeps the outcomes of the last {@code size} calls.
+         */
+        CountBased,
+
+        /**
+         * Keeps the outcomes of the calls in the last {@code size} buckets of {@code bucketDuration} each.
+         */
+        TimeBased
+    }
+
+    private final Type type;
+    private final int size;
+    private final long bucketDuration;
+    private final int minimumNumberOfCalls;
+
+    private SlidingWindow(Type type, int size, long bucketDuration, int minimumNumberOfCalls) {
+        this.type = type;
+        this.size = size;
+        this.bucketDuration = bucketDuration;
+        this.minimumNumberOfCalls = minimumNumberOfCalls;
+    }
+
+    public static SlidingWindow countBased(int size) {
+        Preconditions.requireGreaterEquals(size, 1, "size must be greater or equal to 1");
+        return new SlidingWindow(Type.CountBased, size, 0, Math.min(size, DEFAULT_MINIMUM_NUMBER_OF_CALLS));
+    }
+
+    public static SlidingWindow timeBased(int numOfBuckets, long bucketDuration, TimeUnit timeUnit) {
+        Objects.requireNonNull(timeUnit, "timeUnit cannot be null");
+        Preconditions.requireGreaterEquals(numOfBuckets, 1, "numOfBuckets must be greater or equal to 1");
+        Preconditions.requireGreaterEquals(bucketDuration, 1, "bucketDuration must be greater or equal to 1");
+        long bucketNanos = timeUnit.toNanos(bucketDuration);
+        return new SlidingWindow(Type.TimeBased, numOfBuckets, bucketNanos, DEFAULT_MINIMUM_NUMBER_OF_CALLS);
+    }
+
+    static SlidingWindow defaultWindow() {
+        return countBased(DEFAULT_SIZE);
+    }
+
+    /**
+     * Returns a copy of this window which is only evaluated by the strategy once at least the given
+     * number of calls has been recorded.
+     */
+    public SlidingWindow withMinimumNumberOfCalls(int minimumNumberOfCalls) {
+        Preconditions.requireGreaterEquals(minimumNumberOfCalls, 1, "minimumNumberOfCalls must be greater or equal to 1");
+        return new SlidingWindow(type, size, bucketDuration, minimumNumberOfCalls);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Number of calls for count based windows, number of buckets for time based windows.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Duration of a single bucket in nanoseconds, {@code 0} for count based windows.
+     */
+    public long getBucketDuration() {
+        return bucketDuration;
+    }
+
+    public int getMinimumNumberOfCalls() {
+        return minimumNumberOfCalls;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        SlidingWindow that = (SlidingWindow) o;
+
+        if (size != that.size) return false;
+        if (bucketDuration != that.bucketDuration) return false;
+        if (minimumNumberOfCalls != that.minimumNumberOfCalls) return false;
+        return type == that.type;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = type.hashCode();
+        result = 31 * result + size;
+        result = 31 * result + (int) (bucketDuration ^ (bucketDuration >>> 32));
+        result = 31 * result + minimumNumberOfCalls;
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "SlidingWindow{" + "type=" + type + ", size=" + size + ", bucketDuration=" + bucketDuration
+                + ", minimumNumberOfCalls=" + minimumNumberOfCalls + '}';
+    }
+}
@@ -0,0 +1,270 @@
+package io.limb.seabreakr;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the state of breakers across restarts in a compact binary file. Breakers built with the store
+ * through {@link CircuitBreakerBuilder#snapshotStore(SnapshotStore)} come back with the state, open
+ * timestamp, sliding window and latencies written by the previous process for a breaker of the same
+ * {@link CircuitBreaker#getName() name}, unless the snapshot is older than the staleness cutoff. An
+ * open breaker moves to HalfOpen once the rest of its wait duration passed.
+ * <p>
+ * The file is read once on the first build and snapshots are decoded only for breakers which are built,
+ * so startup stays fast with thousands of breakers. Snapshots are written when the JVM shuts down, on
+ * {@link #save()} and {@link #close()} and optionally every interval. Each save replaces the file
+ * atomically and keeps the fresh snapshots of breakers which were not built yet.
+ */
+public final class SnapshotStore
+        implements Closeable {
+
+    static final int MAGIC = 0x5342534E; // SBSN
+    static final int VERSION = 1;
+
+    private static final Set<SnapshotStore> OPEN_STORES = ConcurrentHashMap.newKeySet();
+
+    private final ConcurrentMap<String, JavaProxyCircuitBreaker<?>> breakers = new ConcurrentHashMap<>();
+    private final LongAdder failedSaves = new LongAdder();
+
+    private final Path file;
+    private final long maxAge;
+
+    // Read on first use, snapshots are removed once restored
+    private Map<String, Snapshot> snapshots;
+
+    private ScheduledExecutorService saver;
+
+    private SnapshotStore(Path file, long maxAge) {
+        this.file = file;
+        this.maxAge = maxAge;
+    }
+
+    /**
+     * Opens the store backed by the given file, snapshots older than {@code maxAge} are not restored.
+     */
+    public static SnapshotStore open(Path file, long maxAge, TimeUnit timeUnit) {
+        Objects.requireNonNull(file, "file cannot be null");
+        Objects.requireNonNull(timeUnit, "timeUnit cannot be null");
+        Preconditions.requireGreaterEquals(maxAge, 1, "maxAge must be greater or equal to 1");
+
+        SnapshotStore store = new SnapshotStore(file, timeUnit.toNanos(maxAge));
+        OPEN_STORES.add(store);
+        return store;
+    }
+
+    /**
+     * Additionally saves the snapshots every {@code interval} on a background thread, so a process which is
+     * killed without shutting down loses at most one interval.
+     */
+    public synchronized void saveEvery(long interval, TimeUnit timeUnit) {
+        Objects.requireNonNull(timeUnit, "timeUnit cannot be null");
+        Preconditions.requireGreaterEquals(interval, 1, "interval must be greater or equal to 1");
+        if (saver != null) {
+            saver.shutdown();
+        }
+        saver = Executors.newSingleThreadScheduledExecutor((r) -> {
+            Thread thread = new Thread(r, "SeaBreakr-Snapshots");
+            thread.setDaemon(true);
+            return thread;
+        });
+        saver.scheduleWithFixedDelay(this::saveQuietly, interval, interval, timeUnit);
+    }
+
+    /**
+     * Writes the snapshots of all breakers built with this store.
+     */
+    public synchronized void save()
+            throws IOException {
+
+        long now = System.currentTimeMillis();
+        List<String> names = new ArrayList<>();
+        List<Snapshot> snapshots = new ArrayList<>();
+        for (Map.Entry<String, JavaProxyCircuitBreaker<?>> entry : breakers.entrySet()) {
+            ByteArrayOutputStream payload = new ByteArrayOutputStream();
+            entry.getValue().writeSnapshot(new DataOutputStream(payload));
+            names.add(entry.getKey());
+            snapshots.add(new Snapshot(now, payload.toByteArray()));
+        }
+        for (Map.Entry<String, Snapshot> entry : snapshots().entrySet()) {
+            if (age(entry.getValue(), now) <= maxAge) {
+                names.add(entry.getKey());
+                snapshots.add(entry.getValue());
+            }
+        }
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(names.size());
+            for (int i = 0; i < names.size(); i++) {
+                Snapshot snapshot = snapshots.get(i);
+                out.writeUTF(names.get(i));
+                out.writeLong(snapshot.writtenAt);
+                out.writeInt(snapshot.payload.length);
+                out.write(snapshot.payload);
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Number of periodic or shutdown saves which failed, {@link #save()} reports failures itself.
+     */
+    public long getNumberOfFailedSaves() {
+        return failedSaves.sum();
+    }
+
+    /**
+     * Stops periodic saves and writes the snapshots a last time.
+     */
+    @Override
+    public void close()
+            throws IOException {
+
+        OPEN_STORES.remove(this);
+        synchronized (this) {
+            if (saver != null) {
+                saver.shutdown();
+                saver = null;
+            }
+        }
+        save();
+    }
+
+    static void saveOpenStores() {
+        for (SnapshotStore store : OPEN_STORES) {
+            store.saveQuietly();
+        }
+    }
+
+    void requireUnregistered(String name) {
+        if (breakers.containsKey(name)) {
+            throw alreadyRegistered(name);
+        }
+    }
+
+    /**
+     * Registers a built breaker and restores its snapshot if there is a fresh one. A damaged snapshot
+     * leaves the breaker as it was built. Holds the lock of the store, so no save writes the breaker before
+     * it was restored.
+     */
+    synchronized void register(String name, JavaProxyCircuitBreaker<?> circuitBreaker) {
+        if (breakers.containsKey(name)) {
+            throw alreadyRegistered(name);
+        }
+        Snapshot snapshot = snapshots().remove(name);
+        long age = snapshot != null ? age(snapshot, System.currentTimeMillis()) : 0;
+        if (snapshot != null && age <= maxAge) {
+            try {
+                circuitBreaker.restoreSnapshot(new DataInputStream(new ByteArrayInputStream(snapshot.payload)), age);
+            } catch (IOException e) {
+                // Restoring is best effort, the breaker starts as if there was no snapshot
+            }
+        }
+        breakers.put(name, circuitBreaker);
+    }
+
+    /**
+     * Removes a breaker which is shut down, its snapshot is kept for the next breaker of the same name.
+     */
+    synchronized void unregister(String name, JavaProxyCircuitBreaker<?> circuitBreaker) {
+        if (!breakers.remove(name, circuitBreaker)) {
+            return;
+        }
+        try {
+            ByteArrayOutputStream payload = new ByteArrayOutputStream();
+            circuitBreaker.writeSnapshot(new DataOutputStream(payload));
+            snapshots().put(name, new Snapshot(System.currentTimeMillis(), payload.toByteArray()));
+        } catch (IOException e) {
+            failedSaves.increment();
+        }
+    }
+
+    private void saveQuietly() {
+        try {
+            save();
+        } catch (IOException | RuntimeException e) {
+            failedSaves.increment();
+        }
+    }
+
+    // Only called while holding the lock of the store
+    private Map<String, Snapshot> snapshots() {
+        if (snapshots == null) {
+            snapshots = load();
+        }
+        return snapshots;
+    }
+
+    /**
+     * Reads all snapshots of the file without decoding them. An unknown or damaged file yields the
+     * snapshots which could be read.
+     */
+    private Map<String, Snapshot> load() {
+        Map<String, Snapshot> snapshots = new HashMap<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            long size = Files.size(file);
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return snapshots;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                long writtenAt = in.readLong();
+                int length = in.readInt();
+                if (length < 0 || length > size) {
+                    break;
+                }
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                snapshots.put(name, new Snapshot(writtenAt, payload));
+            }
+        } catch (NoSuchFileException e) {
+            // First start
+        } catch (IOException | RuntimeException e) {
+            // Damaged file, the breakers without a snapshot start fresh
+        }
+        return snapshots;
+    }
+
+    private static long age(Snapshot snapshot, long now) {
+        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, now - snapshot.writtenAt));
+    }
+
+    private static IllegalStateException alreadyRegistered(String name) {
+        return new IllegalStateException("A breaker named " + name + " is already registered with this store");
+    }
+
+    private static final class Snapshot {
+        private final long writtenAt;
+        private final byte[] payload;
+
+        private Snapshot(long writtenAt, byte[] payload) {
+            this.writtenAt = writtenAt;
+            this.payload = payload;
+        }
+    }
+}
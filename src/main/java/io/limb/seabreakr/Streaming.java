@@ -0,0 +1,93 @@
+package io.limb.seabreakr;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Configuration of calls to methods returning a {@code Flux}. The backend publisher is passed through
+ * with backpressure, bounded by a deadline for the first element, one for every following element and an
+ * optional one for the whole stream. The first two default to the deadline of the breaker. A stream which
+ * ran into a deadline fails with a {@link CallTimeoutException}.
+ * <p>
+ * The latency reported to the strategy is the time to the first element, since the length of a stream
+ * depends on its subscriber rather than on the backend. Streams are neither retried, hedged, coalesced nor
+ * cached.
+ */
+public final class Streaming {
+
+    private static final Streaming DEFAULTS = new Streaming(-1, -1, -1, false);
+
+    private final long firstElementTimeout;
+    private final long elementTimeout;
+    private final long streamTimeout;
+    private final boolean resumeOnFailover;
+
+    private Streaming(long firstElementTimeout, long elementTimeout, long streamTimeout, boolean resumeOnFailover) {
+        this.firstElementTimeout = firstElementTimeout;
+        this.elementTimeout = elementTimeout;
+        this.streamTimeout = streamTimeout;
+        this.resumeOnFailover = resumeOnFailover;
+    }
+
+    public static Streaming defaults() {
+        return DEFAULTS;
+    }
+
+    public Streaming withFirstElementTimeout(long timeout, TimeUnit timeUnit) {
+        return new Streaming(toNanos(timeout, timeUnit), elementTimeout, streamTimeout, resumeOnFailover);
+    }
+
+    public Streaming withElementTimeout(long timeout, TimeUnit timeUnit) {
+        return new Streaming(firstElementTimeout, toNanos(timeout, timeUnit), streamTimeout, resumeOnFailover);
+    }
+
+    public Streaming withStreamTimeout(long timeout, TimeUnit timeUnit) {
+        return new Streaming(firstElementTimeout, elementTimeout, toNanos(timeout, timeUnit), resumeOnFailover);
+    }
+
+    /**
+     * Continues with the publisher of the failover when the backend stream fails, including failures after
+     * some elements were emitted. The failover publisher starts over, subscribers must tolerate elements
+     * they already received.
+     */
+    public Streaming resumeOnFailover() {
+        return new Streaming(firstElementTimeout, elementTimeout, streamTimeout, true);
+    }
+
+    /**
+     * Deadline in nanoseconds for the first element, {@code -1} for the deadline of the breaker.
+     */
+    public long getFirstElementTimeout() {
+        return firstElementTimeout;
+    }
+
+    /**
+     * Deadline in nanoseconds between two elements, {@code -1} for the deadline of the breaker.
+     */
+    public long getElementTimeout() {
+        return elementTimeout;
+    }
+
+    /**
+     * Deadline in nanoseconds for the whole stream, {@code -1} if it is unbounded.
+     */
+    public long getStreamTimeout() {
+        return streamTimeout;
+    }
+
+    public boolean isResumeOnFailover() {
+        return resumeOnFailover;
+    }
+
+    private static long toNanos(long timeout, TimeUnit timeUnit) {
+        Objects.requireNonNull(timeUnit, "timeUnit cannot be null");
+        Preconditions.requireGreaterEquals(timeout, 1, "timeout must be greater or equal to 1");
+        return timeUnit.toNanos(timeout);
+    }
+
+    @Override
+    public String toString() {
+        return "Streaming{" + "firstElementTimeout=" + firstElementTimeout + ", elementTimeout=" + elementTimeout
+                + ", streamTimeout=" + streamTimeout + ", resumeOnFailover=" + resumeOnFailover + '}';
+    }
+}
@@ -0,0 +1,312 @@
+package io.limb.seabreakr;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * Count based sliding window which is split into independent stripes, in the spirit of
+ * {@link java.util.concurrent.atomic.LongAdder}. Every thread records into the stripe selected by
+ * its thread id, so concurrent callers do not contend on a single position counter or on the same
+ * ring words. Stripes are merged when the metrics are read, which is O(number of stripes).
+ * <p>
+ * Unlike the single ring, the window keeps the last outcomes of every stripe rather than the last
+ * {@code numOfBufferedEvents} outcomes overall: a thread only overwrites the outcomes of its own stripe,
+ * so outcomes of threads which stopped calling stay in the window until another thread maps to their
+ * stripe. Every stripe holds at least {@code minimumNumberOfCalls} outcomes, fewer stripes are used
+ * otherwise, so the calls of a single thread are enough to evaluate the window.
+ */
+final class StripedMetricsRecorder
+        implements MetricsRecorder, PersistentWindow {
+
+    private static final byte SNAPSHOT_KIND = 2;
+
+    private static final int MIN_EVENTS_PER_STRIPE = 64;
+
+    private final Stripe[] stripes;
+    private final int mask;
+
+    StripedMetricsRecorder(SlidingWindow slidingWindow) {
+        this(slidingWindow.getSize(), Runtime.getRuntime().availableProcessors(),
+                slidingWindow.getMinimumNumberOfCalls());
+    }
+
+    StripedMetricsRecorder(int numOfBufferedEvents, int concurrency) {
+        this(numOfBufferedEvents, concurrency, 1);
+    }
+
+    StripedMetricsRecorder(int numOfBufferedEvents, int concurrency, int minimumNumberOfCalls) {
+        Preconditions.requireGreaterEquals(numOfBufferedEvents, 1, "numOfBufferedEvents must be greater or equal to 1");
+        Preconditions.requireGreaterEquals(concurrency, 1, "concurrency must be greater or equal to 1");
+        Preconditions.requireGreaterEquals(minimumNumberOfCalls, 1, "minimumNumberOfCalls must be greater or equal to 1");
+
+        int minEventsPerStripe = Math.max(MIN_EVENTS_PER_STRIPE, minimumNumberOfCalls);
+        int maxStripes = Math.max(1, numOfBufferedEvents / minEventsPerStripe);
+        int numOfStripes = Integer.highestOneBit(Math.min(ceilingPowerOfTwo(concurrency), maxStripes));
+
+        this.stripes = new Stripe[numOfStripes];
+        this.mask = numOfStripes - 1;
+
+        int eventsPerStripe = numOfBufferedEvents / numOfStripes;
+        int remainder = numOfBufferedEvents % numOfStripes;
+        for (int i = 0; i < numOfStripes; i++) {
+            stripes[i] = new Stripe(eventsPerStripe + (i < remainder ? 1 : 0));
+        }
+    }
+
+    @Override
+    public float getFailureRate() {
+        long bufferedEvents = 0;
+        long failedEvents = 0;
+        for (Stripe stripe : stripes) {
+            bufferedEvents += stripe.getNumberOfBufferedEvents();
+            failedEvents += stripe.getNumberOfFailedEvents();
+        }
+        if (bufferedEvents == 0) {
+            return 0.f;
+        }
+        return failedEvents * 100.f / bufferedEvents;
+    }
+
+    @Override
+    public long getNumberOfFailedEvents() {
+        long failedEvents = 0;
+        for (Stripe stripe : stripes) {
+            failedEvents += stripe.getNumberOfFailedEvents();
+        }
+        return failedEvents;
+    }
+
+    @Override
+    public long getNumberOfBufferedEvents() {
+        long bufferedEvents = 0;
+        for (Stripe stripe : stripes) {
+            bufferedEvents += stripe.getNumberOfBufferedEvents();
+        }
+        return bufferedEvents;
+    }
+
+    @Override
+    public float getSlowCallRate() {
+        long bufferedEvents = 0;
+        long slowEvents = 0;
+        for (Stripe stripe : stripes) {
+            bufferedEvents += stripe.getNumberOfBufferedEvents();
+            slowEvents += stripe.getNumberOfSlowEvents();
+        }
+        if (bufferedEvents == 0) {
+            return 0.f;
+        }
+        return slowEvents * 100.f / bufferedEvents;
+    }
+
+    @Override
+    public long getNumberOfSlowEvents() {
+        long slowEvents = 0;
+        for (Stripe stripe : stripes) {
+            slowEvents += stripe.getNumberOfSlowEvents();
+        }
+        return slowEvents;
+    }
+
+    @Override
+    public void recordSuccess() {
+        stripe().record(false, false);
+    }
+
+    @Override
+    public void recordFailure() {
+        stripe().record(true, false);
+    }
+
+    @Override
+    public void recordSlowSuccess() {
+        stripe().record(false, true);
+    }
+
+    @Override
+    public void recordSlowFailure() {
+        stripe().record(true, true);
+    }
+
+    @Override
+    public void reset() {
+        for (Stripe stripe : stripes) {
+            stripe.reset();
+        }
+    }
+
+    /**
+     * Stripes are written one by one, a snapshot only restores into a window with the same number of stripes.
+     */
+    @Override
+    public void writeTo(DataOutput out)
+            throws IOException {
+
+        out.writeByte(SNAPSHOT_KIND);
+        out.writeInt(stripes.length);
+        for (Stripe stripe : stripes) {
+            stripe.writeTo(out);
+        }
+    }
+
+    @Override
+    public boolean readFrom(DataInput in, long age)
+            throws IOException {
+
+        if (in.readByte() != SNAPSHOT_KIND || in.readInt() != stripes.length) {
+            return false;
+        }
+        Runnable[] restores = new Runnable[stripes.length];
+        for (int i = 0; i < stripes.length; i++) {
+            restores[i] = stripes[i].readFrom(in);
+            if (restores[i] == null) {
+                return false;
+            }
+        }
+        for (Runnable restore : restores) {
+            restore.run();
+        }
+        return true;
+    }
+
+    int getNumberOfStripes() {
+        return stripes.length;
+    }
+
+    private Stripe stripe() {
+        long id = Thread.currentThread().getId();
+        int hash = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        return stripes[(hash ^ (hash >>> 16)) & mask];
+    }
+
+    private static int ceilingPowerOfTwo(int value) {
+        int highestOneBit = Integer.highestOneBit(value);
+        return highestOneBit == value ? value : highestOneBit << 1;
+    }
+
+    /**
+     * HotSpot lays out the fields of a superclass before those of its subclasses, so the padding classes
+     * around {@link StripeCounters} keep the counters of neighbouring stripes off a shared cache line.
+     * Padding fields declared in the same class would be reordered freely.
+     */
+    abstract static class LeftPadding {
+        long p01, p02, p03, p04, p05, p06, p07;
+    }
+
+    abstract static class StripeCounters
+            extends LeftPadding {
+
+        static final AtomicLongFieldUpdater<StripeCounters> POSITION_UPDATER = //
+                AtomicLongFieldUpdater.newUpdater(StripeCounters.class, "position");
+
+        static final AtomicIntegerFieldUpdater<StripeCounters> FAILURES_UPDATER = //
+                AtomicIntegerFieldUpdater.newUpdater(StripeCounters.class, "failures");
+
+        static final AtomicIntegerFieldUpdater<StripeCounters> SLOW_CALLS_UPDATER = //
+                AtomicIntegerFieldUpdater.newUpdater(StripeCounters.class, "slowCalls");
+
+        // Only updated through Atomic Updater
+        volatile long position = 0;
+
+        // Only updated through Atomic Updater
+        volatile int failures = 0;
+
+        // Only updated through Atomic Updater
+        volatile int slowCalls = 0;
+    }
+
+    abstract static class RightPadding
+            extends StripeCounters {
+
+        long p11, p12, p13, p14, p15, p16, p17;
+    }
+
+    static final class Stripe
+            extends RightPadding {
+
+        private final BitRing bitRing;
+        private final BitRing slowBitRing;
+        private final int numOfBufferedEvents;
+
+        Stripe(int numOfBufferedEvents) {
+            this.bitRing = new BitRing(numOfBufferedEvents);
+            this.slowBitRing = new BitRing(numOfBufferedEvents);
+            this.numOfBufferedEvents = numOfBufferedEvents;
+        }
+
+        long getNumberOfFailedEvents() {
+            return Math.max(0, failures);
+        }
+
+        long getNumberOfBufferedEvents() {
+            return Math.min(position, numOfBufferedEvents);
+        }
+
+        long getNumberOfSlowEvents() {
+            return Math.max(0, slowCalls);
+        }
+
+        void record(boolean failure, boolean slow) {
+            long position = POSITION_UPDATER.getAndIncrement(this);
+            if (failure) {
+                if (!bitRing.set(position)) {
+                    FAILURES_UPDATER.incrementAndGet(this);
+                }
+            } else if (bitRing.clear(position)) {
+                FAILURES_UPDATER.decrementAndGet(this);
+            }
+            if (slow) {
+                if (!slowBitRing.set(position)) {
+                    SLOW_CALLS_UPDATER.incrementAndGet(this);
+                }
+            } else if (slowBitRing.clear(position)) {
+                SLOW_CALLS_UPDATER.decrementAndGet(this);
+            }
+        }
+
+        void writeTo(DataOutput out)
+                throws IOException {
+
+            out.writeLong(position);
+            out.writeInt(failures);
+            out.writeInt(slowCalls);
+            bitRing.writeTo(out);
+            slowBitRing.writeTo(out);
+        }
+
+        /**
+         * Reads the stripe written by {@link #writeTo(DataOutput)} and returns the action applying it,
+         * {@code null} if it was written by a stripe of a different size.
+         */
+        Runnable readFrom(DataInput in)
+                throws IOException {
+
+            long position = in.readLong();
+            int failures = in.readInt();
+            int slowCalls = in.readInt();
+            long[] words = bitRing.readWords(in);
+            long[] slowWords = words != null ? slowBitRing.readWords(in) : null;
+            if (slowWords == null) {
+                return null;
+            }
+            return () -> {
+                bitRing.setWords(words);
+                slowBitRing.setWords(slowWords);
+                POSITION_UPDATER.set(this, position);
+                FAILURES_UPDATER.set(this, failures);
+                SLOW_CALLS_UPDATER.set(this, slowCalls);
+            };
+        }
+
+        void reset() {
+            bitRing.reset();
+            slowBitRing.reset();
+            POSITION_UPDATER.set(this, 0);
+            FAILURES_UPDATER.set(this, 0);
+            SLOW_CALLS_UPDATER.set(this, 0);
+        }
+    }
+}
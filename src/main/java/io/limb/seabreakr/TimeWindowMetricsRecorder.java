@@ -0,0 +1,295 @@
+package io.limb.seabreakr;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.function.LongSupplier;
+
+/**
+ * Time based sliding window made of {@code numOfBuckets} buckets of {@code bucketDuration} nanoseconds
+ * each. The window covers the current, partially filled bucket and the previous {@code numOfBuckets - 1}
+ * buckets.
+ * <p>
+ * Buckets are rotated lazily by the first thread which records into a bucket of a newer epoch. The sum of
+ * all completed buckets is calculated once per epoch and cached, so reading the window is a constant-time
+ * read of the cached aggregate plus the current bucket. Events which race with a bucket rotation may be
+ * attributed to the new bucket, which keeps the window accurate to roughly one event per rotation.
+ */
+final class TimeWindowMetricsRecorder
+        implements MetricsRecorder, PersistentWindow {
+
+    private static final byte SNAPSHOT_KIND = 3;
+
+    private final Bucket[] buckets;
+    private final long bucketDuration;
+    private final LongSupplier clock;
+
+    private volatile Aggregate aggregate = new Aggregate(Long.MIN_VALUE, 0, 0, 0);
+
+    TimeWindowMetricsRecorder(int numOfBuckets, long bucketDuration) {
+        this(numOfBuckets, bucketDuration, System::nanoTime);
+    }
+
+    TimeWindowMetricsRecorder(int numOfBuckets, long bucketDuration, LongSupplier clock) {
+        Preconditions.requireGreaterEquals(numOfBuckets, 1, "numOfBuckets must be greater or equal to 1");
+        Preconditions.requireGreaterEquals(bucketDuration, 1, "bucketDuration must be greater or equal to 1");
+        this.bucketDuration = bucketDuration;
+        this.clock = clock;
+        this.buckets = new Bucket[numOfBuckets];
+        for (int i = 0; i < numOfBuckets; i++) {
+            buckets[i] = new Bucket();
+        }
+    }
+
+    @Override
+    public float getFailureRate() {
+        long epoch = epoch();
+        long bufferedEvents = numberOfBufferedEvents(epoch);
+        if (bufferedEvents == 0) {
+            return 0.f;
+        }
+        return numberOfFailedEvents(epoch) * 100.f / bufferedEvents;
+    }
+
+    @Override
+    public long getNumberOfFailedEvents() {
+        return numberOfFailedEvents(epoch());
+    }
+
+    @Override
+    public long getNumberOfBufferedEvents() {
+        return numberOfBufferedEvents(epoch());
+    }
+
+    @Override
+    public float getSlowCallRate() {
+        long epoch = epoch();
+        long bufferedEvents = numberOfBufferedEvents(epoch);
+        if (bufferedEvents == 0) {
+            return 0.f;
+        }
+        return numberOfSlowEvents(epoch) * 100.f / bufferedEvents;
+    }
+
+    @Override
+    public long getNumberOfSlowEvents() {
+        return numberOfSlowEvents(epoch());
+    }
+
+    @Override
+    public void recordSuccess() {
+        bucket(epoch()).record(false, false);
+    }
+
+    @Override
+    public void recordFailure() {
+        bucket(epoch()).record(true, false);
+    }
+
+    @Override
+    public void recordSlowSuccess() {
+        bucket(epoch()).record(false, true);
+    }
+
+    @Override
+    public void recordSlowFailure() {
+        bucket(epoch()).record(true, true);
+    }
+
+    @Override
+    public void reset() {
+        for (Bucket bucket : buckets) {
+            bucket.reset(Long.MIN_VALUE);
+        }
+        aggregate = new Aggregate(Long.MIN_VALUE, 0, 0, 0);
+    }
+
+    /**
+     * Buckets are written with their distance to the current epoch, since epochs of the monotonic clock
+     * mean nothing to another process.
+     */
+    @Override
+    public void writeTo(DataOutput out)
+            throws IOException {
+
+        long epoch = epoch();
+        out.writeByte(SNAPSHOT_KIND);
+        out.writeInt(buckets.length);
+        out.writeLong(bucketDuration);
+        for (Bucket bucket : buckets) {
+            long bucketEpoch = bucket.epoch;
+            boolean inWindow = bucketEpoch > epoch - buckets.length && bucketEpoch <= epoch;
+            out.writeLong(inWindow ? epoch - bucketEpoch : -1);
+            out.writeLong(bucket.calls);
+            out.writeLong(bucket.failures);
+            out.writeLong(bucket.slowCalls);
+        }
+    }
+
+    @Override
+    public boolean readFrom(DataInput in, long age)
+            throws IOException {
+
+        if (in.readByte() != SNAPSHOT_KIND || in.readInt() != buckets.length || in.readLong() != bucketDuration) {
+            return false;
+        }
+        // Decoded completely before the window is reset, a truncated snapshot keeps the window untouched
+        long[] values = new long[buckets.length * 4];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readLong();
+        }
+
+        long epoch = epoch();
+        long elapsedBuckets = Math.max(0, age) / bucketDuration;
+        reset();
+        for (int i = 0; i < values.length; i += 4) {
+            long distance = values[i];
+            long bucketEpoch = epoch - distance - elapsedBuckets;
+            if (distance >= 0 && bucketEpoch > epoch - buckets.length) {
+                buckets[index(bucketEpoch)].restore(bucketEpoch, values[i + 1], values[i + 2], values[i + 3]);
+            }
+        }
+        return true;
+    }
+
+    private long numberOfFailedEvents(long epoch) {
+        Bucket bucket = buckets[index(epoch)];
+        long current = bucket.epoch == epoch ? bucket.failures : 0;
+        return aggregate(epoch).failures + current;
+    }
+
+    private long numberOfSlowEvents(long epoch) {
+        Bucket bucket = buckets[index(epoch)];
+        long current = bucket.epoch == epoch ? bucket.slowCalls : 0;
+        return aggregate(epoch).slowCalls + current;
+    }
+
+    private long numberOfBufferedEvents(long epoch) {
+        Bucket bucket = buckets[index(epoch)];
+        long current = bucket.epoch == epoch ? bucket.calls : 0;
+        return aggregate(epoch).calls + current;
+    }
+
+    private Bucket bucket(long epoch) {
+        Bucket bucket = buckets[index(epoch)];
+        while (true) {
+            long bucketEpoch = bucket.epoch;
+            if (bucketEpoch >= epoch) {
+                return bucket;
+            }
+            if (bucket.rotate(bucketEpoch, epoch)) {
+                return bucket;
+            }
+        }
+    }
+
+    private Aggregate aggregate(long epoch) {
+        Aggregate aggregate = this.aggregate;
+        if (aggregate.epoch == epoch) {
+            return aggregate;
+        }
+
+        long calls = 0;
+        long failures = 0;
+        long slowCalls = 0;
+        long oldestEpoch = epoch - buckets.length;
+        for (Bucket bucket : buckets) {
+            long bucketEpoch = bucket.epoch;
+            if (bucketEpoch > oldestEpoch && bucketEpoch < epoch) {
+                calls += bucket.calls;
+                failures += bucket.failures;
+                slowCalls += bucket.slowCalls;
+            }
+        }
+
+        Aggregate newAggregate = new Aggregate(epoch, calls, failures, slowCalls);
+        if (epoch > aggregate.epoch) {
+            this.aggregate = newAggregate;
+        }
+        return newAggregate;
+    }
+
+    private long epoch() {
+        return Math.floorDiv(clock.getAsLong(), bucketDuration);
+    }
+
+    private int index(long epoch) {
+        return (int) Math.floorMod(epoch, (long) buckets.length);
+    }
+
+    private static final class Aggregate {
+        private final long epoch;
+        private final long calls;
+        private final long failures;
+        private final long slowCalls;
+
+        private Aggregate(long epoch, long calls, long failures, long slowCalls) {
+            this.epoch = epoch;
+            this.calls = calls;
+            this.failures = failures;
+            this.slowCalls = slowCalls;
+        }
+    }
+
+    private static final class Bucket {
+
+        private static final AtomicLongFieldUpdater<Bucket> EPOCH_UPDATER = //
+                AtomicLongFieldUpdater.newUpdater(Bucket.class, "epoch");
+
+        private static final AtomicLongFieldUpdater<Bucket> CALLS_UPDATER = //
+                AtomicLongFieldUpdater.newUpdater(Bucket.class, "calls");
+
+        private static final AtomicLongFieldUpdater<Bucket> FAILURES_UPDATER = //
+                AtomicLongFieldUpdater.newUpdater(Bucket.class, "failures");
+
+        private static final AtomicLongFieldUpdater<Bucket> SLOW_CALLS_UPDATER = //
+                AtomicLongFieldUpdater.newUpdater(Bucket.class, "slowCalls");
+
+        // Only updated through Atomic Updater
+        private volatile long epoch = Long.MIN_VALUE;
+
+        // Only updated through Atomic Updater
+        private volatile long calls;
+
+        // Only updated through Atomic Updater
+        private volatile long failures;
+
+        // Only updated through Atomic Updater
+        private volatile long slowCalls;
+
+        void record(boolean failure, boolean slow) {
+            CALLS_UPDATER.incrementAndGet(this);
+            if (failure) {
+                FAILURES_UPDATER.incrementAndGet(this);
+            }
+            if (slow) {
+                SLOW_CALLS_UPDATER.incrementAndGet(this);
+            }
+        }
+
+        boolean rotate(long oldEpoch, long newEpoch) {
+            if (EPOCH_UPDATER.compareAndSet(this, oldEpoch, newEpoch)) {
+                CALLS_UPDATER.set(this, 0);
+                FAILURES_UPDATER.set(this, 0);
+                SLOW_CALLS_UPDATER.set(this, 0);
+                return true;
+            }
+            return false;
+        }
+
+        void restore(long newEpoch, long calls, long failures, long slowCalls) {
+            CALLS_UPDATER.set(this, calls);
+            FAILURES_UPDATER.set(this, failures);
+            SLOW_CALLS_UPDATER.set(this, slowCalls);
+            EPOCH_UPDATER.set(this, newEpoch);
+        }
+
+        void reset(long newEpoch) {
+            CALLS_UPDATER.set(this, 0);
+            FAILURES_UPDATER.set(this, 0);
+            SLOW_CALLS_UPDATER.set(this, 0);
+            EPOCH_UPDATER.set(this, newEpoch);
+        }
+    }
+}
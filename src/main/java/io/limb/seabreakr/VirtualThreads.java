@@ -0,0 +1,24 @@
+package io.limb.seabreakr;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Access to virtual threads. This version is used on Java versions before 21, the multi-release jar
+ * replaces it with an implementation based on {@code Thread.ofVirtual()} on Java 21 and later.
+ */
+final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    static boolean isSupported() {
+        return false;
+    }
+
+    /**
+     * Returns an executor which starts a new virtual thread for every task.
+     */
+    static Executor newExecutor(String name) {
+        throw new UnsupportedOperationException("Virtual threads require Java 21 or later");
+    }
+}
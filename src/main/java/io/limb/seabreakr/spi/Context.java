@@ -2,19 +2,89 @@ package io.limb.seabreakr.spi;
 
 import io.limb.seabreakr.Metrics;
 import io.limb.seabreakr.MetricsRecorder;
+import io.limb.seabreakr.SlidingWindow;
 import io.limb.seabreakr.State;
 
 public interface Context {
+
+    /**
+     * Permit of a call which is not permitted.
+     */
+    long NOT_PERMITTED = -1;
+
+    /**
+     * Permit of a call which is permitted without a trial permit, e.g. while Closed.
+     */
+    long PERMITTED = 0;
+
+    /**
+     * Moves the breaker from Open or HalfOpen to Closed and resets the sliding window.
+     */
     boolean close();
 
+    /**
+     * Moves the breaker from Closed or HalfOpen to Open.
+     */
     boolean open();
 
+    /**
+     * Moves the breaker from Open to HalfOpen, resets the sliding window and hands out
+     * {@code permittedCalls} trial permits. Contexts without HalfOpen support keep the breaker open until
+     * it is closed explicitly.
+     */
+    default boolean halfOpen(int permittedCalls) {
+        return false;
+    }
+
+    /**
+     * Returns true if a call would currently be permitted, without taking a permit.
+     */
     boolean isCallAllowed();
 
+    /**
+     * Takes a permit for a call and returns it, {@link #NOT_PERMITTED} if the call is not permitted. Always
+     * {@link #PERMITTED} while Closed, always not permitted while Open and takes one of the trial permits
+     * while HalfOpen. Trial permits are tagged with the number of the HalfOpen phase they were taken in, so
+     * the calls which were already running when the breaker tripped are not mistaken for trials.
+     */
+    default long acquirePermit() {
+        return isCallAllowed() ? PERMITTED : NOT_PERMITTED;
+    }
+
+    /**
+     * Returns the given permit which was taken but never used, e.g. because the call was cancelled. Trial
+     * permits of a past HalfOpen phase are dropped.
+     */
+    default void releasePermit(long permit) {
+    }
+
+    /**
+     * Returns true if the call holding the given permit is a trial of the current HalfOpen phase.
+     */
+    default boolean isTrial(long permit) {
+        return false;
+    }
+
+    /**
+     * Counts a finished trial holding the given permit and returns true for the one which completes the
+     * last trial of the current HalfOpen phase. Calls which are no trial of the current phase are ignored.
+     */
+    default boolean completeTrial(long permit) {
+        return false;
+    }
+
     Metrics getMetrics();
 
     MetricsRecorder getMetricsRecorder();
 
+    /**
+     * Sliding window the context was created with, {@code null} if the context does not know it. Breakers
+     * without a known window trip without a minimum number of calls.
+     */
+    default SlidingWindow getSlidingWindow() {
+        return null;
+    }
+
     State getState();
 
     EventPublisher getEventPublisher();
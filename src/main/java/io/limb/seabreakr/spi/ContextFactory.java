@@ -1,7 +1,29 @@
 package io.limb.seabreakr.spi;
 
+import io.limb.seabreakr.SlidingWindow;
+
 public interface ContextFactory {
 
+    /**
+     * Creates a context for a count based window of the given size.
+     *
+     * @deprecated only receives the size of the window, implement
+     * {@link #newContext(SlidingWindow, EventPublisher)} and the breaker no longer calls this method.
+     */
+    @Deprecated
     Context newContext(int numOfBufferedEvents, EventPublisher eventPublisher);
 
+    /**
+     * Creates the context of a breaker with the given sliding window. Delegates to
+     * {@link #newContext(int, EventPublisher)} with the size of the window for factories written against
+     * the previous version of this interface, those only support count based windows.
+     */
+    @SuppressWarnings("deprecation")
+    default Context newContext(SlidingWindow slidingWindow, EventPublisher eventPublisher) {
+        if (slidingWindow.getType() != SlidingWindow.Type.CountBased) {
+            throw new UnsupportedOperationException(getClass().getName() + " only supports count based windows");
+        }
+        return newContext(slidingWindow.getSize(), eventPublisher);
+    }
+
 }
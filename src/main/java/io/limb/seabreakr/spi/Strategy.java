@@ -5,12 +5,55 @@ import io.limb.seabreakr.CircuitBreaker;
 
 public interface Strategy {
 
+    /**
+     * Returns true if the call is allowed. Calls which are not allowed are routed to the failover and are
+     * not reported to {@link #onSuccess} or {@link #onFailure}.
+     */
     boolean isCallAllowed(Context context);
 
+    /**
+     * Called exactly once per call before the backend is invoked, returns the permit of the call or
+     * {@link Context#NOT_PERMITTED}. The permit is handed back to {@link #onFailure(Context, EventListener,
+     * long, long)} or {@link #onSuccess(Context, EventListener, long, long)} when the call finished.
+     */
+    default long acquirePermit(Context context) {
+        return isCallAllowed(context) ? Context.PERMITTED : Context.NOT_PERMITTED;
+    }
+
     void onFailure(Context context, EventListener listener);
 
+    /**
+     * Called when a call failed, {@code duration} is the time the call took in nanoseconds. Delegates to
+     * {@link #onFailure(Context, EventListener)} for strategies which do not look at the duration.
+     */
+    default void onFailure(Context context, EventListener listener, long duration) {
+        onFailure(context, listener);
+    }
+
+    /**
+     * Called when a call failed with the permit it was given by {@link #acquirePermit(Context)}.
+     */
+    default void onFailure(Context context, EventListener listener, long duration, long permit) {
+        onFailure(context, listener, duration);
+    }
+
     void onSuccess(Context context, EventListener listener);
 
+    /**
+     * Called when a call succeeded, {@code duration} is the time the call took in nanoseconds. Delegates to
+     * {@link #onSuccess(Context, EventListener)} for strategies which do not look at the duration.
+     */
+    default void onSuccess(Context context, EventListener listener, long duration) {
+        onSuccess(context, listener);
+    }
+
+    /**
+     * Called when a call succeeded with the permit it was given by {@link #acquirePermit(Context)}.
+     */
+    default void onSuccess(Context context, EventListener listener, long duration, long permit) {
+        onSuccess(context, listener, duration);
+    }
+
     default void fireEvent(EventListener listener, State state, CircuitBreaker circuitBreaker) {
 
     }
@@ -0,0 +1,37 @@
+package io.limb.seabreakr;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+
+/**
+ * Atomic access to the longs of a memory-mapped file, Java 21 version of the multi-release jar.
+ */
+final class MappedMemory {
+
+    // Native order, like the Unsafe based version, so processes of both versions can share a file
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final MappedByteBuffer buffer;
+
+    MappedMemory(MappedByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    long get(long offset) {
+        return (long) LONGS.getVolatile(buffer, (int) offset);
+    }
+
+    void set(long offset, long value) {
+        LONGS.setVolatile(buffer, (int) offset, value);
+    }
+
+    boolean compareAndSet(long offset, long expected, long value) {
+        return LONGS.compareAndSet(buffer, (int) offset, expected, value);
+    }
+
+    long getAndAdd(long offset, long delta) {
+        return (long) LONGS.getAndAdd(buffer, (int) offset, delta);
+    }
+}
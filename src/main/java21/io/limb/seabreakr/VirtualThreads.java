@@ -0,0 +1,24 @@
+package io.limb.seabreakr;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Access to virtual threads, Java 21 version of the multi-release jar.
+ */
+final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    static boolean isSupported() {
+        return true;
+    }
+
+    /**
+     * Returns an executor which starts a new virtual thread for every task.
+     */
+    static Executor newExecutor(String name) {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("SeaBreakr-Virtual-" + name + "-", 0).factory());
+    }
+}
@@ -0,0 +1,80 @@
+package io.limb.seabreakr;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+
+/**
+ * Measures recording throughput of the count based window implementations from 1 to N threads.
+ * Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=io.limb.seabreakr.MetricsRecorderBenchmark} or from the IDE. Only a host with several
+ * cores tells whether striping pays off, on a single core both recorders run the same sequence of updates.
+ */
+public class MetricsRecorderBenchmark {
+
+    private static final int NUM_OF_BUFFERED_EVENTS = 1000;
+    private static final long WARMUP_MILLIS = 1000;
+    private static final long MEASURE_MILLIS = 2000;
+
+    public static void main(String[] args)
+            throws Exception {
+
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+
+        System.out.printf("%-8s %20s %20s%n", "threads", "MetricsRecorderImpl", "StripedMetricsRecorder");
+        for (int threads = 1; threads <= maxThreads; threads <<= 1) {
+            double single = run(threads, MetricsRecorderImpl::new);
+            double striped = run(threads, size -> new StripedMetricsRecorder(SlidingWindow.countBased(size)));
+            System.out.printf("%-8d %16.1f M/s %16.1f M/s%n", threads, single, striped);
+        }
+    }
+
+    private static double run(int threads, IntFunction<MetricsRecorder> factory)
+            throws Exception {
+
+        MetricsRecorder recorder = factory.apply(NUM_OF_BUFFERED_EVENTS);
+        measure(threads, recorder, WARMUP_MILLIS);
+        return measure(threads, recorder, MEASURE_MILLIS) / (MEASURE_MILLIS * 1000.);
+    }
+
+    private static long measure(int threads, MetricsRecorder recorder, long millis)
+            throws Exception {
+
+        LongAdder operations = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+
+        for (int t = 0; t < threads; t++) {
+            new Thread(() -> {
+                try {
+                    start.await();
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    long count = 0;
+                    while ((count & 1023) != 0 || System.nanoTime() < deadline) {
+                        if (random.nextInt(100) == 0) {
+                            recorder.recordFailure();
+                        } else {
+                            recorder.recordSuccess();
+                        }
+                        if ((count & 63) == 0) {
+                            recorder.getFailureRate();
+                        }
+                        count++;
+                    }
+                    operations.add(count);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+
+        start.countDown();
+        done.await();
+        return operations.sum();
+    }
+}
@@ -0,0 +1,45 @@
+package io.limb.seabreakr;
+
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Child process of {@link TestCase#shared_context_trips_breaker_across_processes()}, makes the given number
+ * of failing calls through a breaker sharing its state file and waits until the breaker was opened by all
+ * processes together. Exits with 0 once the breaker is open and with 1 if it stays closed.
+ */
+public class SharedStateProcess {
+
+    static final SlidingWindow SLIDING_WINDOW = SlidingWindow.countBased(10).withMinimumNumberOfCalls(6);
+
+    public static void main(String[] args)
+            throws Exception {
+
+        Supplier<String> backend = () -> {
+            throw new IllegalStateException("failure");
+        };
+
+        ServiceType<Supplier<String>> serviceType = new ServiceType<Supplier<String>>() {
+        };
+        Supplier<String> breaker = CircuitBreaker.newBuilder(serviceType).backend(backend)
+                .executionMode(ExecutionMode.Direct).slidingWindow(SLIDING_WINDOW)
+                .contextFactory(ContextFactories.shared(Paths.get(args[0]), args[1])).build();
+
+        int calls = Integer.parseInt(args[2]);
+        for (int i = 0; i < calls; i++) {
+            try {
+                breaker.get();
+            } catch (IllegalStateException e) {
+                // expected
+            }
+        }
+
+        CircuitBreaker circuitBreaker = CircuitBreaker.circuitBreaker(breaker);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (circuitBreaker.getState() != State.Open && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        System.exit(circuitBreaker.getState() == State.Open ? 0 : 1);
+    }
+}
@@ -1,12 +1,51 @@
 package io.limb.seabreakr;
 
+import io.limb.seabreakr.spi.Context;
+import io.limb.seabreakr.spi.EventListener;
+import io.limb.seabreakr.spi.EventPublisher;
+import io.limb.seabreakr.spi.Strategy;
 import org.junit.Test;
+import reactor.core.publisher.Flux;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 import java.util.function.Supplier;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class TestCase {
 
@@ -100,11 +139,1900 @@ public class TestCase {
         assertEquals("success", breaker.get());
     }
 
+    @Test
+    public void generated_proxy_backend_success() {
+        Calculator backend = new Calculator() {
+            @Override
+            public int add(int a, int b) {
+                return a + b;
+            }
+
+            @Override
+            public double scale(long value, double factor) {
+                return value * factor;
+            }
+
+            @Override
+            public String[] names(String... names) {
+                return names;
+            }
+
+            @Override
+            public void touch(char c) {
+            }
+        };
+
+        Calculator breaker = CircuitBreaker.newBuilder(Calculator.class).backend(backend)
+                .proxyEngine(ProxyEngine.Generated).build();
+
+        assertFalse(java.lang.reflect.Proxy.isProxyClass(breaker.getClass()));
+        assertNotNull(CircuitBreaker.circuitBreaker(breaker));
+        assertEquals(5, breaker.add(2, 3));
+        assertEquals(5.0, breaker.scale(2, 2.5), 0.0);
+        assertEquals("b", breaker.names("a", "b")[1]);
+        breaker.touch('c');
+    }
+
+    @Test
+    public void generated_proxy_backend_failure_fallback_success() {
+        Supplier<String> fallback = () -> "success";
+        Supplier<String> backend = () -> "failure";
+
+        ServiceType<Supplier<String>> serviceType = newServiceType();
+        Supplier<String> breaker = CircuitBreaker.newBuilder(serviceType).backend(backend).failover(fallback)
+                .proxyEngine(ProxyEngine.Generated).build();
+
+        assertEquals("failure", breaker.get());
+        CircuitBreaker.circuitBreaker(breaker).open();
+        assertEquals("success", breaker.get());
+    }
+
+    @Test
+    public void generated_types_are_released_once_unused() throws Exception {
+        // Threads inherit the access control context of the stack which starts them, which would hold the
+        // generated classes if the first call of the Pinger started the shared deadline timer
+        Supplier<String> warmup = CircuitBreaker.newBuilder(newServiceType()).backend(() -> "warm")
+                .executionMode(ExecutionMode.Direct).build();
+        assertEquals("warm", warmup.get());
+
+        Pinger breaker = CircuitBreaker.newBuilder(Pinger.class).backend(() -> "pong")
+                .executionMode(ExecutionMode.Direct).proxyEngine(ProxyEngine.Generated).build();
+        assertEquals("pong", breaker.ping());
+
+        // Cached while a breaker uses the generated classes
+        WeakReference<Object> generatedType = new WeakReference<>(ProxyGenerator.generatedType(Pinger.class));
+        System.gc();
+        assertTrue(ProxyGenerator.generatedType(Pinger.class) == generatedType.get());
+
+        breaker = null;
+        for (int i = 0; i < 100 && generatedType.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertEquals(null, generatedType.get());
+
+        Pinger regenerated = CircuitBreaker.newBuilder(Pinger.class).backend(() -> "pong")
+                .executionMode(ExecutionMode.Direct).proxyEngine(ProxyEngine.Generated).build();
+        assertFalse(java.lang.reflect.Proxy.isProxyClass(regenerated.getClass()));
+        assertEquals("pong", regenerated.ping());
+    }
+
+    @Test
+    public void object_methods_bypass_breaker_and_unknown_methods_are_resolved()
+            throws Throwable {
+
+        ObjectMethodsBackend backend = new ObjectMethodsBackend();
+        ServiceType<Supplier<String>> serviceType = newServiceType();
+        for (ProxyEngine proxyEngine : ProxyEngine.values()) {
+            Supplier<String> breaker = CircuitBreaker.newBuilder(serviceType).backend(backend)
+                    .proxyEngine(proxyEngine).build();
+            CircuitBreaker.circuitBreaker(breaker).open();
+
+            // Forwarded to the backend even while the breaker is open
+            assertEquals(42, breaker.hashCode());
+            assertTrue(breaker.equals(backend));
+            assertFalse(breaker.equals("other"));
+            try {
+                breaker.toString();
+                fail("toString of the backend failed");
+            } catch (IllegalStateException e) {
+                assertEquals("toString", e.getMessage());
+            }
+        }
+
+        // Methods missing from the method table get a plan on their first call and pass the breaker
+        Supplier<String> breaker = CircuitBreaker.newBuilder(serviceType).backend(backend).build();
+        java.lang.reflect.InvocationHandler handler =
+                (java.lang.reflect.InvocationHandler) CircuitBreaker.circuitBreaker(breaker);
+        Method call = Callable.class.getMethod("call");
+        assertEquals("called", handler.invoke(breaker, call, null));
+        CircuitBreaker.circuitBreaker(breaker).open();
+        try {
+            handler.invoke(breaker, call, null);
+            fail("breaker is open");
+        } catch (NoSuchFailoverException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void direct_execution_runs_on_calling_thread() {
+        Supplier<String> backend = () -> Thread.currentThread().getName();
+
+        ServiceType<Supplier<String>> serviceType = newServiceType();
+        Supplier<String> breaker = CircuitBreaker.newBuilder(serviceType).backend(backend)
+                .executionMode(ExecutionMode.Direct).build();
+
+        assertEquals(Thread.currentThread().getName(), breaker.get());
+    }
+
+    @Test
+    public void direct_execution_deadline_reached_callthrough_enabled_fallback_success() throws Exception {
+        ThrowingSupplier<String> fallback = () -> "success";
+        ThrowingSupplier<String> backend = () -> {
+            new Semaphore(0).acquire();
+            return "backend";
+        };
+
+        ServiceType<ThrowingSupplier<String>> serviceType = newThrowingServiceType();
+        ThrowingSupplier<String> breaker = CircuitBreaker.newBuilder(serviceType).backend(backend).failover(fallback)
+                .deadline(100, TimeUnit.MILLISECONDS).executionMode(ExecutionMode.Direct).enableCallThrough().build();
+
+        assertEquals("success", breaker.get());
+        assertFalse(Thread.currentThread().isInterrupted());
+    }
+
+    @Test(expected = CallTimeoutException.class)
+    public void direct_execution_deadline_reached_callthrough_disabled() throws Exception {
+        ThrowingSupplier<String> backend = () -> {
+            new Semaphore(0).acquire();
+            return "backend";
+        };
+
+        ServiceType<ThrowingSupplier<String>> serviceType = newThrowingServiceType();
+        ThrowingSupplier<String> breaker = CircuitBreaker.newBuilder(serviceType).backend(backend)
+                .deadline(100, TimeUnit.MILLISECONDS).executionMode(ExecutionMode.Direct).build();
+
+        breaker.get();
+    }
+
+    @Test
+    public void direct_execution_deadline_keeps_pending_interrupt() {
+        // Ignores interrupts, the call only ends after the deadline expired
+        Supplier<String> backend = () -> {
+            long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(50);
+            while (System.nanoTime() < end) {
+                Thread.yield();
+            }
+            return "backend";
+        };
+
+        ServiceType<Supplier<String>> serviceType = newServiceType();
+        Supplier<String> breaker = CircuitBreaker.newBuilder(serviceType).backend(backend)
+                .deadline(10, TimeUnit.MILLISECONDS).executionMode(ExecutionMode.Direct).build();
+
+        try {
+            breaker.get();
+            fail("deadline expired");
+        } catch (CallTimeoutException e) {
+            assertFalse(Thread.currentThread().isInterrupted());
+        }
+
+        Thread.currentThread().interrupt();
+        try {
+            breaker.get();
+            fail("deadline expired");
+        } catch (CallTimeoutException e) {
+            assertTrue(Thread.interrupted());
+        }
+    }
+
+    @Test
+    public void count_window_wraps_and_tracks_failures() {
+        MetricsRecorderImpl recorder = new MetricsRecorderImpl(4);
+        assertEquals(0, recorder.getNumberOfBufferedEvents());
+        assertEquals(0.f, recorder.getFailureRate(), 0.f);
+
+        recorder.recordFailure();
+        recorder.recordSuccess();
+        assertEquals(2, recorder.getNumberOfBufferedEvents());
+        assertEquals(50.f, recorder.getFailureRate(), 0.f);
+
+        recorder.recordFailure();
+        recorder.recordFailure();
+        recorder.recordSuccess();
+        assertEquals(4, recorder.getNumberOfBufferedEvents());
+        assertEquals(2, recorder.getNumberOfFailedEvents());
+
+        for (int i = 0; i < 4; i++) {
+            recorder.recordSuccess();
+        }
+        assertEquals(0, recorder.getNumberOfFailedEvents());
+        assertEquals(0.f, recorder.getFailureRate(), 0.f);
+    }
+
+    @Test
+    public void striped_window_merges_stripes() throws Exception {
+        StripedMetricsRecorder recorder = new StripedMetricsRecorder(256, 4);
+        assertEquals(4, recorder.getNumberOfStripes());
+
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            boolean failing = i % 2 == 0;
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 10; j++) {
+                    if (failing) {
+                        recorder.recordFailure();
+                    } else {
+                        recorder.recordSuccess();
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(80, recorder.getNumberOfBufferedEvents());
+        assertEquals(40, recorder.getNumberOfFailedEvents());
+        assertEquals(50.f, recorder.getFailureRate(), 0.f);
+    }
+
+    @Test
+    public void striped_window_of_single_thread_trips_breaker() {
+        // Stripes hold at least the minimum number of calls, 1000 / 100 allows 8 of the 16 stripes
+        StripedMetricsRecorder recorder = new StripedMetricsRecorder(1000, 16, 100);
+        assertEquals(8, recorder.getNumberOfStripes());
+        for (int i = 0; i < 100; i++) {
+            recorder.recordFailure();
+        }
+        assertEquals(100, recorder.getNumberOfBufferedEvents());
+        assertEquals(100.f, recorder.getFailureRate(), 0.f);
+
+        Supplier<String> breaker = CircuitBreaker.newBuilder(newServiceType()).backend(() -> {
+            throw new IllegalStateException("failure");
+        }).failover(() -> "failover").executionMode(ExecutionMode.Direct).contextFactory(ContextFactories.striped())
+                .slidingWindow(SlidingWindow.countBased(1000)).build();
+        for (int i = 0; i < 100; i++) {
+            try {
+                breaker.get();
+            } catch (IllegalStateException e) {
+                // expected
+            }
+        }
+        assertEquals(State.Open, CircuitBreaker.circuitBreaker(breaker).getState());
+        assertEquals("failover", breaker.get());
+    }
+
+    @Test
+    public void time_window_expires_old_buckets() {
+        AtomicLong clock = new AtomicLong();
+        TimeWindowMetricsRecorder recorder = new TimeWindowMetricsRecorder(3, 100, clock::get);
+
+        recorder.recordFailure();
+        clock.set(100);
+        recorder.recordSuccess();
+        recorder.recordSuccess();
+        clock.set(250);
+        recorder.recordSuccess();
+        assertEquals(4, recorder.getNumberOfBufferedEvents());
+        assertEquals(25.f, recorder.getFailureRate(), 0.f);
+
+        clock.set(300);
+        assertEquals(3, recorder.getNumberOfBufferedEvents());
+        assertEquals(0, recorder.getNumberOfFailedEvents());
+
+        clock.set(1000);
+        assertEquals(0, recorder.getNumberOfBufferedEvents());
+        recorder.recordFailure();
+        assertEquals(100.f, recorder.getFailureRate(), 0.f);
+    }
+
+    @Test
+    public void time_window_selectable_per_breaker() {
+        Supplier<String> backend = () -> "success";
+
+        ServiceType<Supplier<String>> serviceType = newServiceType();
+        Supplier<String> breaker = CircuitBreaker.newBuilder(serviceType).backend(backend)
+                .slidingWindow(SlidingWindow.timeBased(10, 1, TimeUnit.SECONDS).withMinimumNumberOfCalls(5)).build();
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals("success", breaker.get());
+        }
+        assertEquals(3, CircuitBreaker.circuitBreaker(breaker).getMetrics().getNumberOfBufferedEvents());
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void legacy_context_factory_receives_window_size() {
+        List<Integer> sizes = new ArrayList<>();
+        io.limb.seabreakr.spi.ContextFactory legacy = (numOfBufferedEvents, eventPublisher) -> {
+            sizes.add(numOfBufferedEvents);
+            return new ContextImpl(SlidingWindow.countBased(numOfBufferedEvents),
+                    new MetricsRecorderImpl(numOfBufferedEvents), eventPublisher);
+        };
+
+        ServiceType<Supplier<String>> serviceType = newServiceType();
+        Supplier<String> breaker = CircuitBreaker.newBuilder(serviceType).backend(() -> "success")
+                .contextFactory(legacy).slidingWindow(SlidingWindow.countBased(10)).build();
+        assertEquals("success", breaker.get());
+        assertEquals(Arrays.asList(10), sizes);
+
+        try {
+            CircuitBreaker.newBuilder(serviceType).backend(() -> "success").contextFactory(legacy)
+                    .slidingWindow(SlidingWindow.timeBased(10, 1, TimeUnit.SECONDS)).build();
+            fail("legacy factories only support count based windows");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void legacy_strategy_receives_call_results() {
+        AtomicInteger failures = new AtomicInteger();
+        AtomicInteger successes = new AtomicInteger();
+        // Implements the methods of the original interface only
+        Strategy legacy = new Strategy() {
+            @Override
+            public boolean isCallAllowed(Context context) {
+                return context.isCallAllowed();
+            }
+
+            @Override
+            public void onFailure(Context context, EventListener listener) {
+                failures.incrementAndGet();
+            }
+
+            @Override
+            public void onSuccess(Context context, EventListener listener) {
+                successes.incrementAndGet();
+            }
+        };
+
+        AtomicBoolean fail = new AtomicBoolean();
+        Supplier<String> breaker = CircuitBreaker.newBuilder(newServiceType(), legacy).backend(() -> {
+            if (fail.get()) {
+                throw new IllegalStateException("failure");
+            }
+            return "success";
+        }).executionMode(ExecutionMode.Direct).build();
+        assertEquals("success", breaker.get());
+        fail.set(true);
+        try {
+            breaker.get();
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertEquals(1, successes.get());
+        assertEquals(1, failures.get());
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void legacy_context_without_permits_trips_breaker() {
+        // Implements the methods of the original interface only
+        io.limb.seabreakr.spi.ContextFactory legacy = (numOfBufferedEvents, eventPublisher) -> new Context() {
+            private final AtomicReference<State> state = new AtomicReference<>(State.Closed);
+            private final MetricsRecorder metrics = new MetricsRecorderImpl(numOfBufferedEvents);
+
+            @Override
+            public boolean close() {
+                return state.compareAndSet(State.Open, State.Closed);
+            }
+
+            @Override
+            public boolean open() {
+                return state.compareAndSet(State.Closed, State.Open);
+            }
+
+            @Override
+            public boolean isCallAllowed() {
+                return state.get() == State.Closed;
+            }
+
+            @Override
+            public Metrics getMetrics() {
+                return metrics;
+            }
+
+            @Override
+            public MetricsRecorder getMetricsRecorder() {
+                return metrics;
+            }
+
+            @Override
+            public State getState() {
+                return state.get();
+            }
+
+            @Override
+            public EventPublisher getEventPublisher() {
+                return eventPublisher;
+            }
+        };
+
+        Supplier<String> breaker = CircuitBreaker.newBuilder(newServiceType()).backend(() -> {
+            throw new IllegalStateException("failure");
+        }).failover(() -> "failover").executionMode(ExecutionMode.Direct).contextFactory(legacy).build();
+        try {
+            breaker.get();
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        CircuitBreaker circuitBreaker = CircuitBreaker.circuitBreaker(breaker);
+        assertEquals(State.Open, circuitBreaker.getState());
+        assertEquals("failover", breaker.get());
+
+        circuitBreaker.close();
+        assertEquals(State.Closed, circuitBreaker.getState());
+    }
+
+    @Test
+    public void latency_histogram_percentiles_and_intervals() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(i));
+        }
+
+        LatencySnapshot snapshot = histogram.snapshot();
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(500_000, snapshot.getP50(), 500_000 * 0.04);
+        assertEquals(990_000, snapshot.getP99(), 990_000 * 0.04);
+        assertEquals(1_000_000, snapshot.getMax());
+        assertEquals(snapshot.getP50(), histogram.getPercentile(50.));
+        assertEquals(snapshot.getP999(), histogram.getPercentile(99.9));
+        assertEquals(snapshot.getMax(), histogram.getMax());
+
+        assertEquals(1000, histogram.intervalSnapshot().getCount());
+        histogram.record(42);
+        LatencySnapshot interval = histogram.intervalSnapshot();
+        assertEquals(1, interval.getCount());
+        assertEquals(42, interval.getMax());
+        assertEquals(1001, histogram.snapshot().getCount());
+    }
+
+    @Test
+    public void latencies_recorded_per_breaker_and_method() throws Exception {
+        Supplier<String> backend = () -> "success";
+
+        ServiceType<Supplier<String>> serviceType = newServiceType();
+        Supplier<String> breaker = CircuitBreaker.newBuilder(serviceType).backend(backend)
+                .executionMode(ExecutionMode.Direct).enableMethodLatencies().build();
+
+        breaker.get();
+        breaker.get();
+
+        CircuitBreaker circuitBreaker = CircuitBreaker.circuitBreaker(breaker);
+        assertEquals(2, circuitBreaker.getMetrics().getLatencySnapshot().getCount());
+        Metrics methodMetrics = circuitBreaker.getMetrics(Supplier.class.getMethod("get"));
+        assertEquals(2, methodMetrics.getLatencySnapshot().getCount());
+        assertTrue(methodMetrics.getMaxLatency() > 0);
+    }
+
+    @Test
+    public void failover_latencies_are_not_recorded() throws Exception {
+        ServiceType<Supplier<String>> serviceType = newServiceType();
+        Supplier<String> breaker = CircuitBreaker.newBuilder(serviceType).backend(() -> "success")
+                .failover(() -> "failover").enableMethodLatencies().build();
+
+        CircuitBreaker circuitBreaker = CircuitBreaker.circuitBreaker(breaker);
+        circuitBreaker.open();
+        assertEquals("failover", breaker.get());
+        assertEquals(0, circuitBreaker.getMetrics().getLatencySnapshot().getCount());
+        Metrics methodMetrics = circuitBreaker.getMetrics(Supplier.class.getMethod("get"));
+        assertEquals(0, methodMetrics.getLatencySnapshot().getCount());
+
+        circuitBreaker.close();
+        assertEquals("success", breaker.get());
+        assertEquals(1, circuitBreaker.getMetrics().getLatencySnapshot().getCount());
+        assertEquals(1, methodMetrics.getLatencySnapshot().getCount());
+    }
+
+    @Test
+    public void slow_calls_open_breaker() {
+        Supplier<String> backend = () -> "success";
+
+        DefaultBreakerStrategy strategy = DefaultBreakerStrategy.defaults()
+                .withSlowCallThreshold(1, TimeUnit.NANOSECONDS, 50.f);
+
+        ServiceType<Supplier<String>> serviceType = newServiceType();
+        Supplier<String> breaker = CircuitBreaker.newBuilder(serviceType, strategy).backend(backend)
+                .executionMode(ExecutionMode.Direct)
+                .slidingWindow(SlidingWindow.countBased(10).withMinimumNumberOfCalls(5)).build();
+
+        CircuitBreaker circuitBreaker = CircuitBreaker.circuitBreaker(breaker);
+        for (int i = 0; i < 5; i++) {
+            assertEquals("success", breaker.get());
+        }
+        assertEquals(0, circuitBreaker.getMetrics().getNumberOfFailedEvents());
+        assertEquals(5, circuitBreaker.getMetrics().getNumberOfSlowEvents());
+        assertEquals(State.Open, circuitBreaker.getState());
+    }
+
+    @Test
+    public void half_open_trials_close_breaker() throws Exception {
+        AtomicBoolean failing = new AtomicBoolean(true);
+        Supplier<String> backend = () -> {
+            if (failing.get()) {
+                throw new IllegalStateException("failure");
+            }
+            return "success";
+        };
+
+        ServiceType<Supplier<String>> serviceType = newServiceType();
+        Supplier<String> breaker = CircuitBreaker.newBuilder(serviceType).backend(backend)
+                .executionMode(ExecutionMode.Direct).waitDurationInOpenState(50, TimeUnit.MILLISECONDS)
+                .permittedCallsInHalfOpenState(2)
+                .slidingWindow(SlidingWindow.countBased(10).withMinimumNumberOfCalls(5)).build();
+
+        CircuitBreaker circuitBreaker = CircuitBreaker.circuitBreaker(breaker);
+        for (int i = 0; i < 5; i++) {
+            try {
+                breaker.get();
+            } catch (IllegalStateException e) {
+                // expected
+            }
+        }
+        assertEquals(State.Open, circuitBreaker.getState());
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (circuitBreaker.getState() != State.HalfOpen && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(State.HalfOpen, circuitBreaker.getState());
+        assertEquals(0, circuitBreaker.getMetrics().getNumberOfBufferedEvents());
+
+        failing.set(false);
+        assertEquals("success", breaker.get());
+        assertEquals(State.HalfOpen, circuitBreaker.getState());
+        assertEquals("success", breaker.get());
+        assertEquals(State.Closed, circuitBreaker.getState());
+    }
+
+    @Test
+    public void calls_started_before_trip_are_not_trials() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean first = new AtomicBoolean(true);
+        ThrowingSupplier<String> backend = () -> {
+            if (first.compareAndSet(true, false)) {
+                entered.countDown();
+                release.await();
+                throw new IllegalStateException("failure");
+            }
+            return "success";
+        };
+
+        List<State> events = new CopyOnWriteArrayList<>();
+        ServiceType<ThrowingSupplier<String>> serviceType = newThrowingServiceType();
+        ThrowingSupplier<String> breaker = CircuitBreaker.newBuilder(serviceType).backend(backend)
+                .executionMode(ExecutionMode.Direct).waitDurationInOpenState(50, TimeUnit.MILLISECONDS)
+                .permittedCallsInHalfOpenState(1).listener(e -> events.add(e.getState()))
+                .slidingWindow(SlidingWindow.countBased(10).withMinimumNumberOfCalls(5)).build();
+
+        // Admitted while Closed, still running when the breaker trips and moves on to HalfOpen
+        Thread caller = new Thread(() -> {
+            try {
+                breaker.get();
+            } catch (Exception e) {
+                // expected
+            }
+        });
+        caller.start();
+        entered.await();
+
+        CircuitBreaker circuitBreaker = CircuitBreaker.circuitBreaker(breaker);
+        circuitBreaker.open();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (circuitBreaker.getState() != State.HalfOpen && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        release.countDown();
+        caller.join();
+
+        // The failure of the earlier call is not a trial, the breaker waits for its single real trial
+        assertEquals(State.HalfOpen, circuitBreaker.getState());
+        assertEquals(0, circuitBreaker.getMetrics().getNumberOfBufferedEvents());
+        assertEquals("success", breaker.get());
+        assertEquals(State.Closed, circuitBreaker.getState());
+        assertEquals(Arrays.asList(State.Open, State.HalfOpen, State.Closed), events);
+    }
+
+    @Test
+    public void semaphore_bulkhead_rejects_excess_calls() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ThrowingSupplier<String> backend = () -> {
+            entered.countDown();
+            release.await();
+            return "success";
+        };
+
+        ServiceType<ThrowingSupplier<String>> serviceType = newThrowingServiceType();
+        ThrowingSupplier<String> breaker = CircuitBreaker.newBuilder(serviceType).backend(backend)
+                .bulkhead(Bulkhead.semaphore(1)).build();
+
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(breaker);
+        entered.await();
+        try {
+            breaker.get();
+            fail("Expected BulkheadFullException");
+        } catch (BulkheadFullException e) {
+            // expected
+        }
+        release.countDown();
+        assertEquals("success", first.get());
+
+        Metrics metrics = CircuitBreaker.circuitBreaker(breaker).getMetrics();
+        assertTrue(metrics.getNumberOfRejectedCalls() >= 1);
+        assertEquals(0, metrics.getNumberOfFailedEvents());
+        assertEquals("success", breaker.get());
+    }
+
+    @Test
+    public void thread_pool_bulkhead_runs_reactive_calls_on_pool() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicReference<String> threadName = new AtomicReference<>();
+        Lookup backend = key -> {
+            threadName.set(Thread.currentThread().getName());
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return CompletableFuture.completedFuture("value-" + key);
+        };
+
+        Lookup breaker = CircuitBreaker.newBuilder(Lookup.class).backend(backend)
+                .bulkhead(Bulkhead.threadPool(1, 0)).build();
+
+        CompletableFuture<String> first = breaker.find("a");
+        assertTrue(entered.await(1, TimeUnit.SECONDS));
+        assertTrue(threadName.get().startsWith("SeaBreakr-Bulkhead-"));
+        try {
+            breaker.find("b").get();
+            fail("Expected BulkheadFullException");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof BulkheadFullException);
+        }
+        release.countDown();
+        assertEquals("value-a", first.get());
+
+        ServiceType<ThrowingSupplier<String>> serviceType = newThrowingServiceType();
+        try {
+            CircuitBreaker.newBuilder(serviceType).backend(() -> "success")
+                    .bulkhead(Bulkhead.threadPool(1, 0)).executionMode(ExecutionMode.Virtual).build();
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void adaptive_limit_follows_backend_capacity() {
+        for (LimitAlgorithm algorithm : LimitAlgorithm.values()) {
+            AdaptiveLimiter limiter = new AdaptiveLimiter(algorithm, 20, 1, 1000);
+            PriorityQueue<long[]> calls = new PriorityQueue<>(Comparator.comparingLong(call -> call[0]));
+
+            // Simulated backend serving capacity calls within its base latency, further calls queue up and take
+            // longer, calls beyond a deadline of three times the base latency are dropped. The last phase moves
+            // the backend farther away, which must not be mistaken for queueing.
+            long tick = 0;
+            int[][] phases = {{50, 10}, {10, 10}, {100, 10}, {50, 20}};
+            for (int[] phase : phases) {
+                int capacity = phase[0];
+                int latency = phase[1];
+                for (int i = 0; i < 10_000; i++, tick++) {
+                    while (!calls.isEmpty() && calls.peek()[0] <= tick) {
+                        long[] call = calls.poll();
+                        long rtt = call[0] - call[1];
+                        limiter.release(TimeUnit.MILLISECONDS.toNanos(rtt), rtt > call[2] * 3);
+                    }
+                    while (limiter.tryAcquire()) {
+                        double load = Math.max(1.0, (double) limiter.getInFlight() / capacity);
+                        calls.add(new long[]{tick + (long) Math.ceil(latency * load), tick, latency});
+                    }
+                }
+                int limit = limiter.getLimit();
+                // Aimd only backs off once calls run into the deadline, so it settles at a higher limit
+                int maxLimit = capacity * (algorithm == LimitAlgorithm.Aimd ? 4 : 2);
+                assertTrue(algorithm + " limit " + limit + " below capacity " + capacity, limit >= capacity);
+                assertTrue(algorithm + " limit " + limit + " far above capacity " + capacity, limit <= maxLimit);
+            }
+        }
+    }
+
+    @Test
+    public void adaptive_limit_ignores_fast_failures() {
+        AtomicBoolean failing = new AtomicBoolean(true);
+        ThrowingSupplier<String> backend = () -> {
+            if (failing.get()) {
+                throw new IllegalStateException("failure");
+            }
+            Thread.sleep(5);
+            return "success";
+        };
+
+        ThrowingSupplier<String> breaker = CircuitBreaker.newBuilder(newThrowingServiceType()).backend(backend)
+                .bulkhead(Bulkhead.adaptive(LimitAlgorithm.Vegas)).executionMode(ExecutionMode.Direct).build();
+        for (int i = 0; i < 5; i++) {
+            try {
+                breaker.get();
+                fail("Expected IllegalStateException");
+            } catch (IllegalStateException e) {
+                // expected
+            }
+        }
+        Metrics metrics = CircuitBreaker.circuitBreaker(breaker).getMetrics();
+        assertEquals(0, metrics.getLatencyEstimate());
+        assertEquals(0, metrics.getNumberOfInFlightCalls());
+
+        // The latency of the unloaded backend is the one of its successful calls
+        failing.set(false);
+        assertEquals("success", breaker.get());
+        assertTrue(metrics.getLatencyEstimate() >= TimeUnit.MILLISECONDS.toNanos(5));
+    }
+
+    @Test
+    public void retries_recover_transient_failures() {
+        AtomicInteger attempts = new AtomicInteger();
+        ThrowingSupplier<String> backend = () -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new IllegalStateException("transient");
+            }
+            return "success";
+        };
+
+        ServiceType<ThrowingSupplier<String>> serviceType = newThrowingServiceType();
+        ThrowingSupplier<String> breaker = CircuitBreaker.newBuilder(serviceType).backend(backend)
+                .retry(Retry.exponential(3, 1, TimeUnit.MILLISECONDS).retryOn(IllegalStateException.class)).build();
+
+        assertEquals("success", breaker.get());
+
+        Metrics metrics = CircuitBreaker.circuitBreaker(breaker).getMetrics();
+        assertEquals(3, attempts.get());
+        assertEquals(2, metrics.getNumberOfRetries());
+        assertEquals(0, metrics.getNumberOfFailedEvents());
+    }
+
+    @Test
+    public void retries_rejected_by_bulkhead_are_not_counted() throws Exception {
+        AtomicBoolean failing = new AtomicBoolean(true);
+        CountDownLatch failed = new CountDownLatch(1);
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ThrowingSupplier<String> backend = () -> {
+            if (failing.getAndSet(false)) {
+                failed.countDown();
+                throw new IllegalStateException("transient");
+            }
+            entered.countDown();
+            release.await();
+            return "success";
+        };
+
+        ServiceType<ThrowingSupplier<String>> serviceType = newThrowingServiceType();
+        ThrowingSupplier<String> breaker = CircuitBreaker.newBuilder(serviceType).backend(backend)
+                .bulkhead(Bulkhead.semaphore(1)).retry(Retry.exponential(2, 200, TimeUnit.MILLISECONDS)
+                        .withJitter(0).retryOn(IllegalStateException.class).withBudget(0.f, 1)).build();
+
+        CompletableFuture<String> retried = CompletableFuture.supplyAsync(breaker);
+        assertTrue(failed.await(1, TimeUnit.SECONDS));
+
+        // Takes the only permit while the failed call waits for its retry
+        CompletableFuture<String> holder;
+        do {
+            holder = CompletableFuture.supplyAsync(breaker);
+        } while (!entered.await(10, TimeUnit.MILLISECONDS));
+
+        try {
+            retried.get();
+            fail("Expected the retry to be rejected");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        release.countDown();
+        assertEquals("success", holder.get());
+
+        Metrics metrics = CircuitBreaker.circuitBreaker(breaker).getMetrics();
+        assertEquals(0, metrics.getNumberOfRetries());
+        assertTrue(metrics.getNumberOfRejectedCalls() >= 1);
+
+        // The rejected retry returned the only token of the budget
+        failing.set(true);
+        assertEquals("success", breaker.get());
+        assertEquals(1, metrics.getNumberOfRetries());
+        assertEquals(0, metrics.getNumberOfSuppressedRetries());
+    }
+
+    @Test
+    public void rate_limit_rejects_or_fails_over_excess_calls() {
+        Supplier<String> backend = () -> "success";
+        Supplier<String> fallback = () -> "fallback";
+
+        ServiceType<Supplier<String>> serviceType = newServiceType();
+        Supplier<String> rejecting = CircuitBreaker.newBuilder(serviceType).backend(backend).failover(fallback)
+                .rateLimit(RateLimit.of(2, 1, TimeUnit.HOURS)).build();
+
+        assertEquals("success", rejecting.get());
+        assertEquals("success", rejecting.get());
+        try {
+            rejecting.get();
+            fail("Expected RateLimitExceededException");
+        } catch (RateLimitExceededException e) {
+            // expected
+        }
+        assertEquals(1, CircuitBreaker.circuitBreaker(rejecting).getMetrics().getNumberOfRateLimitedCalls());
+
+        Supplier<String> failingOver = CircuitBreaker.newBuilder(serviceType).backend(backend).failover(fallback)
+                .rateLimit(RateLimit.of(1, 1, TimeUnit.HOURS).failingOver()).build();
+
+        assertEquals("success", failingOver.get());
+        assertEquals("fallback", failingOver.get());
+    }
+
+    @Test
+    public void interrupted_rate_limit_wait_returns_permit() throws Exception {
+        Supplier<String> backend = () -> "success";
+
+        ServiceType<Supplier<String>> serviceType = newServiceType();
+        Supplier<String> breaker = CircuitBreaker.newBuilder(serviceType).backend(backend)
+                .rateLimit(RateLimit.of(1, 1, TimeUnit.HOURS).waiting(90, TimeUnit.MINUTES)).build();
+
+        assertEquals("success", breaker.get());
+
+        // A lost permit would push the second waiter beyond the maximum wait and reject it right away
+        for (int i = 0; i < 2; i++) {
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            AtomicBoolean interrupted = new AtomicBoolean();
+            Thread caller = new Thread(() -> {
+                try {
+                    breaker.get();
+                } catch (Throwable throwable) {
+                    failure.set(throwable);
+                }
+                interrupted.set(Thread.currentThread().isInterrupted());
+            });
+            caller.start();
+            while (caller.isAlive() && caller.getState() != Thread.State.TIMED_WAITING) {
+                Thread.sleep(1);
+            }
+            caller.interrupt();
+            caller.join();
+
+            assertTrue(failure.get() instanceof RateLimitExceededException);
+            assertTrue(interrupted.get());
+        }
+        assertEquals(0, CircuitBreaker.circuitBreaker(breaker).getMetrics().getNumberOfRateLimitedCalls());
+    }
+
+    @Test
+    public void hedged_attempt_answers_slow_call() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ThrowingSupplier<String> backend = () -> {
+            if (attempts.incrementAndGet() == 1) {
+                release.await();
+                return "first";
+            }
+            return "hedge";
+        };
+
+        ServiceType<ThrowingSupplier<String>> serviceType = newThrowingServiceType();
+        ThrowingSupplier<String> breaker = CircuitBreaker.newBuilder(serviceType).backend(backend)
+                .hedge(Hedge.afterDelay(20, TimeUnit.MILLISECONDS), "get").build();
+
+        assertEquals("hedge", breaker.get());
+        release.countDown();
+
+        Metrics metrics = CircuitBreaker.circuitBreaker(breaker).getMetrics();
+        assertEquals(1, metrics.getNumberOfHedges());
+        assertEquals(1, metrics.getNumberOfHedgeWins());
+        assertEquals(100.f, metrics.getHedgeRate(), 0.f);
+
+        // Retries and hedges share the retry budget, its only token goes to the retry
+        AtomicInteger sharedAttempts = new AtomicInteger();
+        ThrowingSupplier<String> sharedBackend = () -> {
+            int attempt = sharedAttempts.incrementAndGet();
+            if (attempt == 1) {
+                throw new IllegalStateException("transient");
+            }
+            if (attempt == 3) {
+                Thread.sleep(100);
+            }
+            return "attempt-" + attempt;
+        };
+        ThrowingSupplier<String> shared = CircuitBreaker.newBuilder(serviceType).backend(sharedBackend)
+                .retry(Retry.exponential(2, 1, TimeUnit.MILLISECONDS).withBudget(0.f, 1))
+                .hedge(Hedge.afterDelay(20, TimeUnit.MILLISECONDS), "get").build();
+
+        assertEquals("attempt-2", shared.get());
+        assertEquals("attempt-3", shared.get());
+
+        Metrics sharedMetrics = CircuitBreaker.circuitBreaker(shared).getMetrics();
+        assertEquals(1, sharedMetrics.getNumberOfRetries());
+        assertEquals(0, sharedMetrics.getNumberOfHedges());
+    }
+
+    @Test
+    public void failover_hedges_of_hung_backend_trip_breaker() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ThrowingSupplier<String> backend = () -> {
+            release.await();
+            return "success";
+        };
+
+        ServiceType<ThrowingSupplier<String>> serviceType = newThrowingServiceType();
+        ThrowingSupplier<String> breaker = CircuitBreaker.newBuilder(serviceType).backend(backend)
+                .failover(() -> "failover")
+                .slidingWindow(SlidingWindow.countBased(5).withMinimumNumberOfCalls(5))
+                .hedge(Hedge.afterDelay(20, TimeUnit.MILLISECONDS).toFailover().withBudget(100.f, 5), "get").build();
+        try {
+            CircuitBreaker circuitBreaker = CircuitBreaker.circuitBreaker(breaker);
+            for (int i = 0; i < 5; i++) {
+                assertEquals(State.Closed, circuitBreaker.getState());
+                assertEquals("failover", breaker.get());
+            }
+
+            // Every call was answered by the failover only, the backend counts as timed out
+            Metrics metrics = circuitBreaker.getMetrics();
+            assertEquals(5, metrics.getNumberOfHedgeWins());
+            assertEquals(5, metrics.getNumberOfFailedEvents());
+            assertEquals(State.Open, circuitBreaker.getState());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void coalesced_calls_share_backend_call() throws Exception {
+        AtomicInteger backendCalls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ThrowingSupplier<String> backend = () -> {
+            release.await();
+            return "success-" + backendCalls.incrementAndGet();
+        };
+
+        ServiceType<ThrowingSupplier<String>> serviceType = newThrowingServiceType();
+        ThrowingSupplier<String> breaker = CircuitBreaker.newBuilder(serviceType).backend(backend)
+                .coalesce("get").build();
+        Metrics metrics = CircuitBreaker.circuitBreaker(breaker).getMetrics();
+
+        ExecutorService executor = Executors.newFixedThreadPool(10);
+        CompletableFuture<?>[] callers = new CompletableFuture<?>[10];
+        for (int i = 0; i < callers.length; i++) {
+            callers[i] = CompletableFuture.supplyAsync(breaker, executor);
+        }
+        while (metrics.getNumberOfCoalescedCalls() < callers.length - 1) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+
+        for (CompletableFuture<?> caller : callers) {
+            assertEquals("success-1", caller.get());
+        }
+        assertEquals(90.f, metrics.getCoalescingRate(), 0.f);
+        assertEquals("success-2", breaker.get());
+        executor.shutdown();
+    }
+
+    @Test
+    public void coalesced_follower_times_out_at_its_deadline() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ThrowingSupplier<String> backend = () -> {
+            entered.countDown();
+            // Ignores the deadline, the leading call only returns once released
+            while (true) {
+                try {
+                    release.await();
+                    return "success";
+                } catch (InterruptedException e) {
+                    // keep waiting
+                }
+            }
+        };
+
+        ServiceType<ThrowingSupplier<String>> serviceType = newThrowingServiceType();
+        ThrowingSupplier<String> breaker = CircuitBreaker.newBuilder(serviceType).backend(backend).coalesce("get")
+                .executionMode(ExecutionMode.Direct).deadline(100, TimeUnit.MILLISECONDS).build();
+
+        CompletableFuture<String> leader = CompletableFuture.supplyAsync(() -> {
+            try {
+                return breaker.get();
+            } catch (CallTimeoutException e) {
+                return "timed out";
+            }
+        });
+        assertTrue(entered.await(1, TimeUnit.SECONDS));
+        try {
+            breaker.get();
+            fail("Expected CallTimeoutException");
+        } catch (CallTimeoutException e) {
+            assertEquals(1, CircuitBreaker.circuitBreaker(breaker).getMetrics().getNumberOfCoalescedCalls());
+        }
+        release.countDown();
+        leader.get();
+    }
+
+    @Test
+    public void response_cache_serves_fresh_and_stale_results() {
+        AtomicInteger backendCalls = new AtomicInteger();
+        Supplier<String> backend = () -> "success-" + backendCalls.incrementAndGet();
+
+        ServiceType<Supplier<String>> serviceType = newServiceType();
+        Supplier<String> cached = CircuitBreaker.newBuilder(serviceType).backend(backend)
+                .cache(ResponseCache.lru(10).cache("get", 1, TimeUnit.HOURS)).build();
+
+        assertEquals("success-1", cached.get());
+        assertEquals("success-1", cached.get());
+        assertEquals(50.f, CircuitBreaker.circuitBreaker(cached).getMetrics().getCacheHitRate(), 0.f);
+
+        Supplier<String> expired = CircuitBreaker.newBuilder(serviceType).backend(backend)
+                .cache(ResponseCache.lru(10).cache("get", 0, TimeUnit.SECONDS)).build();
+
+        assertEquals("success-2", expired.get());
+        CircuitBreaker.circuitBreaker(expired).open();
+        assertEquals("success-2", expired.get());
+        assertEquals(1, CircuitBreaker.circuitBreaker(expired).getMetrics().getNumberOfStaleServes());
+    }
+
+    @Test
+    public void response_cache_keeps_keys_of_reused_arguments()
+            throws Throwable {
+
+        AtomicInteger backendCalls = new AtomicInteger();
+        Function<String, String> backend = key -> key + "-" + backendCalls.incrementAndGet();
+
+        ServiceType<Function<String, String>> serviceType = new ServiceType<Function<String, String>>() {
+        };
+        Function<String, String> breaker = CircuitBreaker.newBuilder(serviceType).backend(backend)
+                .cache(ResponseCache.lru(10).cache("apply", 1, TimeUnit.HOURS)).build();
+        java.lang.reflect.InvocationHandler handler =
+                (java.lang.reflect.InvocationHandler) CircuitBreaker.circuitBreaker(breaker);
+        Method apply = Function.class.getMethod("apply", Object.class);
+
+        // Callers of the handler may reuse their arguments array for the next call
+        Object[] args = {"a"};
+        assertEquals("a-1", handler.invoke(breaker, apply, args));
+        args[0] = "b";
+        assertEquals("b-2", handler.invoke(breaker, apply, args));
+        assertEquals("a-1", breaker.apply("a"));
+        assertEquals("b-2", breaker.apply("b"));
+    }
+
+    @Test
+    public void flux_resumes_from_failover_mid_stream() {
+        Streamer backend = () -> Flux.concat(Flux.just(1, 2), Flux.error(new IllegalStateException("broken")));
+        Streamer fallback = () -> Flux.just(10, 11);
+
+        Streamer breaker = CircuitBreaker.newBuilder(Streamer.class).backend(backend).failover(fallback)
+                .streaming(Streaming.defaults().resumeOnFailover()).build();
+
+        assertEquals(Arrays.asList(1, 2, 10, 11), breaker.stream().collectList().block());
+        assertEquals(1, CircuitBreaker.circuitBreaker(breaker).getMetrics().getNumberOfFailedEvents());
+
+        Streamer stalled = CircuitBreaker.newBuilder(Streamer.class).backend(Flux::never)
+                .streaming(Streaming.defaults().withFirstElementTimeout(50, TimeUnit.MILLISECONDS)).build();
+        try {
+            stalled.stream().blockLast();
+            fail("Expected CallTimeoutException");
+        } catch (CallTimeoutException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void completion_stage_returns_without_blocking() throws Exception {
+        CompletableFuture<String> pending = new CompletableFuture<>();
+        Lookup backend = key -> key.equals("slow") ? pending : CompletableFuture.completedFuture("value-" + key);
+
+        Lookup breaker = CircuitBreaker.newBuilder(Lookup.class).backend(backend)
+                .deadline(100, TimeUnit.MILLISECONDS).build();
+
+        assertEquals("value-a", breaker.find("a").get());
+
+        CompletableFuture<String> slow = breaker.find("slow");
+        assertFalse(slow.isDone());
+        try {
+            slow.get();
+            fail("Expected CallTimeoutException");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof CallTimeoutException);
+        }
+        assertEquals(1, CircuitBreaker.circuitBreaker(breaker).getMetrics().getNumberOfFailedEvents());
+    }
+
+    @Test
+    public void completion_stage_subtypes_and_null_stages() throws Exception {
+        // Other stage types than CompletionStage and CompletableFuture are passed through synchronously
+        PromiseLookup promises = CircuitBreaker.newBuilder(PromiseLookup.class)
+                .backend(key -> Promise.completed("value-" + key)).build();
+        Promise<String> promise = promises.find("a");
+        assertEquals("value-a", promise.get());
+
+        Lookup breaker = CircuitBreaker.newBuilder(Lookup.class).backend(key -> null).build();
+        try {
+            breaker.find("a").get();
+            fail("Expected NullPointerException");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof NullPointerException);
+        }
+        assertEquals(1, CircuitBreaker.circuitBreaker(breaker).getMetrics().getNumberOfFailedEvents());
+    }
+
+    @Test
+    public void virtual_execution_interrupts_call_at_deadline() throws Exception {
+        CountDownLatch interrupted = new CountDownLatch(1);
+        ThrowingSupplier<String> backend = () -> {
+            try {
+                new Semaphore(0).acquire();
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return Thread.currentThread().getName();
+        };
+
+        ServiceType<ThrowingSupplier<String>> serviceType = newThrowingServiceType();
+        CircuitBreakerBuilder<ThrowingSupplier<String>> builder = CircuitBreaker.newBuilder(serviceType)
+                .backend(backend).deadline(100, TimeUnit.MILLISECONDS).executionMode(ExecutionMode.Virtual);
+
+        // Only supported when the tests run against the multi-release jar on Java 21, see the java21 profile
+        if (!VirtualThreads.isSupported()) {
+            try {
+                builder.build();
+                fail("Expected IllegalStateException");
+            } catch (IllegalStateException e) {
+                return;
+            }
+        }
+
+        ThrowingSupplier<String> breaker = builder.build();
+        try {
+            breaker.get();
+            fail("Expected CallTimeoutException");
+        } catch (CallTimeoutException e) {
+            assertTrue(interrupted.await(1, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void async_event_dispatch_keeps_slow_listener_off_callers() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Semaphore delivered = new Semaphore(0);
+        AtomicBoolean dispatcherThread = new AtomicBoolean(true);
+
+        ServiceType<Supplier<String>> serviceType = newServiceType();
+        Supplier<String> breaker = CircuitBreaker.newBuilder(serviceType).backend(() -> "backend")
+                .eventDispatch(EventDispatch.async(2).withOverflowPolicy(EventDispatch.OverflowPolicy.DropNewest))
+                .listener(e -> {
+                    if (!Thread.currentThread().getName().startsWith("SeaBreakr-Events-")) {
+                        dispatcherThread.set(false);
+                    }
+                    entered.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                    delivered.release();
+                }).build();
+
+        CircuitBreaker circuitBreaker = CircuitBreaker.circuitBreaker(breaker);
+        circuitBreaker.open();
+        assertTrue(entered.await(1, TimeUnit.SECONDS));
+
+        // The listener is stuck in the first event, two more fit into the queue and the rest are dropped
+        for (int i = 0; i < 4; i++) {
+            circuitBreaker.close();
+            circuitBreaker.open();
+        }
+        circuitBreaker.close();
+        assertEquals(7, circuitBreaker.getMetrics().getNumberOfDroppedEvents());
+        assertEquals("backend", breaker.get());
+
+        release.countDown();
+        assertTrue(delivered.tryAcquire(3, 1, TimeUnit.SECONDS));
+        assertTrue(dispatcherThread.get());
+
+        // Breakers without queued events hold no dispatcher thread
+        long threads = Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().startsWith("SeaBreakr-Events-")).count();
+        for (int i = 0; i < 10; i++) {
+            CircuitBreaker.newBuilder(serviceType).backend(() -> "backend").eventDispatch(EventDispatch.async())
+                    .listener(e -> delivered.release()).build();
+        }
+        assertEquals(threads, Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().startsWith("SeaBreakr-Events-")).count());
+    }
+
+    @Test
+    public void async_event_dispatch_survives_listener_error() throws Exception {
+        AtomicBoolean thrown = new AtomicBoolean();
+        Semaphore delivered = new Semaphore(0);
+        Supplier<String> breaker = CircuitBreaker.newBuilder(newServiceType()).backend(() -> "backend")
+                .eventDispatch(EventDispatch.async(2).withOverflowPolicy(EventDispatch.OverflowPolicy.Block))
+                .listener(e -> {
+                    if (thrown.compareAndSet(false, true)) {
+                        throw new Error("listener failed");
+                    }
+                    delivered.release();
+                }).build();
+
+        // Callers blocked on the full queue wait for the dispatcher, which must survive the Error
+        CircuitBreaker circuitBreaker = CircuitBreaker.circuitBreaker(breaker);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            executor.submit(() -> {
+                for (int i = 0; i < 10; i++) {
+                    circuitBreaker.open();
+                    circuitBreaker.close();
+                }
+            }).get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Events taken into the batch of the failed delivery are dropped, all later ones are delivered
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (delivered.availablePermits() + circuitBreaker.getMetrics().getNumberOfDroppedEvents() < 19
+                && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(thrown.get());
+        assertEquals(19, delivered.availablePermits() + circuitBreaker.getMetrics().getNumberOfDroppedEvents());
+        assertTrue(delivered.availablePermits() > 0);
+    }
+
+    @Test
+    public void flight_recorder_records_call_outcomes() throws Exception {
+        Path file = Files.createTempFile("seabreakr", ".flight");
+        try (FlightRecorder recorder = FlightRecorder.open(file, 4)) {
+            AtomicBoolean fail = new AtomicBoolean();
+            Calculator backend = new Calculator() {
+                @Override
+                public int add(int a, int b) {
+                    if (fail.get()) {
+                        throw new IllegalStateException("backend failed");
+                    }
+                    return a + b;
+                }
+
+                @Override
+                public double scale(long value, double factor) {
+                    return value * factor;
+                }
+
+                @Override
+                public String[] names(String... names) {
+                    return names;
+                }
+
+                @Override
+                public void touch(char c) {
+                }
+            };
+
+            Calculator breaker = CircuitBreaker.newBuilder(Calculator.class).backend(backend).failover(backend)
+                    .flightRecorder(recorder).build();
+
+            assertEquals(3, breaker.add(1, 2));
+            fail.set(true);
+            try {
+                breaker.add(1, 2);
+                fail("Expected IllegalStateException");
+            } catch (IllegalStateException e) {
+                // expected
+            }
+            fail.set(false);
+            CircuitBreaker.circuitBreaker(breaker).open();
+            assertEquals(2.0, breaker.scale(1, 2.0), 0.0);
+
+            List<FlightRecord> records = FlightRecordReader.read(file);
+            assertEquals(3, records.size());
+            assertEquals(FlightRecorder.Outcome.Success, records.get(0).getOutcome());
+            assertEquals(FlightRecorder.Outcome.Failure, records.get(1).getOutcome());
+            assertEquals(FlightRecorder.Outcome.Failover, records.get(2).getOutcome());
+            assertEquals("Calculator", records.get(0).getBreakerName());
+            assertTrue(records.get(0).getLatency() > 0);
+            assertEquals(records.get(0).getMethodIndex(), records.get(1).getMethodIndex());
+            assertTrue(records.get(0).getMethodIndex() != records.get(2).getMethodIndex());
+
+            // The ring keeps the last four calls
+            breaker.add(1, 2);
+            breaker.add(1, 2);
+            records = FlightRecordReader.read(file);
+            assertEquals(4, records.size());
+            assertEquals(2, records.get(0).getSequence());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void flight_recorder_rejects_breakers_beyond_named_limit() throws Exception {
+        Path file = Files.createTempFile("seabreakr", ".flight");
+        try (FlightRecorder recorder = FlightRecorder.open(file, 4)) {
+            for (int i = 0; i < FlightRecorder.MAX_NAMED_BREAKERS; i++) {
+                assertEquals(i, recorder.register("breaker-" + i));
+            }
+            Supplier<String> backend = () -> "success";
+            try {
+                CircuitBreaker.newBuilder(newServiceType()).name("breaker-overflow").backend(backend)
+                        .flightRecorder(recorder).build();
+                fail("Expected IllegalStateException");
+            } catch (IllegalStateException e) {
+                // expected
+            }
+            assertEquals(7, recorder.register("breaker-7"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void shared_context_trips_breaker_across_processes()
+            throws Exception {
+
+        Path file = Files.createTempFile("seabreakr", ".state");
+        try {
+            List<State> events = new CopyOnWriteArrayList<>();
+            ServiceType<Supplier<String>> serviceType = newServiceType();
+            Supplier<String> breaker = CircuitBreaker.newBuilder(serviceType).backend(() -> "success")
+                    .executionMode(ExecutionMode.Direct).slidingWindow(SharedStateProcess.SLIDING_WINDOW)
+                    .contextFactory(ContextFactories.shared(file, "Shared")).listener(e -> events.add(e.getState()))
+                    .build();
+
+            // Neither process alone reaches the minimum number of calls, together they open the breaker
+            String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+            List<Process> processes = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                processes.add(new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                        SharedStateProcess.class.getName(), file.toString(), "Shared", "3").inheritIO().start());
+            }
+            for (Process process : processes) {
+                assertTrue(process.waitFor(60, TimeUnit.SECONDS));
+                assertEquals(0, process.exitValue());
+            }
+
+            CircuitBreaker circuitBreaker = CircuitBreaker.circuitBreaker(breaker);
+            assertEquals(State.Open, circuitBreaker.getState());
+            assertEquals(6, circuitBreaker.getMetrics().getNumberOfFailedEvents());
+            assertEquals(Arrays.asList(State.Open), events);
+
+            // Closing in this process closes the breaker for everyone sharing the file
+            circuitBreaker.close();
+            assertEquals("success", breaker.get());
+            assertEquals(1, circuitBreaker.getMetrics().getNumberOfBufferedEvents());
+            assertEquals(Arrays.asList(State.Open, State.Closed), events);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void shared_context_half_open_is_initialized_by_winner_only()
+            throws Exception {
+
+        Path file = Files.createTempFile("seabreakr", ".state");
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            EventPublisher eventPublisher = new EventPublisher() {
+                @Override
+                public void fireOpenState() {
+                }
+
+                @Override
+                public void fireHalfOpenState() {
+                }
+
+                @Override
+                public void fireClosedState() {
+                }
+            };
+            SharedStateFile sharedStateFile = SharedStateFile.of(file);
+            SlidingWindow slidingWindow = SlidingWindow.countBased(10);
+            SharedContext[] contexts = {new SharedContext(sharedStateFile, "HalfOpen", slidingWindow, eventPublisher),
+                    new SharedContext(sharedStateFile, "HalfOpen", slidingWindow, eventPublisher)};
+
+            // Both processes race for HalfOpen and take trial permits right away, the loser must not hand out
+            // a second set of permits
+            for (int round = 0; round < 1000; round++) {
+                assertTrue(contexts[0].open());
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<int[]>> results = new ArrayList<>();
+                for (SharedContext context : contexts) {
+                    results.add(executor.submit(() -> {
+                        start.await();
+                        int won = context.halfOpen(3) ? 1 : 0;
+                        int permits = 0;
+                        while (context.acquirePermit() != Context.NOT_PERMITTED) {
+                            permits++;
+                        }
+                        return new int[]{won, permits};
+                    }));
+                }
+                start.countDown();
+
+                int won = 0;
+                int permits = 0;
+                for (Future<int[]> result : results) {
+                    won += result.get()[0];
+                    permits += result.get()[1];
+                }
+                assertEquals(1, won);
+                assertEquals(3, permits);
+                assertEquals(State.HalfOpen, contexts[1].getState());
+                assertTrue(contexts[1].close());
+            }
+        } finally {
+            executor.shutdown();
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void context_half_open_losing_to_close_keeps_window()
+            throws Exception {
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            EventPublisher eventPublisher = new EventPublisher() {
+                @Override
+                public void fireOpenState() {
+                }
+
+                @Override
+                public void fireHalfOpenState() {
+                }
+
+                @Override
+                public void fireClosedState() {
+                }
+            };
+            MetricsRecorder metrics = new MetricsRecorderImpl(10);
+            ContextImpl context = new ContextImpl(SlidingWindow.countBased(10), metrics, eventPublisher);
+
+            // A transition to HalfOpen which lost to a close must not reset the window of the closed breaker
+            for (int round = 0; round < 1000; round++) {
+                assertTrue(context.open());
+                CountDownLatch start = new CountDownLatch(1);
+                Future<Boolean> halfOpen = executor.submit(() -> {
+                    start.await();
+                    return context.halfOpen(3);
+                });
+                Future<?> close = executor.submit(() -> {
+                    start.await();
+                    assertTrue(context.close());
+                    metrics.recordFailure();
+                    return null;
+                });
+                start.countDown();
+                close.get();
+
+                if (!halfOpen.get()) {
+                    assertEquals(State.Closed, context.getState());
+                    assertEquals(1, metrics.getNumberOfFailedEvents());
+                    assertEquals(Context.PERMITTED, context.acquirePermit());
+                }
+                context.close();
+                metrics.reset();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void gossip_quorum_of_open_peers_opens_breaker()
+            throws Exception {
+
+        List<GossipNode> nodes = new ArrayList<>();
+        try {
+            for (int i = 0; i < 3; i++) {
+                nodes.add(GossipNode.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 50,
+                        TimeUnit.MILLISECONDS));
+            }
+            for (GossipNode node : nodes) {
+                for (GossipNode peer : nodes) {
+                    if (peer != node) {
+                        node.addPeer(peer.getLocalAddress());
+                    }
+                }
+            }
+
+            List<State> events = new CopyOnWriteArrayList<>();
+            List<CircuitBreaker> circuitBreakers = new ArrayList<>();
+            for (GossipNode node : nodes) {
+                ServiceType<Supplier<String>> serviceType = newServiceType();
+                CircuitBreakerBuilder<Supplier<String>> builder = CircuitBreaker.newBuilder(serviceType)
+                        .backend(() -> "success").executionMode(ExecutionMode.Direct)
+                        .gossip(node, GossipPolicy.quorum(2));
+                if (circuitBreakers.size() == 2) {
+                    builder.listener(e -> events.add(e.getState()));
+                }
+                circuitBreakers.add(CircuitBreaker.circuitBreaker(builder.build()));
+            }
+            CircuitBreaker observer = circuitBreakers.get(2);
+
+            // A single open peer is below the quorum
+            circuitBreakers.get(0).open();
+            long received = nodes.get(2).getNumberOfReceivedMessages();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (nodes.get(2).getNumberOfReceivedMessages() < received + 6 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(State.Closed, observer.getState());
+
+            circuitBreakers.get(1).open();
+            deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (observer.getState() != State.Open && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(State.Open, observer.getState());
+            assertEquals(Arrays.asList(State.Open), events);
+            assertEquals(0, nodes.get(2).getNumberOfDroppedMessages());
+
+            try {
+                CircuitBreaker.newBuilder(newServiceType()).backend(() -> "success").gossip(nodes.get(0),
+                        GossipPolicy.broadcastOnly()).build();
+                fail("Expected IllegalStateException");
+            } catch (IllegalStateException e) {
+                // expected
+            }
+        } finally {
+            for (GossipNode node : nodes) {
+                node.close();
+            }
+        }
+    }
+
+    @Test
+    public void gossip_breakers_stay_closed_after_backend_recovered()
+            throws Exception {
+
+        List<GossipNode> nodes = new ArrayList<>();
+        try {
+            for (int i = 0; i < 3; i++) {
+                nodes.add(GossipNode.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 50,
+                        TimeUnit.MILLISECONDS));
+            }
+            for (GossipNode node : nodes) {
+                for (GossipNode peer : nodes) {
+                    if (peer != node) {
+                        node.addPeer(peer.getLocalAddress());
+                    }
+                }
+            }
+
+            List<List<State>> events = new ArrayList<>();
+            List<Supplier<String>> proxies = new ArrayList<>();
+            List<CircuitBreaker> circuitBreakers = new ArrayList<>();
+            for (GossipNode node : nodes) {
+                // The first breaker recovers while its peers are still open
+                long waitDuration = proxies.isEmpty() ? 100 : 500;
+                List<State> states = new CopyOnWriteArrayList<>();
+                ServiceType<Supplier<String>> serviceType = newServiceType();
+                Supplier<String> proxy = CircuitBreaker.newBuilder(serviceType).backend(() -> "success")
+                        .executionMode(ExecutionMode.Direct)
+                        .waitDurationInOpenState(waitDuration, TimeUnit.MILLISECONDS)
+                        .permittedCallsInHalfOpenState(1).listener(e -> states.add(e.getState()))
+                        .gossip(node, GossipPolicy.quorum(1)).build();
+                events.add(states);
+                proxies.add(proxy);
+                circuitBreakers.add(CircuitBreaker.circuitBreaker(proxy));
+            }
+
+            // The other breakers open on the gossip of the first one
+            circuitBreakers.get(0).open();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (events.stream().anyMatch(List::isEmpty) && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+
+            // The backend recovered, every breaker closes on its trial and must not be opened again by the
+            // stale or echoed opens of its peers
+            deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (System.nanoTime() < deadline) {
+                boolean closed = true;
+                for (int i = 0; i < proxies.size(); i++) {
+                    State state = circuitBreakers.get(i).getState();
+                    if (state == State.HalfOpen) {
+                        assertEquals("success", proxies.get(i).get());
+                    }
+                    closed &= state == State.Closed;
+                }
+                if (closed) {
+                    break;
+                }
+                Thread.sleep(5);
+            }
+            Thread.sleep(300);
+
+            for (int i = 0; i < circuitBreakers.size(); i++) {
+                assertEquals(State.Closed, circuitBreakers.get(i).getState());
+                assertEquals(Arrays.asList(State.Open, State.HalfOpen, State.Closed), events.get(i));
+            }
+        } finally {
+            for (GossipNode node : nodes) {
+                node.close();
+            }
+        }
+    }
+
+    @Test
+    public void snapshot_store_restores_breaker_after_restart()
+            throws Exception {
+
+        Path file = Files.createTempFile("seabreakr", ".snapshots");
+        Files.delete(file);
+        try {
+            AtomicInteger calls = new AtomicInteger();
+            Supplier<String> backend = () -> {
+                if (calls.incrementAndGet() > 2) {
+                    throw new IllegalStateException("failure");
+                }
+                return "success";
+            };
+
+            SnapshotStore store = SnapshotStore.open(file, 1, TimeUnit.HOURS);
+            Supplier<String> breaker = newSnapshotBreaker(store, backend, 60, null);
+            for (int i = 0; i < 5; i++) {
+                try {
+                    breaker.get();
+                } catch (IllegalStateException e) {
+                    // expected
+                }
+            }
+            CircuitBreaker circuitBreaker = CircuitBreaker.circuitBreaker(breaker);
+            assertEquals(State.Open, circuitBreaker.getState());
+            long latencies = circuitBreaker.getMetrics().getLatencySnapshot().getCount();
+            store.close();
+
+            // Restarted within the wait duration the breaker stays open with its window and latencies
+            List<State> events = new CopyOnWriteArrayList<>();
+            store = SnapshotStore.open(file, 1, TimeUnit.HOURS);
+            circuitBreaker = CircuitBreaker.circuitBreaker(newSnapshotBreaker(store, () -> "success", 60000, events));
+            assertEquals(State.Open, circuitBreaker.getState());
+            assertEquals(5, circuitBreaker.getMetrics().getNumberOfBufferedEvents());
+            assertEquals(3, circuitBreaker.getMetrics().getNumberOfFailedEvents());
+            assertEquals(latencies, circuitBreaker.getMetrics().getLatencySnapshot().getCount());
+            assertEquals(Arrays.asList(State.Open), events);
+            store.close();
+
+            // Restarted after the wait duration the breaker starts its trials right away
+            Thread.sleep(100);
+            events.clear();
+            store = SnapshotStore.open(file, 1, TimeUnit.HOURS);
+            circuitBreaker = CircuitBreaker.circuitBreaker(newSnapshotBreaker(store, () -> "success", 60, events));
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (circuitBreaker.getState() != State.HalfOpen && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(Arrays.asList(State.Open, State.HalfOpen), events);
+            store.close();
+
+            // Stale snapshots are ignored
+            Thread.sleep(10);
+            store = SnapshotStore.open(file, 1, TimeUnit.MILLISECONDS);
+            circuitBreaker = CircuitBreaker.circuitBreaker(newSnapshotBreaker(store, () -> "success", 60, null));
+            assertEquals(State.Closed, circuitBreaker.getState());
+            assertEquals(0, circuitBreaker.getMetrics().getNumberOfBufferedEvents());
+            store.close();
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void damaged_snapshot_leaves_breaker_untouched()
+            throws Exception {
+
+        Supplier<String> breaker = CircuitBreaker.newBuilder(newServiceType()).backend(() -> "success")
+                .executionMode(ExecutionMode.Direct).build();
+        for (int i = 0; i < 5; i++) {
+            breaker.get();
+        }
+        JavaProxyCircuitBreaker<?> source = (JavaProxyCircuitBreaker<?>) CircuitBreaker.circuitBreaker(breaker);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        source.writeSnapshot(new DataOutputStream(out));
+        byte[] payload = out.toByteArray();
+
+        byte[] unknownState = payload.clone();
+        unknownState[0] = (byte) 0xFF;
+        byte[] truncated = Arrays.copyOf(payload, payload.length - 1);
+        for (byte[] damaged : Arrays.asList(unknownState, truncated)) {
+            JavaProxyCircuitBreaker<?> target = (JavaProxyCircuitBreaker<?>) CircuitBreaker.circuitBreaker(
+                    CircuitBreaker.newBuilder(newServiceType()).backend(() -> "success")
+                            .executionMode(ExecutionMode.Direct).build());
+            try {
+                target.restoreSnapshot(new DataInputStream(new ByteArrayInputStream(damaged)), 0);
+                fail("Expected IOException");
+            } catch (IOException e) {
+                // expected
+            }
+            assertEquals(State.Closed, target.getState());
+            assertEquals(0, target.getMetrics().getNumberOfBufferedEvents());
+            assertEquals(0, target.getMetrics().getLatencySnapshot().getCount());
+        }
+    }
+
+    @Test
+    public void registry_shares_named_breakers_and_snapshots_metrics() {
+        CircuitBreakerRegistry registry = CircuitBreakerRegistry.create(builder -> builder
+                .executionMode(ExecutionMode.Direct)
+                .slidingWindow(SlidingWindow.countBased(10).withMinimumNumberOfCalls(5)));
+        try {
+            Supplier<String> failing = () -> {
+                throw new IllegalStateException("failure");
+            };
+            Supplier<String> hostA = registry.getOrCreate("host-a", newServiceType(), b -> b.backend(failing));
+            Supplier<String> hostB = registry.getOrCreate("host-b", newServiceType(), b -> b.backend(() -> "b"));
+            assertTrue(hostA == registry.getOrCreate("host-a", newServiceType(), b -> fail("built twice")));
+            assertTrue(hostA == registry.get("host-a", newServiceType()));
+            assertEquals(null, registry.get("host-c", newServiceType()));
+            assertEquals("host-a", CircuitBreaker.circuitBreaker(hostA).getName());
+            assertEquals(2, registry.size());
+
+            try {
+                registry.getOrCreate("host-a", Calculator.class, b -> b.backend((Calculator) null));
+                fail("type mismatch");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+
+            // The shared sliding window opens host-a while host-b keeps serving
+            for (int i = 0; i < 5; i++) {
+                try {
+                    hostA.get();
+                } catch (IllegalStateException e) {
+                    // expected
+                }
+                assertEquals("b", hostB.get());
+            }
+            List<BreakerSnapshot> snapshots = registry.snapshot();
+            assertEquals(2, snapshots.size());
+            for (BreakerSnapshot snapshot : snapshots) {
+                boolean a = snapshot.getName().equals("host-a");
+                assertEquals(a ? State.Open : State.Closed, snapshot.getState());
+                assertEquals(5, snapshot.getNumberOfBufferedEvents());
+                assertEquals(a ? 5 : 0, snapshot.getNumberOfFailedEvents());
+                Metrics metrics = registry.getCircuitBreaker(snapshot.getName()).getMetrics();
+                assertEquals(5, snapshot.getLatencySnapshot().getCount());
+                assertEquals(metrics.getMaxLatency(), snapshot.getMaxLatency());
+                assertEquals(metrics.getLatencyPercentile(50), snapshot.getLatencyPercentile(50));
+                assertEquals(metrics.getNumberOfSuppressedRetries(), snapshot.getNumberOfSuppressedRetries());
+                assertEquals(metrics.getHedgeRate(), snapshot.getHedgeRate(), 0.f);
+                assertEquals(metrics.getCoalescingRate(), snapshot.getCoalescingRate(), 0.f);
+                assertEquals(0, snapshot.getIntervalLatencySnapshot().getCount());
+            }
+
+            assertTrue(registry.remove("host-a"));
+            assertFalse(registry.remove("host-a"));
+            assertEquals(null, registry.getCircuitBreaker("host-a"));
+            Supplier<String> recreated = registry.getOrCreate("host-a", newServiceType(), b -> b.backend(() -> "a"));
+            assertEquals("a", recreated.get());
+        } finally {
+            registry.close();
+        }
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    public void registry_of_idle_breakers_allocates_no_latency_buckets()
+            throws Exception {
+
+        int breakers = 20_000;
+        CircuitBreakerRegistry registry = CircuitBreakerRegistry.create(builder -> builder
+                .executionMode(ExecutionMode.Direct));
+        try {
+            Runtime runtime = Runtime.getRuntime();
+            System.gc();
+            long before = runtime.totalMemory() - runtime.freeMemory();
+            for (int i = 0; i < breakers; i++) {
+                registry.getOrCreate("host-" + i, newServiceType(), b -> b.backend(() -> "a"));
+            }
+            System.gc();
+            long perBreaker = (runtime.totalMemory() - runtime.freeMemory() - before) / breakers;
+
+            // A latency histogram alone takes about 20KB once it recorded a call
+            assertTrue("retained " + perBreaker + " bytes per breaker", perBreaker < 8 * 1024);
+            assertEquals(breakers, registry.size());
+            assertEquals("a", registry.get("host-0", newServiceType()).get());
+            assertEquals(1, registry.getCircuitBreaker("host-0").getMetrics().getLatencySnapshot().getCount());
+        } finally {
+            registry.close();
+        }
+    }
+
+    public interface Calculator {
+        int add(int a, int b);
+
+        double scale(long value, double factor);
+
+        String[] names(String... names);
+
+        void touch(char c);
+    }
+
+    public interface Lookup {
+        CompletableFuture<String> find(String key);
+    }
+
+    public interface Pinger {
+        String ping();
+    }
+
+    public interface PromiseLookup {
+        Promise<String> find(String key);
+    }
+
+    public static final class Promise<T>
+            extends CompletableFuture<T> {
+
+        static <T> Promise<T> completed(T value) {
+            Promise<T> promise = new Promise<>();
+            promise.complete(value);
+            return promise;
+        }
+    }
+
+    public interface Streamer {
+        Flux<Integer> stream();
+    }
+
+    private static final class ObjectMethodsBackend
+            implements Supplier<String>, Callable<String> {
+
+        @Override
+        public String get() {
+            return "success";
+        }
+
+        @Override
+        public String call() {
+            return "called";
+        }
+
+        @Override
+        public int hashCode() {
+            return 42;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj == this;
+        }
+
+        @Override
+        public String toString() {
+            throw new IllegalStateException("toString");
+        }
+    }
+
     private ServiceType<Supplier<String>> newServiceType() {
         return new ServiceType<Supplier<String>>() {
         };
     }
 
+    private Supplier<String> newSnapshotBreaker(SnapshotStore store, Supplier<String> backend,
+                                                long waitMillis, List<State> events) {
+
+        CircuitBreakerBuilder<Supplier<String>> builder = CircuitBreaker.newBuilder(newServiceType()).backend(backend)
+                .executionMode(ExecutionMode.Direct).waitDurationInOpenState(waitMillis, TimeUnit.MILLISECONDS)
+                .slidingWindow(SlidingWindow.countBased(10).withMinimumNumberOfCalls(5)).snapshotStore(store);
+        if (events != null) {
+            builder.listener(e -> events.add(e.getState()));
+        }
+        return builder.build();
+    }
+
     private ServiceType<ThrowingSupplier<String>> newThrowingServiceType() {
         return new ServiceType<ThrowingSupplier<String>>() {
         };
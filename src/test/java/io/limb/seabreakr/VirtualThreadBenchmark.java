@@ -0,0 +1,116 @@
+package io.limb.seabreakr;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs 10k concurrent slow synchronous calls through a breaker in {@link ExecutionMode#Async async} and
+ * {@link ExecutionMode#Virtual virtual} execution mode, where every tenth call hangs beyond the deadline.
+ * Reports how many calls answered within the deadline, the peak number of platform threads, how many
+ * backend calls were still blocked when the callers were done and how long they took to drain. Virtual
+ * execution is only
+ * available when the classes are loaded from the multi-release jar on Java 21, run with
+ * {@code mvn package} and {@code java -cp target/seabreakr-1.0-SNAPSHOT.jar:target/test-classes:<dependencies>
+ * io.limb.seabreakr.VirtualThreadBenchmark}.
+ */
+public class VirtualThreadBenchmark {
+
+    private static final int CALLS = 10_000;
+    private static final long BACKEND_MILLIS = 100;
+    private static final long HANG_MILLIS = 10_000;
+    private static final long DEADLINE_MILLIS = 1000;
+    private static final int WARMUP_ROUNDS = 3;
+
+    public static void main(String[] args)
+            throws Exception {
+
+        int calls = args.length > 0 ? Integer.parseInt(args[0]) : CALLS;
+
+        ExecutionMode warmupMode = VirtualThreads.isSupported() ? ExecutionMode.Virtual : ExecutionMode.Async;
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            run(warmupMode, calls, false);
+        }
+
+        System.out.printf("%-8s %10s %10s %12s %12s %12s %12s%n", "mode", "success", "timeout", "elapsed ms",
+                "threads", "blocked", "drained ms");
+        // Virtual execution goes first, idle scheduler threads left over from async execution would count as its own
+        if (VirtualThreads.isSupported()) {
+            run(ExecutionMode.Virtual, calls, true);
+        } else {
+            System.out.println("Virtual execution requires the multi-release jar on Java 21 or later");
+        }
+        run(ExecutionMode.Async, calls, true);
+    }
+
+    private static void run(ExecutionMode executionMode, int calls, boolean print)
+            throws Exception {
+
+        AtomicInteger counter = new AtomicInteger();
+        AtomicInteger blocked = new AtomicInteger();
+        ThrowingSupplier<String> backend = () -> {
+            boolean hang = counter.incrementAndGet() % 10 == 0;
+            blocked.incrementAndGet();
+            try {
+                Thread.sleep(hang ? HANG_MILLIS : BACKEND_MILLIS);
+                return "backend";
+            } finally {
+                blocked.decrementAndGet();
+            }
+        };
+
+        ServiceType<ThrowingSupplier<String>> serviceType = new ServiceType<ThrowingSupplier<String>>() {
+        };
+        // A high threshold keeps the breaker closed, the benchmark measures execution and not the strategy
+        DefaultBreakerStrategy strategy = DefaultBreakerStrategy.defaults().withFailureThreshold(100.f);
+        ThrowingSupplier<String> breaker = CircuitBreaker.newBuilder(serviceType, strategy).backend(backend)
+                .deadline(DEADLINE_MILLIS, TimeUnit.MILLISECONDS).executionMode(executionMode).build();
+
+        // Every caller blocks for the whole call, give each one its own (virtual if available) thread
+        Executor callers = VirtualThreads.isSupported()
+                ? VirtualThreads.newExecutor("Caller") : Executors.newCachedThreadPool();
+        LongAdder success = new LongAdder();
+        LongAdder timeout = new LongAdder();
+        CountDownLatch done = new CountDownLatch(calls);
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        threads.resetPeakThreadCount();
+        long start = System.nanoTime();
+        for (int i = 0; i < calls; i++) {
+            callers.execute(() -> {
+                try {
+                    breaker.get();
+                    success.increment();
+                } catch (CallTimeoutException e) {
+                    timeout.increment();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        int abandoned = blocked.get();
+
+        // Abandoned backend calls keep their threads until they return on their own
+        long drainStart = System.nanoTime();
+        ForkJoinPool.commonPool().awaitQuiescence(1, TimeUnit.HOURS);
+        while (blocked.get() > 0) {
+            Thread.sleep(1);
+        }
+        long drained = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - drainStart);
+
+        if (print) {
+            System.out.printf("%-8s %10d %10d %12d %12d %12d %12d%n", executionMode, success.sum(), timeout.sum(),
+                    elapsed, threads.getPeakThreadCount(), abandoned, drained);
+        }
+    }
+}